@@ -3,6 +3,7 @@ version = "1.0-SNAPSHOT"
 
 plugins {
     java
+    id("me.champeau.gradle.jmh") version "0.4.7"
 }
 
 repositories {
@@ -11,6 +12,7 @@ repositories {
 
 dependencies {
     testCompile("junit", "junit", "4.12")
+    testCompile("org.xerial", "sqlite-jdbc", "3.25.2")
     implementation("com.google.code.gson:gson:2.8.5")
     compile("net.objecthunter","exp4j","0.4.8")
     compile("mysql", "mysql-connector-java", "8.0.12")
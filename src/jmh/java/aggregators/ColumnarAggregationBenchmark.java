@@ -0,0 +1,94 @@
+package aggregators;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares aggregation of the same source records record by record and from column batches
+ * ("columnar" option of aggregator). Run with "./gradlew jmh". Option stays disabled by default, until this
+ * benchmark shows speedup of "columnar" over "rowAtATime" for both aggregation periods
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnarAggregationBenchmark {
+
+    // Number of source records
+    @Param({"100000"})
+    private int recordsCount;
+
+    // Aggregation period in seconds
+    @Param({"60","3600"})
+    private int aggregationPeriod;
+
+    private ArrayList<HashMap<String,Object>> records = new ArrayList<>();
+    private SimpleFileDataAggregator rowAggregator;
+    private SimpleFileDataAggregator columnAggregator;
+    private Long startDate = 1538352000L;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int index=1;index<=recordsCount;index++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(startDate+index));
+            record.put("temperature",random.nextGaussian()*10);
+            record.put("humidity",String.valueOf(random.nextInt(100)));
+            record.put("pressure",740+random.nextDouble()*20);
+            records.add(record);
+        }
+        rowAggregator = new SimpleFileDataAggregator(getConfig(false));
+        columnAggregator = new SimpleFileDataAggregator(getConfig(true));
+    }
+
+    @Benchmark
+    public void rowAtATime(Blackhole blackhole) {
+        blackhole.consume(aggregate(rowAggregator));
+    }
+
+    @Benchmark
+    public void columnar(Blackhole blackhole) {
+        blackhole.consume(aggregate(columnAggregator));
+    }
+
+    private LinkedHashMap<Long,HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>>> aggregate(
+            SimpleFileDataAggregator aggregator) {
+        AggregationSweep sweep = new AggregationSweep(aggregator,startDate,recordsCount/aggregationPeriod+1,true);
+        for (HashMap<String,Object> record: records)
+            sweep.addRecord(Long.parseLong(record.get("timestamp").toString()),record);
+        sweep.finish();
+        return sweep.getResults();
+    }
+
+    private HashMap<String,Object> getConfig(boolean columnar) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","benchmark");
+        config.put("sourcePath","/tmp/logger_benchmark/source");
+        config.put("destinationPath","/tmp/logger_benchmark/benchmark");
+        config.put("aggregationPeriod",aggregationPeriod);
+        config.put("columnar",columnar);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("sum","average","min","max")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","humidity");
+            field.put("aggregate_function",function);
+            fields.put("humidity_"+function,field);
+            field = new HashMap<>();
+            field.put("field","pressure");
+            field.put("aggregate_function",function);
+            fields.put("pressure_"+function,field);
+            field = new HashMap<>();
+            field.put("expression","temperature * 1.8 + 32");
+            field.put("aggregate_function",function);
+            fields.put("fahrenheit_"+function,field);
+        }
+        config.put("fields",fields);
+        return config;
+    }
+}
@@ -0,0 +1,168 @@
+package aggregators;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Class used to cut ordered stream of source records to aggregation intervals on the fly. It holds current
+ * interval of aggregator and summarized statistics of each group of records in it. When record after current interval arrives, aggregated
+ * record of interval is written and sweep moves to interval of new record, so aggregation cost depends only
+ * on number of source records. Sweep can also collect statistics of closed intervals instead of writing them, so
+ * aggregator can write them later in order of timestamps.
+ */
+class AggregationSweep {
+
+    // Aggregator, which calculates and writes aggregated records
+    private SimpleFileDataAggregator aggregator;
+    // Start date of current interval
+    private Long startDate;
+    // Aggregation period in seconds
+    private Long period;
+    // Number of intervals to aggregate, including current one
+    private long intervalsLeft;
+    // Summarized statistics of fields of each group in current interval, indexed by group keys. Statistical
+    // objects reset and reused for next intervals
+    private HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>> groups = new HashMap<>();
+    // Column batches of source records of each group in current interval, indexed by group keys (null if
+    // aggregator calculates fields record by record)
+    private HashMap<String,ColumnBatch> batches;
+    // Timestamp of last source record, added to sweep
+    private Long lastTimestamp = 0L;
+    // Statistics of groups of closed intervals, indexed by start dates of intervals (null if intervals written
+    // when closed)
+    private LinkedHashMap<Long,HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>>> results;
+
+    /**
+     * Class constructor
+     * @param aggregator Aggregator, which calculates and writes aggregated records
+     * @param startDate Start date of first interval
+     * @param intervalsCount Number of intervals to aggregate
+     */
+    AggregationSweep(SimpleFileDataAggregator aggregator, Long startDate, long intervalsCount) {
+        this(aggregator,startDate,intervalsCount,false);
+    }
+
+    /**
+     * Class constructor
+     * @param aggregator Aggregator, which calculates and writes aggregated records
+     * @param startDate Start date of first interval
+     * @param intervalsCount Number of intervals to aggregate
+     * @param collect If true, statistics of closed intervals collected to results instead of writing them
+     */
+    AggregationSweep(SimpleFileDataAggregator aggregator, Long startDate, long intervalsCount, boolean collect) {
+        this.aggregator = aggregator;
+        this.startDate = startDate;
+        this.period = (long)aggregator.getAggregationPeriod();
+        this.intervalsLeft = intervalsCount;
+        if (collect) this.results = new LinkedHashMap<>();
+        if (aggregator.isColumnar()) this.batches = new HashMap<>();
+    }
+
+    /**
+     * Method adds source record to current interval. If record is after current interval, method closes
+     * intervals before record. Empty intervals skipped at once
+     * @param timestamp Timestamp of record
+     * @param record Source data record
+     */
+    void addRecord(Long timestamp, HashMap<String,Object> record) {
+        lastTimestamp = timestamp;
+        if (timestamp > startDate + period) flushBatches();
+        while (intervalsLeft > 0 && timestamp > startDate + period) {
+            if (isEmpty()) {
+                long skip = Math.min(intervalsLeft,(timestamp-startDate-1)/period);
+                startDate += skip*period;
+                intervalsLeft -= skip;
+            } else closeInterval();
+        }
+        if (intervalsLeft > 0 && timestamp > startDate) aggregator.addRecordToGroups(record,groups,batches);
+    }
+
+    /**
+     * Method writes aggregated record of current interval and moves to next interval
+     */
+    private void closeInterval() {
+        if (results != null) {
+            results.put(startDate,groups);
+            groups = new HashMap<>();
+        } else {
+            aggregator.writeAggregates(startDate,groups);
+            for (HashMap<String,SimpleFileDataAggregator.AggregateFieldStats> stats: groups.values())
+                for (SimpleFileDataAggregator.AggregateFieldStats fieldStats: stats.values()) fieldStats.reset();
+        }
+        startDate += period;
+        intervalsLeft--;
+    }
+
+    /**
+     * Method writes aggregated record of last interval, after all source records processed
+     */
+    void finish() {
+        flushBatches();
+        if (intervalsLeft > 0 && !isEmpty()) closeInterval();
+    }
+
+    /**
+     * Method adds records of column batches to statistics of groups of current interval
+     */
+    private void flushBatches() {
+        if (batches == null) return;
+        for (String group: batches.keySet())
+            if (groups.containsKey(group)) aggregator.addBatchToStats(batches.get(group),groups.get(group));
+            else batches.get(group).clear();
+    }
+
+    /**
+     * Returns true if no values added to current interval
+     */
+    private boolean isEmpty() {
+        for (HashMap<String,SimpleFileDataAggregator.AggregateFieldStats> stats: groups.values())
+            for (SimpleFileDataAggregator.AggregateFieldStats fieldStats: stats.values())
+                if (!fieldStats.isEmpty()) return false;
+        return true;
+    }
+
+    /**
+     * Returns summarized statistics of groups of current interval
+     */
+    HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>> getGroups() {
+        flushBatches();
+        return groups;
+    }
+
+    /**
+     * Method sets summarized statistics of groups of current interval, collected before, so sweep continues
+     * to aggregate interval from them
+     * @param groups Statistics of groups, indexed by group keys
+     */
+    void setGroups(HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Returns timestamp of last source record, added to sweep (0 if no records added)
+     */
+    Long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns statistics of groups of closed intervals, indexed by start dates of intervals in order of timestamps
+     */
+    LinkedHashMap<Long,HashMap<String,HashMap<String,SimpleFileDataAggregator.AggregateFieldStats>>> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns start date of current interval
+     */
+    Long getStartDate() {
+        return startDate;
+    }
+
+    /**
+     * Returns end date of last interval
+     */
+    Long getEndDate() {
+        return startDate + intervalsLeft*period;
+    }
+}
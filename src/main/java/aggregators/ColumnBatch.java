@@ -0,0 +1,83 @@
+package aggregators;
+
+import utils.MathUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Batch of source records of interval, decoded to primitive columns. Each source field, used by numeric aggregated
+ * fields, decoded once per record to array of doubles. Aggregator then evaluates expressions and adds values to
+ * statistics column by column, in loops over primitive arrays without lookups in records and field definitions.
+ */
+class ColumnBatch {
+
+    // Default maximum number of records in batch
+    static final int DEFAULT_CAPACITY = 1024;
+
+    // Names of source fields, decoded to columns
+    private String[] columns;
+    // Values of columns (NaN if record does not have numeric value of field)
+    private double[][] values;
+    // Array for calculated values of expressions
+    private double[] result;
+    // Number of records in batch
+    private int size = 0;
+
+    /**
+     * Class constructors
+     * @param columns Names of source fields, decoded to columns
+     */
+    ColumnBatch(String[] columns) {
+        this(columns,DEFAULT_CAPACITY);
+    }
+
+    ColumnBatch(String[] columns, int capacity) {
+        this.columns = columns;
+        this.values = new double[columns.length][Math.max(1,capacity)];
+        this.result = new double[Math.max(1,capacity)];
+    }
+
+    /**
+     * Decodes fields of source record and adds them to columns
+     * @param record Source data record
+     * @return True if batch is full after record added or false otherwise
+     */
+    boolean add(HashMap<String,Object> record) {
+        for (int column=0;column<columns.length;column++) values[column][size] = toDouble(record.get(columns[column]));
+        return ++size == result.length;
+    }
+
+    /**
+     * Method converts value of field to number
+     * @param value Value of field
+     * @return Number or NaN if value is not a number
+     */
+    static double toDouble(Object value) {
+        return MathUtils.toDouble(value);
+    }
+
+    /**
+     * Removes all records from batch
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns index of column of source field
+     * @param name Name of source field
+     * @return Index or -1 if field is not decoded
+     */
+    int getColumnIndex(String name) {
+        return Arrays.asList(columns).indexOf(name);
+    }
+
+    /**
+     * Getters for properties
+     */
+    double[] getColumn(int column) { return values[column]; }
+    double[][] getValues() { return values; }
+    double[] getResult() { return result; }
+    int size() { return size; }
+}
@@ -0,0 +1,141 @@
+package aggregators;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import utils.MathUtils;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formula expression of aggregated field, which compiled once and then evaluated for many source records.
+ * Variables of expression are resolved at compile time, so evaluation only binds values of these fields of
+ * record. Each thread evaluates its own copy of compiled expression, because exp4j expressions keep variable
+ * values inside.
+ */
+class CompiledExpression {
+
+    // Pattern of names of variables and functions inside expression
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    // Names of constants, which built in to expression engine
+    private static final Set<String> CONSTANTS = new HashSet<>(Arrays.asList("pi","e","π","φ"));
+
+    // Source formula
+    private String expression;
+    // Names of record fields, used as variables of expression
+    private String[] variables;
+    // Compiled expression, which copied for each thread (null if expression could not be compiled)
+    private Expression prototype;
+    // Copies of compiled expression, owned by threads, which evaluate it
+    private ThreadLocal<Expression> calculators;
+
+    /**
+     * Class constructor
+     * @param expression Formula
+     */
+    CompiledExpression(String expression) {
+        this.expression = expression;
+        this.variables = parseVariables(expression);
+        try {
+            this.prototype = new ExpressionBuilder(expression).variables(variables).build();
+            this.calculators = ThreadLocal.withInitial(() -> new Expression(prototype));
+        } catch (Exception e) {
+            this.prototype = null;
+        }
+    }
+
+    /**
+     * Method returns names of variables, used in formula. Names, followed by opening bracket are functions
+     * and not included. Names, which start right after digit or dot are exponents of numbers (like "1e3")
+     * and not included too
+     * @param expression Formula
+     * @return Array of variable names
+     */
+    static String[] parseVariables(String expression) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        Matcher matcher = NAME_PATTERN.matcher(expression);
+        while (matcher.find()) {
+            String name = matcher.group();
+            if (matcher.start() > 0) {
+                char previous = expression.charAt(matcher.start()-1);
+                if (Character.isDigit(previous) || previous == '.') continue;
+            }
+            int pos = matcher.end();
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) pos++;
+            if (pos < expression.length() && expression.charAt(pos) == '(') continue;
+            if (CONSTANTS.contains(name)) continue;
+            result.add(name);
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Calculates value of expression for source record
+     * @param record Source data record
+     * @return Calculated value or null if expression is invalid, record does not have numeric value
+     * for one of variables or calculation failed
+     */
+    Double evaluate(HashMap<String,Object> record) {
+        double result = evaluateValue(record);
+        return Double.isNaN(result) ? null : result;
+    }
+
+    /**
+     * Calculates value of expression for source record without boxing the result
+     * @param record Source data record
+     * @return Calculated value or NaN if expression is invalid, record does not have numeric value
+     * for one of variables or calculation failed
+     */
+    double evaluateValue(HashMap<String,Object> record) {
+        if (prototype == null) return Double.NaN;
+        Expression calculator = calculators.get();
+        try {
+            for (String variable: variables) {
+                double value = MathUtils.toDouble(record.get(variable));
+                if (Double.isNaN(value)) return Double.NaN;
+                calculator.setVariable(variable,value);
+            }
+            return calculator.evaluate();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Calculates values of expression for all records of column batch
+     * @param batch Batch of source records, decoded to columns
+     * @param columns Indexes of columns of variables in batch, in order of getVariables
+     * @param result Array for calculated values. Value is NaN if record does not have numeric value for one of
+     *               variables or calculation failed
+     */
+    void evaluateColumns(ColumnBatch batch, int[] columns, double[] result) {
+        int size = batch.size();
+        if (prototype == null) {
+            Arrays.fill(result,0,size,Double.NaN);
+            return;
+        }
+        Expression calculator = calculators.get();
+        double[][] values = batch.getValues();
+        for (int row=0;row<size;row++) {
+            result[row] = Double.NaN;
+            boolean complete = true;
+            for (int variable=0;variable<variables.length && complete;variable++) {
+                double value = values[columns[variable]][row];
+                complete = !Double.isNaN(value);
+                calculator.setVariable(variables[variable],value);
+            }
+            if (!complete) continue;
+            try {
+                result[row] = calculator.evaluate();
+            } catch (Exception e) { }
+        }
+    }
+
+    /**
+     * Getters for properties
+     */
+    String getExpression() { return expression; }
+    String[] getVariables() { return variables.clone(); }
+    boolean isValid() { return prototype != null; }
+}
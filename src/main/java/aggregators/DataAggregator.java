@@ -5,12 +5,28 @@ import cronjobs.CronjobTaskStatus;
 import main.ISyslog;
 
 import java.time.Instant;
+import java.util.HashMap;
 
 /**
  * Base class for all data aggregators
  */
 public abstract class DataAggregator extends CronjobTask implements IDataAggregator {
 
+    /**
+     * Factory method, used to build concrete Data Aggregator object, based on provided configuration
+     * @param config Configuration object
+     * @return Constructed aggregator object
+     */
+    public static DataAggregator create(HashMap<String,Object> config) {
+        if (config == null) return null;
+        switch (config.getOrDefault("type","simple").toString()) {
+            case "simple": return new SimpleFileDataAggregator(config);
+            case "multi_resolution": return new MultiResolutionDataAggregator(config);
+            case "join": return new JoinDataAggregator(config);
+            default: return null;
+        }
+    }
+
     /**
      * Method, which Timer used to run this object as a Cronjob ("TimerTask" implementation)
      */
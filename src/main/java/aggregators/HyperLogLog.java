@@ -0,0 +1,144 @@
+package aggregators;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mergeable sketch, used to estimate number of distinct values with bounded memory (HyperLogLog). Each value hashed
+ * to 64 bits. First "precision" bits select register, which keeps maximum position of first set bit in the rest
+ * of hash. Number of distinct values estimated from values of all registers. Sketches with the same precision can
+ * be merged by taking maximum of each register.
+ */
+public class HyperLogLog {
+
+    // Default number of bits of hash, used to select register (4096 registers, about 1.6% standard error)
+    public static final int DEFAULT_PRECISION = 12;
+
+    // Number of bits of hash, used to select register
+    private int precision;
+    // Registers with maximum positions of first set bit
+    private byte[] registers;
+
+    /**
+     * Class constructors
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        this.precision = Math.max(4,Math.min(18,precision));
+        this.registers = new byte[1 << this.precision];
+    }
+
+    /**
+     * Adds numeric value to sketch
+     * @param value Value to add
+     */
+    public void add(double value) {
+        if (value == 0.0) value = 0.0;
+        addHash(mix(Double.doubleToLongBits(value)));
+    }
+
+    /**
+     * Adds value to sketch. Numbers are equal to the same numbers, added as primitive values, other values
+     * compared by string representation
+     * @param value Value to add
+     */
+    public void add(Object value) {
+        if (value == null) return;
+        if (value instanceof Number) {
+            add(((Number)value).doubleValue());
+            return;
+        }
+        CharSequence string = value instanceof CharSequence ? (CharSequence)value : value.toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int index=0;index<string.length();index++) {
+            hash ^= string.charAt(index);
+            hash *= 0x100000001b3L;
+        }
+        addHash(mix(hash));
+    }
+
+    /**
+     * Method updates register, selected by hash of value
+     * @param hash Hash of value
+     */
+    private void addHash(long hash) {
+        int index = (int)(hash >>> (64-precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision-1)))+1;
+        if (rank > registers[index]) registers[index] = (byte)rank;
+    }
+
+    /**
+     * Method mixes bits of hash, so each bit of result depends on all bits of source
+     * @param hash Source hash
+     * @return Mixed hash
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Returns estimated number of distinct values
+     * @return Number of values
+     */
+    public long estimate() {
+        int count = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (byte register: registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double estimate = 0.7213 / (1 + 1.079 / count) * count * count / sum;
+        if (estimate <= 2.5 * count && zeros > 0) estimate = count * Math.log((double)count / zeros);
+        return Math.round(estimate);
+    }
+
+    /**
+     * Merges other sketch to this sketch
+     * @param sketch Sketch to merge, should have the same precision
+     */
+    public void merge(HyperLogLog sketch) {
+        if (sketch.precision != precision) return;
+        for (int index=0;index<registers.length;index++)
+            if (sketch.registers[index] > registers[index]) registers[index] = sketch.registers[index];
+    }
+
+    /**
+     * Method removes all values from sketch
+     */
+    public void reset() {
+        for (int index=0;index<registers.length;index++) registers[index] = 0;
+    }
+
+    /**
+     * Returns state of sketch, which can be serialized to JSON
+     * @return HashMap with precision and Base64 encoded registers
+     */
+    public HashMap<String,Object> getState() {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("precision",precision);
+        result.put("registers",Base64.getEncoder().encodeToString(registers));
+        return result;
+    }
+
+    /**
+     * Creates sketch from state, returned by getState and deserialized from JSON
+     * @param state State of sketch
+     * @return Sketch
+     */
+    public static HyperLogLog fromState(Map<String,Object> state) {
+        HyperLogLog result = new HyperLogLog(Double.valueOf(state.getOrDefault("precision",DEFAULT_PRECISION).toString()).intValue());
+        byte[] registers = Base64.getDecoder().decode(state.getOrDefault("registers","").toString());
+        if (registers.length == result.registers.length) result.registers = registers;
+        return result;
+    }
+}
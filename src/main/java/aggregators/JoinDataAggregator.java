@@ -0,0 +1,318 @@
+package aggregators;
+
+import com.google.gson.Gson;
+import config.ConfigManager;
+import main.ISyslog;
+import main.LoggerApplication;
+import main.Syslog;
+import readers.DataCursor;
+import readers.DataReader;
+import readers.FileDataReader;
+import readers.IDataReader;
+import writers.DataWriter;
+import writers.IDataWriter;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Class used to combine records of several data sources to single data series, aligned by timestamps. Cursors of
+ * all sources merged in order of timestamps (k-way merge), so only current and next record of each source kept in
+ * memory. For each timestamp of sources, record of each source selected according to alignment: "exact" - record
+ * with the same timestamp, "as_of" - last record before or at this timestamp, "nearest" - record with closest
+ * timestamp. Fields of selected records available to expressions as "<source>_<field>". Joined record written only
+ * if records of all sources found and only for timestamps, which all sources already reached.
+ */
+public class JoinDataAggregator extends DataAggregator implements Syslog.Loggable {
+
+    /**
+     * Rules to select record of source for timestamp
+     */
+    public enum Alignment { EXACT, AS_OF, NEAREST }
+
+    // Unique name of this aggregator
+    private String name = "";
+    // Full path to the folder, to which joined records written
+    private String destinationPath = "";
+    // Data sources, in order of configuration
+    private ArrayList<JoinSource> sources = new ArrayList<>();
+    // Rule to select record of each source for timestamp
+    private Alignment alignment = Alignment.EXACT;
+    // Maximum distance in seconds between timestamp and selected record of source (0 - unlimited)
+    private int tolerance = 0;
+    // Definitions of fields of joined record. If empty, all fields of sources written
+    private HashMap<String,HashMap<String,Object>> fieldDefs = new HashMap<>();
+    // Names of fields of joined record
+    private String[] fieldNames = new String[0];
+    // Compiled expressions of fields (by index in fieldNames), null if field is copied from source field
+    private CompiledExpression[] fieldExpressions = new CompiledExpression[0];
+    // Link to data writer, which used to write joined records
+    private IDataWriter aggregatorDataWriter;
+    // Last written record
+    private HashMap<String,Object> lastRecord;
+
+    /**
+     * Class constructors
+     */
+    public JoinDataAggregator(HashMap<String,Object> config) {
+        this.configure(config);
+    }
+
+    public JoinDataAggregator(String name) {
+        this.configure(ConfigManager.getInstance().getDataAggregator(name));
+    }
+
+    /**
+     * Method used to apply configuration to object.
+     * @param config: Configuration object
+     */
+    public void configure(HashMap<String,Object> config) {
+        super.configure(config);
+        this.name = config.getOrDefault("name",this.name).toString();
+        this.destinationPath = config.getOrDefault("destinationPath",this.destinationPath).toString();
+        this.fieldDefs = (HashMap<String,HashMap<String,Object>>)config.getOrDefault("fields",this.fieldDefs);
+        this.tolerance = Double.valueOf(config.getOrDefault("tolerance",this.tolerance).toString()).intValue();
+        if (this.syslog == null) this.syslog = new Syslog(this);
+        try {
+            this.alignment = Alignment.valueOf(config.getOrDefault("alignment",this.alignment).toString().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            syslog.logException(e,this,"configure");
+        }
+        close();
+        sources.clear();
+        Map<String,Object> sourcePaths = (Map<String,Object>)config.getOrDefault("sources",new LinkedHashMap<>());
+        for (String sourceName: sourcePaths.keySet())
+            sources.add(new JoinSource(sourceName,DataReader.get(sourcePaths.get(sourceName).toString(),syslog,config)));
+        fieldNames = fieldDefs.keySet().toArray(new String[0]);
+        fieldExpressions = new CompiledExpression[fieldNames.length];
+        for (int index=0;index<fieldNames.length;index++) {
+            String expression = fieldDefs.get(fieldNames[index]).getOrDefault("expression","").toString();
+            if (!expression.isEmpty()) fieldExpressions[index] = new CompiledExpression(expression);
+        }
+        aggregatorDataWriter = DataWriter.create(config,getAggregatorPath(),syslog);
+    }
+
+    /**
+     * Main entry point. Method merges records of all sources, which are after last written record, joins them
+     * by timestamps and writes joined records to destination folder
+     */
+    public void aggregate() {
+        syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' started ...",this.getClass().getName(),"aggregate");
+        if (sources.isEmpty()) return;
+        if (lastRecord == null || !lastRecord.containsKey("timestamp")) readAndSetLastRecord();
+        Long startDate = getLastRecordTimestamp()+1;
+        Long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        Long endDate = now;
+        for (JoinSource source: sources) {
+            FileDataReader.DataStats stats = source.reader.getDataStats(startDate,now,true);
+            if (stats.count == 0) return;
+            endDate = Long.min(endDate,stats.range.endDate);
+        }
+        syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' received aggregation range ..."+startDate+"-"+endDate,
+                this.getClass().getName(),"aggregate");
+        PriorityQueue<JoinSource> queue = new PriorityQueue<>(Comparator.comparingLong(source -> source.nextTimestamp));
+        try {
+            for (JoinSource source: sources)
+                if (source.open(startDate,now,alignment == Alignment.EXACT ? null : tolerance)) queue.add(source);
+            while (!queue.isEmpty() && queue.peek().nextTimestamp <= endDate) {
+                Long timestamp = queue.peek().nextTimestamp;
+                while (!queue.isEmpty() && queue.peek().nextTimestamp.equals(timestamp)) {
+                    JoinSource source = queue.poll();
+                    if (source.advance()) queue.add(source);
+                }
+                HashMap<String,Object> record = joinRecords(timestamp);
+                if (record != null) writeRecord(record);
+            }
+        } catch (Exception e) {
+            syslog.logException(e,this,"aggregate");
+        } finally {
+            sources.forEach(JoinSource::closeCursor);
+        }
+        flushLastRecord();
+    }
+
+    /**
+     * Method selects record of each source for timestamp and calculates fields of joined record
+     * @param timestamp Timestamp
+     * @return Joined record or null if record of one of sources not found or no fields calculated
+     */
+    HashMap<String,Object> joinRecords(Long timestamp) {
+        HashMap<String,Object> joined = new HashMap<>();
+        for (JoinSource source: sources) {
+            HashMap<String,Object> record = source.getRecord(timestamp,alignment,tolerance);
+            if (record == null) return null;
+            for (Map.Entry<String,Object> field: record.entrySet())
+                if (!field.getKey().equals("timestamp")) joined.put(source.name+"_"+field.getKey(),field.getValue());
+        }
+        HashMap<String,Object> result = joined;
+        if (fieldNames.length > 0) {
+            result = new HashMap<>();
+            for (int index=0;index<fieldNames.length;index++) {
+                Object value = fieldExpressions[index] != null ? fieldExpressions[index].evaluate(joined) :
+                        joined.get(fieldDefs.get(fieldNames[index]).getOrDefault("field","").toString());
+                if (value != null) result.put(fieldNames[index],value);
+            }
+        }
+        if (result.isEmpty()) return null;
+        result.put("timestamp",timestamp.toString());
+        return result;
+    }
+
+    /**
+     * Method used to write joined record to file
+     * @param record Record to write
+     */
+    private void writeRecord(HashMap<String,Object> record) {
+        try {
+            aggregatorDataWriter.write(record);
+            lastRecord = record;
+            checkpoint();
+        } catch (Exception e) {
+            syslog.logException(e,this,"writeRecord");
+        }
+    }
+
+    /**
+     * Returns root directory, in which current aggregator writes it's data
+     * @return Full path to file in filesystem
+     */
+    String getAggregatorPath() {
+        String resultPath = destinationPath;
+        if (resultPath.isEmpty())
+            resultPath = LoggerApplication.getInstance().getCachePath()+"/"+getCollectionType()+"/"+name;
+        if (!Paths.get(resultPath).isAbsolute())
+            resultPath = LoggerApplication.getInstance().getCachePath() + "/" + resultPath;
+        return resultPath;
+    }
+
+    /**
+     * Method releases data readers and data writer of aggregator
+     */
+    @Override
+    public void close() {
+        sources.forEach(source -> source.reader.close());
+        if (aggregatorDataWriter != null) aggregatorDataWriter.close();
+        aggregatorDataWriter = null;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    public HashMap<String,Object> getLastRecord() { return lastRecord; }
+
+    @Override
+    public String getLastRecordString() {
+        if (lastRecord == null) return null;
+        return (new Gson()).toJson(lastRecord);
+    }
+
+    @Override
+    public long getLastRecordTimestamp() {
+        if (lastRecord == null || !lastRecord.containsKey("timestamp")) return 0L;
+        return Long.parseLong(lastRecord.get("timestamp").toString());
+    }
+
+    /**
+     * Method used to get string value of last record from status file, parse it and setup
+     */
+    private void readAndSetLastRecord() {
+        String record = readLastRecord();
+        lastRecord = new HashMap<>();
+        if (record == null || record.isEmpty()) return;
+        lastRecord = (new Gson()).fromJson(record,HashMap.class);
+    }
+
+    /**
+     * Data source of join. Holds cursor of source and two records around current position of merge: last record,
+     * which is not after current timestamp, and next record of cursor
+     */
+    private static class JoinSource {
+        // Name of source, used as prefix of fields in joined record
+        private String name;
+        // Data reader of source folder
+        private IDataReader reader;
+        // Cursor of source records
+        private DataCursor cursor;
+        // Last record, which is not after current timestamp of merge, and its timestamp
+        private HashMap<String,Object> current;
+        private Long currentTimestamp;
+        // Next record of cursor and its timestamp
+        private HashMap<String,Object> next;
+        private Long nextTimestamp;
+
+        JoinSource(String name, IDataReader reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+        /**
+         * Method opens cursor of source records inside date range and reads first record
+         * @param startDate Start timestamp
+         * @param endDate End timestamp
+         * @param lookBack If not null, last record before start timestamp loaded as current record. Depth of
+         *                 search in seconds (0 - unlimited)
+         * @return True if source has records inside range or false otherwise
+         */
+        boolean open(Long startDate, Long endDate, Integer lookBack) {
+            current = null;
+            currentTimestamp = null;
+            if (lookBack != null) {
+                currentTimestamp = reader.getLastTimestamp(lookBack > 0 ? startDate-1-lookBack : 0L,startDate-1,false);
+                if (currentTimestamp != null) {
+                    current = reader.getData(currentTimestamp,currentTimestamp,false).get(currentTimestamp);
+                    if (current == null) currentTimestamp = null;
+                }
+            }
+            cursor = reader.getCursor(startDate,endDate,false);
+            readNext();
+            return next != null;
+        }
+
+        /**
+         * Method moves source to next record
+         * @return True if source has more records after new current record or false otherwise
+         */
+        boolean advance() {
+            current = next;
+            currentTimestamp = nextTimestamp;
+            readNext();
+            return next != null;
+        }
+
+        /**
+         * Method reads next record of cursor
+         */
+        private void readNext() {
+            next = cursor.hasNext() ? cursor.next() : null;
+            nextTimestamp = next == null ? null : Long.parseLong(next.get("timestamp").toString());
+        }
+
+        /**
+         * Returns record of source for timestamp of merge
+         * @param timestamp Timestamp of merge. Source should be already moved to records of this timestamp
+         * @param alignment Rule to select record
+         * @param tolerance Maximum distance in seconds between timestamp and record (0 - unlimited)
+         * @return Record or null if record not found
+         */
+        HashMap<String,Object> getRecord(Long timestamp, Alignment alignment, int tolerance) {
+            long currentDistance = current == null ? Long.MAX_VALUE : timestamp-currentTimestamp;
+            if (alignment == Alignment.EXACT) return currentDistance == 0 ? current : null;
+            HashMap<String,Object> result = current;
+            long distance = currentDistance;
+            if (alignment == Alignment.NEAREST && next != null && nextTimestamp-timestamp < distance) {
+                result = next;
+                distance = nextTimestamp-timestamp;
+            }
+            return tolerance == 0 || distance <= tolerance ? result : null;
+        }
+
+        void closeCursor() {
+            if (cursor != null) cursor.close();
+            cursor = null;
+        }
+    }
+}
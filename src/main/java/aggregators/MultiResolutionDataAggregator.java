@@ -0,0 +1,145 @@
+package aggregators;
+
+import config.ConfigManager;
+import main.ISyslog;
+import main.Syslog;
+import readers.DataCursor;
+import readers.DataReader;
+import readers.FileDataReader;
+import readers.IDataReader;
+
+import java.util.*;
+
+/**
+ * Class used to aggregate the same source data to several resolutions (aggregation periods) in single pass.
+ * Source records are read once and added to statistics of current intervals of all resolutions. Aggregated
+ * record of resolution is written when its interval closes. Each resolution writes data and status to the same
+ * folders, as SimpleFileDataAggregator with name "<name>_<aggregationPeriod>" would do.
+ */
+public class MultiResolutionDataAggregator extends DataAggregator implements Syslog.Loggable {
+
+    // Unique name of this aggregator
+    private String name = "";
+    // Full path to the folder with source data
+    private String sourcePath = "";
+    // Link to data reader, which used to read source data
+    private IDataReader sourceDataReader;
+    // Aggregators of resolutions, ordered by aggregation period
+    private ArrayList<SimpleFileDataAggregator> resolutions = new ArrayList<>();
+
+    /**
+     * Class constructors
+     */
+    public MultiResolutionDataAggregator(HashMap<String,Object> config) {
+        this.configure(config);
+    }
+
+    public MultiResolutionDataAggregator(String name) {
+        this.configure(ConfigManager.getInstance().getDataAggregator(name));
+    }
+
+    /**
+     * Method used to apply configuration to object. Aggregator of each resolution configured using the same
+     * configuration with name "<name>_<aggregationPeriod>"
+     * @param config: Configuration object
+     */
+    public void configure(HashMap<String,Object> config) {
+        super.configure(config);
+        this.name = config.getOrDefault("name",this.name).toString();
+        this.sourcePath = config.getOrDefault("sourcePath",this.sourcePath).toString();
+        if (this.syslog == null) this.syslog = new Syslog(this);
+        if (this.sourceDataReader != null) this.sourceDataReader.close();
+        this.sourceDataReader = DataReader.get(this.sourcePath,this.syslog,config);
+        resolutions.forEach(SimpleFileDataAggregator::close);
+        resolutions.clear();
+        TreeSet<Integer> periods = new TreeSet<>();
+        try {
+            for (Object period: (List<Object>)config.getOrDefault("aggregationPeriods",new ArrayList<>()))
+                periods.add(Double.valueOf(period.toString()).intValue());
+        } catch (Exception e) {
+            syslog.logException(e,this,"configure");
+        }
+        for (Integer period: periods) resolutions.add(new SimpleFileDataAggregator(getResolutionConfig(config,period)));
+    }
+
+    /**
+     * Method returns configuration of aggregator of single resolution
+     * @param config Configuration of this aggregator
+     * @param period Aggregation period of resolution
+     * @return Configuration object
+     */
+    private HashMap<String,Object> getResolutionConfig(HashMap<String,Object> config, Integer period) {
+        HashMap<String,Object> result = (HashMap<String,Object>)config.clone();
+        result.remove("aggregationPeriods");
+        result.remove("type");
+        result.put("name",name+"_"+period);
+        result.put("aggregationPeriod",period);
+        String destinationPath = config.getOrDefault("destinationPath","").toString();
+        if (!destinationPath.isEmpty()) result.put("destinationPath",destinationPath+"_"+period);
+        String statusPath = config.getOrDefault("statusPath","").toString();
+        if (!statusPath.isEmpty()) result.put("statusPath",statusPath+"/"+period);
+        return result;
+    }
+
+    /**
+     * Main entry point. Method reads source data once and aggregates it to all resolutions
+     */
+    public void aggregate() {
+        syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' started ...",this.getClass().getName(),"aggregate");
+        resolutions.forEach(SimpleFileDataAggregator::aggregateLateData);
+        ArrayList<AggregationSweep> states = new ArrayList<>();
+        for (SimpleFileDataAggregator aggregator: resolutions) {
+            FileDataReader.DataRange range = aggregator.getAggregationRange();
+            long intervalsCount = Math.round((range.endDate-range.startDate)/aggregator.getAggregationPeriod());
+            if (intervalsCount > 0) states.add(new AggregationSweep(aggregator,range.startDate,intervalsCount));
+        }
+        if (states.isEmpty()) return;
+        Long startDate = states.stream().mapToLong(AggregationSweep::getStartDate).min().getAsLong();
+        Long endDate = states.stream().mapToLong(AggregationSweep::getEndDate).max().getAsLong();
+        syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' received aggregation range ..."+startDate+"-"+endDate,
+                this.getClass().getName(),"aggregate");
+        try (DataCursor cursor = sourceDataReader.getCursor(startDate+1,endDate,false)) {
+            while (cursor.hasNext()) {
+                HashMap<String,Object> record = cursor.next();
+                Long timestamp = Long.parseLong(record.get("timestamp").toString());
+                for (AggregationSweep state: states) state.addRecord(timestamp,record);
+            }
+        }
+        states.forEach(AggregationSweep::finish);
+        resolutions.forEach(SimpleFileDataAggregator::flushLastRecord);
+    }
+
+    /**
+     * Method releases data reader of aggregator and aggregators of all resolutions
+     */
+    @Override
+    public void close() {
+        resolutions.forEach(SimpleFileDataAggregator::close);
+        if (sourceDataReader != null) sourceDataReader.close();
+        sourceDataReader = null;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns last records of all resolutions
+     * @return HashMap of last records, indexed by names of resolution aggregators
+     */
+    public HashMap<String,Object> getLastRecord() {
+        HashMap<String,Object> result = new HashMap<>();
+        for (SimpleFileDataAggregator aggregator: resolutions) result.put(aggregator.getName(),aggregator.getLastRecord());
+        return result;
+    }
+
+    /**
+     * Returns timestamp of source data, which already processed by all resolutions
+     * @return Timestamp
+     */
+    @Override
+    public long getLastRecordTimestamp() {
+        return resolutions.stream().mapToLong(SimpleFileDataAggregator::getLastRecordTimestamp).min().orElse(0L);
+    }
+}
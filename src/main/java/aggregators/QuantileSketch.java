@@ -0,0 +1,179 @@
+package aggregators;
+
+import java.util.*;
+
+/**
+ * Mergeable sketch of distribution of numeric values, used to estimate quantiles with bounded memory (KLL style).
+ * Values kept in levels. Each value of level N represents 2^N source values. When level gets "size" values, it
+ * sorted and every second value moved to next level. While number of values is less than "size", quantiles are
+ * exact. Sketches with the same size can be merged, so quantiles of longer intervals calculated from sketches
+ * of shorter intervals.
+ */
+public class QuantileSketch {
+
+    // Default number of values in level
+    public static final int DEFAULT_SIZE = 200;
+
+    // Maximum number of values in level, before it compacted
+    private int size;
+    // Values of levels
+    private double[][] levels = new double[1][];
+    // Number of values in each level
+    private int[] counts = new int[1];
+    // Number of source values, added to sketch
+    private long count = 0L;
+    // Which of values of compacted level moved to next level (0 - even, 1 - odd). Alternated on each compaction
+    private int offset = 0;
+
+    /**
+     * Class constructors
+     */
+    public QuantileSketch() {
+        this(DEFAULT_SIZE);
+    }
+
+    public QuantileSketch(int size) {
+        this.size = Math.max(2,size);
+        this.levels[0] = new double[this.size];
+    }
+
+    /**
+     * Adds value to sketch
+     * @param value Value to add
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        levels[0][counts[0]++] = value;
+        count++;
+        if (counts[0] >= size) compact(0);
+    }
+
+    /**
+     * Merges other sketch to this sketch
+     * @param sketch Sketch to merge
+     */
+    public void merge(QuantileSketch sketch) {
+        for (int level=0;level<sketch.counts.length;level++) {
+            if (sketch.counts[level] == 0) continue;
+            ensureLevel(level,sketch.counts[level]);
+            System.arraycopy(sketch.levels[level],0,levels[level],counts[level],sketch.counts[level]);
+            counts[level] += sketch.counts[level];
+        }
+        count += sketch.count;
+        for (int level=0;level<counts.length;level++)
+            if (counts[level] >= size) compact(level);
+    }
+
+    /**
+     * Method sorts values of level and moves every second of them to next level. If number of values is odd,
+     * the largest value stays in level
+     * @param level Number of level
+     */
+    private void compact(int level) {
+        Arrays.sort(levels[level],0,counts[level]);
+        int pairs = counts[level]/2;
+        ensureLevel(level+1,pairs);
+        double[] target = levels[level+1];
+        int targetCount = counts[level+1];
+        for (int index=0;index<pairs;index++) target[targetCount++] = levels[level][index*2+offset];
+        counts[level+1] = targetCount;
+        if (counts[level] % 2 == 1) levels[level][0] = levels[level][counts[level]-1];
+        counts[level] = counts[level] % 2;
+        offset ^= 1;
+        if (counts[level+1] >= size) compact(level+1);
+    }
+
+    /**
+     * Method creates level if it does not exist and grows it to hold specified number of additional values
+     * @param level Number of level
+     * @param values Number of values, which will be added to level
+     */
+    private void ensureLevel(int level, int values) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels,level+1);
+            counts = Arrays.copyOf(counts,level+1);
+        }
+        int capacity = counts[level]+values;
+        if (levels[level] == null) levels[level] = new double[Math.max(size,capacity)];
+        else if (levels[level].length < capacity) levels[level] = Arrays.copyOf(levels[level],Math.max(capacity,levels[level].length*2));
+    }
+
+    /**
+     * Returns estimated value of quantile
+     * @param rank Rank of quantile from 0 to 1 (0.5 - median)
+     * @return Smallest value, for which at least "rank" of source values are less or equal to it, or null
+     * if sketch is empty
+     */
+    public Double getQuantile(double rank) {
+        int total = 0;
+        for (int levelCount: counts) total += levelCount;
+        if (total == 0) return null;
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int index = 0;
+        for (int level=0;level<counts.length;level++)
+            for (int item=0;item<counts[level];item++) {
+                values[index] = levels[level][item];
+                weights[index++] = 1L << level;
+            }
+        Integer[] order = new Integer[total];
+        for (index=0;index<total;index++) order[index] = index;
+        Arrays.sort(order,Comparator.comparingDouble(item -> values[item]));
+        long totalWeight = 0L;
+        for (long weight: weights) totalWeight += weight;
+        double target = Math.max(0.0,Math.min(1.0,rank))*totalWeight;
+        long weight = 0L;
+        for (Integer item: order) {
+            weight += weights[item];
+            if (weight >= target) return values[item];
+        }
+        return values[order[total-1]];
+    }
+
+    /**
+     * Method removes all values from sketch
+     */
+    public void reset() {
+        Arrays.fill(counts,0);
+        count = 0L;
+        offset = 0;
+    }
+
+    /**
+     * Returns state of sketch, which can be serialized to JSON
+     * @return HashMap with size of sketch and values of levels
+     */
+    public HashMap<String,Object> getState() {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("size",size);
+        result.put("count",count);
+        ArrayList<double[]> values = new ArrayList<>();
+        for (int level=0;level<counts.length;level++)
+            values.add(levels[level] == null ? new double[0] : Arrays.copyOf(levels[level],counts[level]));
+        result.put("levels",values);
+        return result;
+    }
+
+    /**
+     * Creates sketch from state, returned by getState and deserialized from JSON
+     * @param state State of sketch
+     * @return Sketch
+     */
+    public static QuantileSketch fromState(Map<String,Object> state) {
+        QuantileSketch result = new QuantileSketch(Double.valueOf(state.getOrDefault("size",DEFAULT_SIZE).toString()).intValue());
+        List<Object> values = (List<Object>)state.getOrDefault("levels",new ArrayList<>());
+        for (int level=0;level<values.size();level++) {
+            List<Object> levelValues = (List<Object>)values.get(level);
+            result.ensureLevel(level,levelValues.size());
+            for (Object value: levelValues) result.levels[level][result.counts[level]++] = Double.parseDouble(value.toString());
+        }
+        result.count = Double.valueOf(state.getOrDefault("count",0).toString()).longValue();
+        return result;
+    }
+
+    /**
+     * Getters for properties
+     */
+    public long getCount() { return count; }
+    public int getSize() { return size; }
+}
@@ -5,35 +5,87 @@ import config.ConfigManager;
 import main.ISyslog;
 import main.LoggerApplication;
 import main.Syslog;
-import net.objecthunter.exp4j.Expression;
-import net.objecthunter.exp4j.ExpressionBuilder;
+import readers.DataCursor;
+import readers.DataReader;
 import readers.FileDataReader;
 import readers.IDataReader;
 import utils.MathUtils;
-import java.io.BufferedWriter;
-import java.nio.file.Files;
+import writers.DataWriter;
+import writers.IDataWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Class used to aggregate data, collected by logger in folder of filesystem.
  */
 public class SimpleFileDataAggregator extends DataAggregator implements Syslog.Loggable {
 
+    // Suffix of folder with partial state of aggregated intervals, relative to destination folder
+    public static final String PARTIAL_STATE_SUFFIX = "_state";
+
     /// Field definitions. Contains information about data fields, which should be aggregated
     HashMap<String,HashMap<String,Object>> fieldDefs = new HashMap<>();
 
+    // Compiled formula expressions of fields, indexed by source formula
+    private ConcurrentHashMap<String,CompiledExpression> expressions = new ConcurrentHashMap<>();
+
+    // Names of aggregated fields in order of processing
+    private String[] fieldNames = new String[0];
+    // Which of aggregated fields need numeric statistics (by index in fieldNames)
+    private boolean[] numericFields = new boolean[0];
+    // Which of aggregated fields need quantile sketch (by index in fieldNames)
+    private boolean[] quantileFields = new boolean[0];
+    // Which of aggregated fields need distinct count sketch (by index in fieldNames)
+    private boolean[] distinctFields = new boolean[0];
+    // Compiled formula expressions of aggregated fields (null for fields without formula)
+    private CompiledExpression[] fieldExpressions = new CompiledExpression[0];
+    // Which of aggregated fields merged from partial state of source aggregator (by index in fieldNames)
+    private boolean[] rollupFields = new boolean[0];
+    // Which of aggregated fields calculated from column batches (by index in fieldNames)
+    private boolean[] columnarFields = new boolean[0];
+    // Indexes of columns of source fields of each columnar field in column batch: variables of expression or
+    // single source field (by index in fieldNames)
+    private int[][] fieldColumns = new int[0][];
+    // Names of source fields, decoded to column batches
+    private String[] columns = new String[0];
+
+    // Names of dimension fields, by which source records grouped. Aggregated records of each group written to
+    // subfolder of destination folder, named by values of dimension fields. If empty, records are not grouped
+    private String[] groupBy = new String[0];
+    // Values of dimension fields of groups, indexed by group keys
+    private ConcurrentHashMap<String,HashMap<String,Object>> groupDimensions = new ConcurrentHashMap<>();
+
     // Aggregation period in seconds
     private int aggregationPeriod = 5;
 
     // How much aggregation periods of source data to process per single run. If 0, then unlimited e.g. all data
     private int aggregatesPerRun = 0;
 
+    // Number of threads, which aggregate intervals in parallel when aggregator catches up with source data (1 - sequential)
+    private int parallelism = 1;
+
+    // Maximum number of intervals in chunk, which aggregated by single thread in parallel mode
+    private int parallelChunkSize = 64;
+
+    // Depth of window in seconds before last aggregated interval, in which aggregator looks for source records
+    // written after previous run and re-aggregates intervals of these records (0 - late records ignored)
+    private int lateDataWindow = 0;
+
+    // Should aggregator keep summarized statistics of open interval in status folder, so next run adds only
+    // source records, which are newer than records of previous run, and writes interval when it is closed
+    private boolean persistOpenInterval = false;
+
+    // Should numeric fields be calculated from source records, decoded to column batches, instead of record by record.
+    // Disabled by default, until ColumnarAggregationBenchmark confirms speedup with JMH
+    private boolean columnar = false;
+
     // Should gaps in data be filled with values of previous period (or from next period if no previous period)
     private boolean fillDataGaps = true;
 
@@ -43,11 +95,30 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
     // Full path to the folder with source data
     private String sourcePath = "";
 
+    // Name of aggregator, which partial state used as source data. If empty, source data is raw data records
+    private String sourceAggregator = "";
+
+    // Should aggregator write partial state of aggregated intervals, so other aggregators can roll it up
+    private boolean writePartialState = false;
+
     // Link to FileDataReader object, which will be used to work with source data files
     private IDataReader sourceDataReader;
 
     private IDataReader aggregatorDataReader;
 
+    // Data writer, which writes aggregated records to destination folder in configured storage format
+    private IDataWriter aggregatorDataWriter;
+
+    // Data writer, which writes partial state of aggregated intervals (null if partial state not written)
+    private IDataWriter stateDataWriter;
+
+    // Data writers of aggregated records and of partial state of groups, indexed by group keys
+    private HashMap<String,IDataWriter> groupDataWriters = new HashMap<>();
+    private HashMap<String,IDataWriter> groupStateWriters = new HashMap<>();
+
+    // Configuration, used to create data writers of groups
+    private HashMap<String,Object> writerConfig;
+
     // Unique name of this aggregator
     private String name = "";
 
@@ -89,8 +160,32 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
         this.fillDataGaps = (boolean)config.getOrDefault("fillDataGaps",this.fillDataGaps);
         this.aggregationPeriod = Double.valueOf(config.getOrDefault("aggregationPeriod",this.aggregationPeriod).toString()).intValue();
         this.aggregatesPerRun = Double.valueOf(config.getOrDefault("aggregatesPerRun",this.aggregatesPerRun).toString()).intValue();
+        this.parallelism = Double.valueOf(config.getOrDefault("parallelism",this.parallelism).toString()).intValue();
+        this.parallelChunkSize = Math.max(1,Double.valueOf(config.getOrDefault("parallelChunkSize",this.parallelChunkSize).toString()).intValue());
+        this.persistOpenInterval = (boolean)config.getOrDefault("persistOpenInterval",this.persistOpenInterval);
+        this.columnar = (boolean)config.getOrDefault("columnar",this.columnar);
+        this.lateDataWindow = Double.valueOf(config.getOrDefault("lateDataWindow",this.lateDataWindow).toString()).intValue();
+        this.sourceAggregator = config.getOrDefault("sourceAggregator",this.sourceAggregator).toString();
+        this.writePartialState = (boolean)config.getOrDefault("writePartialState",this.writePartialState);
+        if (!this.sourceAggregator.isEmpty()) this.sourcePath = getPartialStatePath(this.sourceAggregator);
+        Object groupBy = config.getOrDefault("groupBy",String.join(",",this.groupBy));
+        if (groupBy instanceof List) this.groupBy = ((List<Object>)groupBy).stream().map(Object::toString).toArray(String[]::new);
+        else this.groupBy = groupBy.toString().isEmpty() ? new String[0] : groupBy.toString().split(",");
+        this.groupDimensions.clear();
         this.syslog = this.getSyslog();
-        this.sourceDataReader = new FileDataReader(this.sourcePath,this.syslog);
+        this.compileFields();
+        if (this.sourceDataReader != null) this.sourceDataReader.close();
+        this.sourceDataReader = DataReader.get(this.sourcePath,this.syslog,config);
+        if (this.aggregatorDataReader != null) this.aggregatorDataReader.close();
+        this.aggregatorDataReader = null;
+        if (this.aggregatorDataWriter != null) this.aggregatorDataWriter.close();
+        this.aggregatorDataWriter = DataWriter.create(config,this.getAggregatorPath(),this.syslog);
+        if (this.stateDataWriter != null) this.stateDataWriter.close();
+        this.stateDataWriter = null;
+        this.closeGroupWriters();
+        this.writerConfig = config;
+        if (this.writePartialState)
+            this.stateDataWriter = DataWriter.create(config,this.getAggregatorPath()+PARTIAL_STATE_SUFFIX,this.syslog);
     }
 
     /**
@@ -99,12 +194,203 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      */
     public void aggregate() {
         syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' started ...",this.getClass().getName(),"aggregate");
+        aggregateLateData();
         FileDataReader.DataRange range = getAggregationRange();
         syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' received aggregation range ..."+range.startDate+"-"+range.endDate,
                 this.getClass().getName(),"aggregate");
-        Stream.iterate(range.startDate,(Long timestamp) -> timestamp+aggregationPeriod)
-                .limit(Math.round((range.endDate-range.startDate)/aggregationPeriod))
-                .forEach(this::aggregateInterval);
+        long intervalsCount = Math.round((range.endDate-range.startDate)/aggregationPeriod);
+        if (persistOpenInterval) {
+            if (intervalsCount >= 0) aggregateWithOpenInterval(range.startDate,intervalsCount);
+        } else if (intervalsCount <= 0) return;
+        else if (parallelism > 1 && intervalsCount > 1) {
+            aggregateParallel(range.startDate,intervalsCount);
+        } else
+            readSourceData(new AggregationSweep(this,range.startDate,intervalsCount));
+        flushLastRecord();
+    }
+
+    /**
+     * Method finds source records inside "lateDataWindow", which were written after previous run of aggregator
+     * (watermark), and aggregates again intervals of these records, which were aggregated already. Only aggregated
+     * records of these intervals are rewritten, last aggregated record stays the same
+     */
+    void aggregateLateData() {
+        if (lateDataWindow <= 0) return;
+        if (lastRecord == null || !lastRecord.containsKey("timestamp")) readAndSetLastRecord();
+        long checkTime = System.currentTimeMillis();
+        String watermark = readStatus("watermark");
+        long lastTimestamp = getLastRecordTimestamp();
+        if (watermark != null && lastTimestamp > 0) {
+            try {
+                long endDate = persistOpenInterval ? lastTimestamp+aggregationPeriod : lastTimestamp;
+                TreeSet<Long> intervals = new TreeSet<>();
+                for (Long timestamp: sourceDataReader.getModifiedTimestamps(lastTimestamp-lateDataWindow,endDate,
+                        Long.parseLong(watermark.trim())))
+                    if (alignDate(timestamp-1) < endDate) intervals.add(alignDate(timestamp-1));
+                if (!intervals.isEmpty())
+                    syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' found late data in "+intervals.size()+
+                            " intervals",this.getClass().getName(),"aggregateLateData");
+                for (Long interval: intervals) readSourceData(new AggregationSweep(this,interval,1));
+            } catch (Exception e) {
+                syslog.logException(e,this,"aggregateLateData");
+                return;
+            }
+        }
+        writeStatus("watermark",String.valueOf(checkTime));
+    }
+
+    /**
+     * Method splits aggregation range to chunks of intervals and aggregates chunks in parallel. Aggregated records
+     * of chunks are written strictly in order of timestamps, so last record never moves ahead of interval, which
+     * is not written yet. Number of chunks in progress and number of intervals in chunk ("parallelChunkSize")
+     * limited, to keep memory usage constant while catching up
+     * @param startDate Start date of first interval
+     * @param intervalsCount Number of intervals to aggregate
+     */
+    private void aggregateParallel(Long startDate, long intervalsCount) {
+        long chunkSize = Math.min(parallelChunkSize,Math.max(1L,intervalsCount/(parallelism*4)));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<AggregationSweep>> tasks = new ArrayDeque<>();
+        try {
+            long interval = 0;
+            while (interval < intervalsCount || !tasks.isEmpty()) {
+                while (interval < intervalsCount && tasks.size() < parallelism*2) {
+                    AggregationSweep sweep = new AggregationSweep(this,startDate+interval*aggregationPeriod,
+                            Math.min(chunkSize,intervalsCount-interval),true);
+                    tasks.add(pool.submit(() -> readSourceData(sweep)));
+                    interval += chunkSize;
+                }
+                tasks.poll().join().getResults().forEach(this::writeAggregates);
+            }
+        } catch (Exception e) {
+            syslog.logException(e,this,"aggregateParallel");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Method aggregates closed intervals and adds source records of open interval, which follows them, to
+     * statistics of open interval, saved by previous run. Statistics of open interval saved to status folder
+     * with timestamp of last added record, so each run reads only new source records. Open interval written
+     * when it is closed. Intervals aggregated sequentially in this mode
+     * @param startDate Start date of first interval
+     * @param intervalsCount Number of closed intervals to aggregate
+     */
+    private void aggregateWithOpenInterval(Long startDate, long intervalsCount) {
+        Long openDate = startDate+intervalsCount*aggregationPeriod;
+        AggregationSweep sweep = new AggregationSweep(this,startDate,intervalsCount+1);
+        Long fromDate = startDate;
+        long checkTime = System.currentTimeMillis();
+        try {
+            HashMap<String,Object> state = readOpenInterval(startDate);
+            if (state != null) {
+                sweep.setGroups(restoreGroups((Map<String,Object>)state.get("groups")));
+                fromDate = Long.max(startDate,Long.parseLong(state.get("position").toString()));
+            }
+            readSourceData(sweep,fromDate);
+            if (sweep.getStartDate() < openDate) sweep.finish();
+            writeOpenInterval(openDate,sweep.getStartDate().equals(openDate) ? sweep.getGroups() : new HashMap<>(),
+                    Long.max(fromDate,sweep.getLastTimestamp()),checkTime);
+        } catch (Exception e) {
+            syslog.logException(e,this,"aggregateWithOpenInterval");
+        }
+    }
+
+    /**
+     * Method reads statistics of open interval, saved by previous run. If "lateDataWindow" is set and source
+     * records of interval were changed after they were added to statistics, saved statistics ignored, so
+     * interval aggregated again from all source records
+     * @param startDate Start date of first interval, which should be aggregated now
+     * @return Saved state with "position", "time" and "groups" or null if state does not exist or can not be used
+     */
+    private HashMap<String,Object> readOpenInterval(Long startDate) {
+        String value = readStatus("open_interval");
+        if (value == null || value.isEmpty()) return null;
+        HashMap<String,Object> state = (new Gson()).fromJson(value,HashMap.class);
+        if (!startDate.toString().equals(state.get("startDate")) || !(state.get("groups") instanceof Map)) return null;
+        Long position = Long.parseLong(state.get("position").toString());
+        if (lateDataWindow > 0 && position > startDate &&
+                !sourceDataReader.getModifiedTimestamps(startDate+1,position,Long.parseLong(state.get("time").toString())).isEmpty())
+            return null;
+        if (state.get("dimensions") instanceof Map)
+            ((Map<String,Map<String,Object>>)state.get("dimensions"))
+                    .forEach((group,dimensions) -> groupDimensions.putIfAbsent(group,new HashMap<>(dimensions)));
+        return state;
+    }
+
+    /**
+     * Method writes statistics of open interval to status folder
+     * @param startDate Start date of open interval
+     * @param groups Statistics of groups in open interval
+     * @param position Timestamp of last source record, added to statistics
+     * @param time Time in milliseconds, when aggregator started to read source records
+     */
+    private void writeOpenInterval(Long startDate, HashMap<String,HashMap<String,AggregateFieldStats>> groups,
+                                   Long position, long time) {
+        HashMap<String,Object> state = new HashMap<>();
+        HashMap<String,Object> groupsState = new HashMap<>();
+        HashMap<String,Object> dimensions = new HashMap<>();
+        for (String group: groups.keySet()) {
+            HashMap<String,Object> fieldsState = new HashMap<>();
+            HashMap<String,AggregateFieldStats> stats = groups.get(group);
+            for (String fieldName: stats.keySet())
+                if (!stats.get(fieldName).isEmpty()) fieldsState.put(fieldName,stats.get(fieldName).getState());
+            if (fieldsState.size() == 0) continue;
+            groupsState.put(group,fieldsState);
+            if (!group.isEmpty()) dimensions.put(group,groupDimensions.get(group));
+        }
+        state.put("startDate",startDate.toString());
+        state.put("position",position.toString());
+        state.put("time",String.valueOf(time));
+        state.put("groups",groupsState);
+        state.put("dimensions",dimensions);
+        writeStatus("open_interval",(new Gson()).toJson(state));
+    }
+
+    /**
+     * Method creates statistics of groups from saved state
+     * @param state State of groups, indexed by group keys, with partial state of fields
+     * @return Statistics of groups, indexed by group keys
+     */
+    private HashMap<String,HashMap<String,AggregateFieldStats>> restoreGroups(Map<String,Object> state) {
+        HashMap<String,HashMap<String,AggregateFieldStats>> result = new HashMap<>();
+        for (String group: state.keySet()) {
+            if (!group.isEmpty() && !groupDimensions.containsKey(group)) continue;
+            Map<String,Object> fieldsState = (Map<String,Object>)state.get(group);
+            HashMap<String,AggregateFieldStats> stats = new HashMap<>();
+            for (int index=0;index<fieldNames.length;index++)
+                if (fieldsState.get(fieldNames[index]) instanceof Map)
+                    getFieldStats(index,stats).merge((Map<String,Object>)fieldsState.get(fieldNames[index]));
+            result.put(group,stats);
+        }
+        return result;
+    }
+
+    /**
+     * Method reads source data of intervals of sweep and adds it to sweep
+     * @param sweep Sweep of intervals
+     * @return The same sweep after all intervals closed
+     */
+    private AggregationSweep readSourceData(AggregationSweep sweep) {
+        readSourceData(sweep,sweep.getStartDate());
+        sweep.finish();
+        return sweep;
+    }
+
+    /**
+     * Method reads source records of sweep, which are after specified date, and adds them to sweep. Intervals
+     * after last record stay open
+     * @param sweep Sweep of intervals
+     * @param fromDate Timestamp, after which source records read
+     */
+    private void readSourceData(AggregationSweep sweep, Long fromDate) {
+        try (DataCursor cursor = sourceDataReader.getCursor(fromDate+1,sweep.getEndDate(),false)) {
+            while (cursor.hasNext()) {
+                HashMap<String,Object> record = cursor.next();
+                sweep.addRecord(Long.parseLong(record.get("timestamp").toString()),record);
+            }
+        }
     }
 
     /**
@@ -115,6 +401,7 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
         if (lastRecord == null || !lastRecord.containsKey("timestamp")) readAndSetLastRecord();
         syslog.log(ISyslog.LogLevel.DEBUG,"Last record "+lastRecord.toString(),this.getClass().getName(),"getAggregationRange");
         Long startDate = Long.parseLong(lastRecord.getOrDefault("timestamp",0).toString());
+        if (persistOpenInterval && startDate > 0) startDate += aggregationPeriod;
         Long endDate = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
         if (this.aggregatesPerRun!=0) endDate = startDate + aggregatesPerRun*aggregationPeriod;
         FileDataReader.DataStats sourceDataRange = sourceDataReader.getDataStats(startDate,endDate,true);
@@ -133,50 +420,141 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
     }
 
     /**
-     * Method used to write single aggregation interval
+     * Method used to write aggregated records of all groups of interval
+     * @param startDate Start date of interval
+     * @param groups Summarized statistics of fields of groups in interval, indexed by group keys
+     */
+    void writeAggregates(Long startDate, HashMap<String,HashMap<String,AggregateFieldStats>> groups) {
+        for (String group: groups.keySet()) writeAggregate(startDate,group,groups.get(group));
+    }
+
+    /**
+     * Method used to calculate aggregated values of interval from summarized statistics of fields and write
+     * aggregated record to destination folder
      * @param startDate: Start date of interval
+     * @param stats: Summarized statistics of fields in interval
      */
-    void aggregateInterval(Long startDate) {
-        NavigableMap<Long,HashMap<String,Object>> data = sourceDataReader.getData(startDate+1,
-                startDate+aggregationPeriod,false);
-        HashMap<String,AggregateFieldStats> stats = getAggregateStats(data);
-        syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' started interval "+startDate+"-"+(startDate+aggregationPeriod),
-                this.getClass().getName(),"aggregate");
+    void writeAggregate(Long startDate, HashMap<String,AggregateFieldStats> stats) {
+        writeAggregate(startDate,"",stats);
+    }
+
+    /**
+     * Method used to calculate aggregated values of group in interval from summarized statistics of fields and write
+     * aggregated record to destination folder of group
+     * @param startDate: Start date of interval
+     * @param group: Key of group (empty if records are not grouped)
+     * @param stats: Summarized statistics of fields in interval
+     */
+    private void writeAggregate(Long startDate, String group, HashMap<String,AggregateFieldStats> stats) {
         if (stats.size() == 0) return;
+        if (writePartialState) writePartialState(startDate,group,stats);
         HashMap<String,Object> aggregate = new HashMap<>();
         for (String fieldName: stats.keySet()) {
             Object value = getAggregatedValue(fieldName,stats.get(fieldName));
             if (value != null) aggregate.put(fieldName,value);
         }
         if (aggregate.size() == 0) return;
+        if (!group.isEmpty()) groupDimensions.get(group).forEach(aggregate::putIfAbsent);
         aggregate = markRecord(startDate,aggregate);
         syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' created record "+aggregate.toString(),
                 this.getClass().getName(),"aggregate");
-        writeRecord(aggregate);
+        writeRecord(group,aggregate);
+    }
+
+    /**
+     * Method used to write partial state of fields in interval, which aggregators with "sourceAggregator" option
+     * merge to calculate aggregates of longer intervals. Partial state record marked by end date of interval,
+     * so it falls into the same interval of rollup aggregator as source records of this interval
+     * @param startDate Start date of interval
+     * @param group Key of group (empty if records are not grouped)
+     * @param stats Summarized statistics of fields in interval
+     */
+    private void writePartialState(Long startDate, String group, HashMap<String,AggregateFieldStats> stats) {
+        HashMap<String,Object> state = new HashMap<>();
+        for (String fieldName: stats.keySet())
+            if (!stats.get(fieldName).isEmpty()) state.put(fieldName,stats.get(fieldName).getState());
+        if (state.size() == 0) return;
+        state.put("timestamp",String.valueOf(startDate+aggregationPeriod));
+        try {
+            getGroupWriter(group,true).write(state);
+        } catch (Exception e) {
+            syslog.logException(e,this,"writePartialState");
+        }
     }
 
     /**
      * Method used to write aggregate record to file
+     * @param group Key of group (empty if records are not grouped)
      * @param aggregate Record to write
      */
-    private void writeRecord(HashMap<String,Object> aggregate) {
-        Path path = Paths.get(getRecordPath(aggregate));
+    private void writeRecord(String group, HashMap<String,Object> aggregate) {
         try {
-            if (!Files.exists(path.getParent())) Files.createDirectories(path.getParent());
-            if (Files.exists(path)) Files.delete(path);
-            BufferedWriter writer = Files.newBufferedWriter(path,StandardOpenOption.CREATE_NEW);
-            writer.write((new Gson()).toJson(aggregate));
-            writer.flush();
-            writer.close();
-            lastRecord = (HashMap<String,Object>)aggregate.clone();
-            writeLastRecord();
-            syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' wrote record to"+path.toString(),
+            getGroupWriter(group,false).write(aggregate);
+            if (Long.parseLong(aggregate.get("timestamp").toString()) >= getLastRecordTimestamp()) {
+                lastRecord = (HashMap<String,Object>)aggregate.clone();
+                checkpoint();
+            }
+            syslog.log(ISyslog.LogLevel.DEBUG,"Aggregator '"+this.name+"' wrote record "+aggregate.get("timestamp"),
                     this.getClass().getName(),"aggregate");
         } catch (Exception e) {
             syslog.logException(e,this,"aggregateInterval");
         }
     }
 
+    /**
+     * Returns data writer of aggregated records or of partial state of group. Writers of groups created on first
+     * use in subfolders of destination folder and of partial state folder
+     * @param group Key of group (empty if records are not grouped)
+     * @param state If true, returns writer of partial state
+     * @return Data writer
+     */
+    private IDataWriter getGroupWriter(String group, boolean state) {
+        if (group.isEmpty()) return state ? stateDataWriter : aggregatorDataWriter;
+        HashMap<String,IDataWriter> writers = state ? groupStateWriters : groupDataWriters;
+        IDataWriter writer = writers.get(group);
+        if (writer == null) {
+            String path = getAggregatorPath()+(state ? PARTIAL_STATE_SUFFIX : "")+"/"+group;
+            writer = DataWriter.create(writerConfig,path,syslog);
+            writers.put(group,writer);
+        }
+        return writer;
+    }
+
+    /**
+     * Method escapes value of dimension field for key of group. Letters, digits, dashes and dots (except first one)
+     * kept as is, other characters (including underscores, which separate values in key) replaced by "%XX" codes
+     * of their UTF-8 bytes. So different values always have different escaped values, which are safe names of folders
+     * @param value Value of dimension field
+     * @return Escaped value
+     */
+    static String escapeGroupValue(String value) {
+        StringBuilder result = null;
+        for (int index=0;index<value.length();) {
+            int code = value.codePointAt(index);
+            int count = Character.charCount(code);
+            boolean safe = (code >= 'A' && code <= 'Z') || (code >= 'a' && code <= 'z') || (code >= '0' && code <= '9') ||
+                    code == '-' || (code == '.' && index > 0);
+            if (!safe && result == null) result = new StringBuilder(value.substring(0,index));
+            if (safe && result != null) result.append((char)code);
+            else if (!safe)
+                for (byte symbol: value.substring(index,index+count).getBytes(StandardCharsets.UTF_8))
+                    result.append('%').append(Character.toUpperCase(Character.forDigit((symbol >> 4) & 0xF,16)))
+                            .append(Character.toUpperCase(Character.forDigit(symbol & 0xF,16)));
+            index += count;
+        }
+        return result == null ? value : result.toString();
+    }
+
+    /**
+     * Method closes data writers of all groups
+     */
+    private void closeGroupWriters() {
+        groupDataWriters.values().forEach(IDataWriter::close);
+        groupStateWriters.values().forEach(IDataWriter::close);
+        groupDataWriters.clear();
+        groupStateWriters.clear();
+    }
+
     /**
      * Method used to calculate aggregated value from data, collected in interval
      * @param fieldName: Name of field, for which calculate aggregated value
@@ -184,26 +562,46 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      * @return Calculated value or null in case of errors
      */
     Object getAggregatedValue(String fieldName, AggregateFieldStats stats) {
-        if (stats == null) return null;
+        if (stats == null || stats.isEmpty()) return null;
         HashMap<String,Object> fieldConf = this.fieldDefs.get(fieldName);
         if (fieldConf == null) return null;
         int precision = (int)fieldConf.getOrDefault("precision",2);
         Object result = null;
-        switch (fieldConf.getOrDefault("aggregate_function","constant").toString()) {
-            case "count": result = stats.count;break;
-            case "sum": result = stats.sum;break;
-            case "min": result = stats.min;break;
-            case "max": result = stats.max;break;
-            case "first": result = stats.first;break;
-            case "last": result = stats.last;break;
-            case "constant": result = stats.first;break;
-            case "average":
+        String function = fieldConf.getOrDefault("aggregate_function","constant").toString();
+        switch (function) {
+            case "first": result = stats.getFirst();break;
+            case "last": result = stats.getLast();break;
+            case "constant": result = stats.getFirst();break;
+            case "distinct_count": result = stats.distinct != null ? stats.distinct.estimate() : null;break;
+            default:
                 if (stats.count == 0) return null;
-                result = stats.sum / stats.count;
+                Double rank = getQuantileRank(function);
+                if (rank != null) {
+                    result = stats.quantiles != null ? stats.quantiles.getQuantile(rank) : null;
+                    break;
+                }
+                switch (function) {
+                    case "count": result = stats.count;break;
+                    case "sum": result = stats.sum;break;
+                    case "min": result = stats.min;break;
+                    case "max": result = stats.max;break;
+                    case "average": result = stats.sum / stats.count;
+                }
         }
         return result instanceof Double ? MathUtils.round(result,precision) : result;
     }
 
+    /**
+     * Method returns rank of quantile for quantile aggregate functions, like "p50", "p95" or "p99.9"
+     * @param function Name of aggregate function
+     * @return Rank of quantile from 0 to 1 or null if function is not a quantile function
+     */
+    static Double getQuantileRank(String function) {
+        if (!function.matches("p[0-9]+(\\.[0-9]+)?")) return null;
+        double rank = Double.parseDouble(function.substring(1))/100;
+        return rank <= 1.0 ? rank : null;
+    }
+
     /**
      * Method returns summarized data for each field from provided source data array
      * @param data: Source data array
@@ -211,17 +609,143 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      */
     HashMap<String,AggregateFieldStats> getAggregateStats(NavigableMap<Long,HashMap<String,Object>> data) {
         HashMap<String,AggregateFieldStats> result = new HashMap<>();
-        for(Long timestamp : data.keySet() ) {
-            HashMap<String,Object> record = data.get(timestamp);
-            if (record.size()==0) continue;
-            for (String fieldName: this.fieldDefs.keySet()) {
-                AggregateFieldStats stats = result.get(fieldName);
-                Object value = calculateFieldValue(fieldName,record);
-                stats = addEntryToFieldStats(value,stats);
-                if (stats != null) result.put(fieldName,stats);
+        for(Long timestamp : data.keySet() ) addRecordToStats(data.get(timestamp),result);
+        return result;
+    }
+
+    /**
+     * Method adds values of fields of source data record to summarized data of fields of group of record. Records,
+     * which do not have all dimension fields, skipped
+     * @param record: Source data record
+     * @param groups: HashMap of summarized data of groups, indexed by group keys, which should be updated
+     */
+    void addRecordToGroups(HashMap<String,Object> record, HashMap<String,HashMap<String,AggregateFieldStats>> groups) {
+        addRecordToGroups(record,groups,null);
+    }
+
+    /**
+     * Method adds values of fields of source data record to summarized data of fields of group of record. If
+     * column batches provided, values of columnar fields added to column batch of group and batch added to
+     * summarized data when it is full
+     * @param record: Source data record
+     * @param groups: HashMap of summarized data of groups, indexed by group keys, which should be updated
+     * @param batches: Column batches of groups, indexed by group keys (null if columnar fields calculated record by record)
+     */
+    void addRecordToGroups(HashMap<String,Object> record, HashMap<String,HashMap<String,AggregateFieldStats>> groups,
+                           HashMap<String,ColumnBatch> batches) {
+        String group = getGroupKey(record);
+        if (group == null) return;
+        HashMap<String,AggregateFieldStats> stats = groups.get(group);
+        if (stats == null) {
+            stats = new HashMap<>();
+            groups.put(group,stats);
+            if (!group.isEmpty() && !groupDimensions.containsKey(group)) {
+                HashMap<String,Object> dimensions = new HashMap<>();
+                for (String field: groupBy) dimensions.put(field,record.get(field));
+                groupDimensions.putIfAbsent(group,dimensions);
             }
         }
-        return result;
+        if (batches == null) {
+            addRecordToStats(record,stats);
+            return;
+        }
+        addRecordToStats(record,stats,true);
+        ColumnBatch batch = batches.get(group);
+        if (batch == null) {
+            batch = new ColumnBatch(columns);
+            batches.put(group,batch);
+        }
+        if (batch.add(record)) addBatchToStats(batch,stats);
+    }
+
+    /**
+     * Method calculates values of columnar fields from records of column batch, adds them to summarized data
+     * of fields column by column and clears batch
+     * @param batch: Column batch
+     * @param result: HashMap of statistical objects for each field, which should be updated
+     */
+    void addBatchToStats(ColumnBatch batch, HashMap<String,AggregateFieldStats> result) {
+        if (batch.size() == 0) return;
+        for (int index=0;index<fieldNames.length;index++) {
+            if (!columnarFields[index]) continue;
+            if (fieldExpressions[index] != null) {
+                fieldExpressions[index].evaluateColumns(batch,fieldColumns[index],batch.getResult());
+                getFieldStats(index,result).add(batch.getResult(),batch.size());
+            } else
+                getFieldStats(index,result).add(batch.getColumn(fieldColumns[index][0]),batch.size());
+        }
+        batch.clear();
+    }
+
+    /**
+     * Method returns key of group of record, made from escaped values of dimension fields, separated by
+     * underscores. Key used as name of subfolder of group
+     * @param record Source data record
+     * @return Key of group, empty string if records are not grouped or null if record does not have
+     * one of dimension fields
+     */
+    String getGroupKey(HashMap<String,Object> record) {
+        if (groupBy.length == 0) return "";
+        if (groupBy.length == 1) {
+            Object value = record.get(groupBy[0]);
+            return value == null || value.toString().isEmpty() ? null : escapeGroupValue(value.toString());
+        }
+        StringBuilder result = new StringBuilder();
+        for (int index=0;index<groupBy.length;index++) {
+            Object value = record.get(groupBy[index]);
+            if (value == null) return null;
+            if (index > 0) result.append("_");
+            result.append(escapeGroupValue(value.toString()));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Method adds values of fields of source data record to summarized data of fields
+     * @param record: Source data record
+     * @param result: HashMap of statistical objects for each field, which should be updated
+     */
+    void addRecordToStats(HashMap<String,Object> record, HashMap<String,AggregateFieldStats> result) {
+        addRecordToStats(record,result,false);
+    }
+
+    /**
+     * Method adds values of fields of source data record to summarized data of fields
+     * @param record: Source data record
+     * @param result: HashMap of statistical objects for each field, which should be updated
+     * @param skipColumnar: If true, columnar fields skipped, because they calculated from column batch
+     */
+    private void addRecordToStats(HashMap<String,Object> record, HashMap<String,AggregateFieldStats> result,
+                                  boolean skipColumnar) {
+        if (record.size()==0) return;
+        for (int index=0;index<fieldNames.length;index++) {
+            if (skipColumnar && columnarFields[index]) continue;
+            if (rollupFields[index]) {
+                Object state = record.get(fieldNames[index]);
+                if (state instanceof Map) getFieldStats(index,result).merge((Map<String,Object>)state);
+            } else if (fieldExpressions[index] != null) {
+                double value = fieldExpressions[index].evaluateValue(record);
+                if (!Double.isNaN(value)) getFieldStats(index,result).add(value);
+            } else {
+                Object value = calculateFieldValue(fieldNames[index],record);
+                if (value != null) getFieldStats(index,result).add(value);
+            }
+        }
+    }
+
+    /**
+     * Method returns statistical object of field from summarized data and creates it if it does not exist
+     * @param index Index of field in fieldNames
+     * @param result HashMap of statistical objects for each field
+     * @return Statistical object of field
+     */
+    private AggregateFieldStats getFieldStats(int index, HashMap<String,AggregateFieldStats> result) {
+        AggregateFieldStats stats = result.get(fieldNames[index]);
+        if (stats == null) {
+            stats = new AggregateFieldStats(numericFields[index],quantileFields[index],distinctFields[index]);
+            result.put(fieldNames[index],stats);
+        }
+        return stats;
     }
 
     /**
@@ -235,7 +759,7 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
         if (fieldConf.containsKey("expression") && !fieldConf.get("expression").toString().isEmpty())
             return evaluateExpression(fieldConf.get("expression").toString(),record);
         else if (fieldConf.containsKey("field") && !fieldConf.get("field").toString().isEmpty())
-            return record.get(fieldName);
+            return record.get(fieldConf.get("field").toString());
         else if (fieldConf.containsKey("constant") && !fieldConf.get("constant").toString().isEmpty())
             return evaluateConstant(fieldConf.get("constant").toString());
         else
@@ -249,20 +773,69 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      * @return: Calculated value or null in case of errors
      */
     Double evaluateExpression(String expression,HashMap<String,Object> record) {
-        try {
-            Expression calculator = new ExpressionBuilder(expression).variables(record.keySet()).build();
-            for (String fieldName: record.keySet()) {
-                Object rawValue = record.get(fieldName);
-                try {
-                    Double value = Double.valueOf(rawValue.toString());
-                    calculator.setVariable(fieldName,value);
-                } catch (NumberFormatException e) { }
-            }
-            return calculator.evaluate();
-        } catch (Exception e) {
-            //syslog.log(Syslog.LogLevel.WARNING,"Could not process expression '"+expression+"' for record '"+
-            //record+"'. Exception thrown: "+e.getMessage()+".",this.getClass().getName(),"evaluateExpression");
-            return null;
+        return expressions.computeIfAbsent(expression,CompiledExpression::new).evaluate(record);
+    }
+
+    /**
+     * Method prepares field definitions for aggregation: compiles formula expressions of all fields, which have it,
+     * so records evaluated without parsing formulas again, and decides which fields need numeric statistics,
+     * so values of other fields are not converted to numbers
+     */
+    private void compileFields() {
+        expressions.clear();
+        fieldNames = fieldDefs.keySet().toArray(new String[0]);
+        numericFields = new boolean[fieldNames.length];
+        quantileFields = new boolean[fieldNames.length];
+        distinctFields = new boolean[fieldNames.length];
+        fieldExpressions = new CompiledExpression[fieldNames.length];
+        rollupFields = new boolean[fieldNames.length];
+        for (int index=0;index<fieldNames.length;index++) {
+            HashMap<String,Object> fieldConf = fieldDefs.get(fieldNames[index]);
+            String function = fieldConf.getOrDefault("aggregate_function","constant").toString();
+            numericFields[index] = !function.equals("first") && !function.equals("last") && !function.equals("constant")
+                    && !function.equals("distinct_count");
+            quantileFields[index] = getQuantileRank(function) != null;
+            distinctFields[index] = function.equals("distinct_count");
+            rollupFields[index] = !sourceAggregator.isEmpty() && fieldConf.getOrDefault("constant","").toString().isEmpty();
+            if (rollupFields[index]) continue;
+            String expression = fieldConf.getOrDefault("expression","").toString();
+            if (expression.isEmpty()) continue;
+            CompiledExpression compiled = new CompiledExpression(expression);
+            if (!compiled.isValid())
+                syslog.log(ISyslog.LogLevel.WARNING,"Could not compile expression '"+expression+"' of aggregator '"+
+                        this.name+"'",this.getClass().getName(),"compileFields");
+            expressions.put(expression,compiled);
+            fieldExpressions[index] = compiled;
+        }
+        compileColumns();
+    }
+
+    /**
+     * Method decides which of aggregated fields calculated from column batches and which source fields decoded
+     * to columns. Only numeric fields, which calculated from valid formula or from single source field, are columnar
+     */
+    private void compileColumns() {
+        columnarFields = new boolean[fieldNames.length];
+        fieldColumns = new int[fieldNames.length][];
+        LinkedHashSet<String> columnNames = new LinkedHashSet<>();
+        for (int index=0;index<fieldNames.length && columnar;index++) {
+            if (!numericFields[index] || rollupFields[index]) continue;
+            String field = fieldDefs.get(fieldNames[index]).getOrDefault("field","").toString();
+            if (fieldExpressions[index] != null) {
+                if (!fieldExpressions[index].isValid()) continue;
+                columnNames.addAll(Arrays.asList(fieldExpressions[index].getVariables()));
+            } else if (!field.isEmpty()) columnNames.add(field);
+            else continue;
+            columnarFields[index] = true;
+        }
+        columns = columnNames.toArray(new String[0]);
+        List<String> columnsList = Arrays.asList(columns);
+        for (int index=0;index<fieldNames.length;index++) {
+            if (!columnarFields[index]) continue;
+            String[] sourceFields = fieldExpressions[index] != null ? fieldExpressions[index].getVariables() :
+                    new String[] {fieldDefs.get(fieldNames[index]).get("field").toString()};
+            fieldColumns[index] = new int[sourceFields.length];
+            for (int field=0;field<sourceFields.length;field++) fieldColumns[index][field] = columnsList.indexOf(sourceFields[field]);
         }
     }
 
@@ -290,17 +863,8 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      */
     AggregateFieldStats addEntryToFieldStats(Object value, AggregateFieldStats stats) {
         if (value == null) return stats;
-        if (stats == null) stats = new AggregateFieldStats();
-        if (stats.first == null) stats.first = value;
-        stats.last = value;
-        try {
-            Double decimalValue = Double.valueOf(value.toString());
-            stats.init();
-            stats.sum += decimalValue;
-            stats.count += 1;
-            if (decimalValue>stats.max) stats.max = decimalValue;
-            if (decimalValue<stats.min) stats.min = decimalValue;
-        } catch (Exception e) { }
+        if (stats == null) stats = new AggregateFieldStats(true);
+        stats.add(value);
         return stats;
     }
 
@@ -341,7 +905,7 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
 
     public IDataReader getAggregatorDataReader() {
         if (this.aggregatorDataReader == null)
-            this.aggregatorDataReader = new FileDataReader(this.getAggregatorPath(),syslog);
+            this.aggregatorDataReader = DataReader.get(this.getAggregatorPath(),syslog,null);
         return this.aggregatorDataReader;
     }
 
@@ -350,32 +914,58 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
      * @return Full path to file in filesystem
      */
     String getAggregatorPath() {
+        return getAggregatorPath(this.getName(),destinationPath);
+    }
+
+    /**
+     * Returns root directory, in which aggregator with specified name and destination path writes it's data
+     * @param name Name of aggregator
+     * @param destinationPath Destination path from aggregator config
+     * @return Full path to file in filesystem
+     */
+    private String getAggregatorPath(String name, String destinationPath) {
         String resultPath = destinationPath;
         if (resultPath.isEmpty())
-            resultPath = LoggerApplication.getInstance().getCachePath()+"/"+getCollectionType()+"/"+this.getName();
+            resultPath = LoggerApplication.getInstance().getCachePath()+"/"+getCollectionType()+"/"+name;
         if (!Paths.get(resultPath).isAbsolute())
             resultPath = LoggerApplication.getInstance().getCachePath() + "/" + resultPath;
         return resultPath;
     }
 
     /**
-     * Method used to return Path to file, to which provided record will be written
-     * @param record: Record to write
-     * @return Full path to file in file system
+     * Returns folder with partial state of aggregated intervals of aggregator with specified name
+     * @param name Name of aggregator
+     * @return Full path to folder in filesystem
      */
-    String getRecordPath(HashMap<String,Object> record) {
-        if (record == null) return "";
-        String basePath = this.getAggregatorPath();
-        String timestampStr = record.get("timestamp").toString();
-        long timestamp = new Long(timestampStr);
-        LocalDateTime date = LocalDateTime.ofEpochSecond(timestamp,0,ZoneOffset.UTC);
-        String path = basePath +  "/"+ date.getYear() + "/" + date.getMonthValue() + "/" +
-                date.getDayOfMonth() + "/" + date.getHour() + "/" + date.getMinute() + "/" + date.getSecond() + ".json";
-        return path;
+    private String getPartialStatePath(String name) {
+        HashMap<String,Object> config = ConfigManager.getInstance().getDataAggregator(name);
+        String destinationPath = config == null ? "" : config.getOrDefault("destinationPath","").toString();
+        return getAggregatorPath(name,destinationPath)+PARTIAL_STATE_SUFFIX;
     }
 
     public HashMap<String,Object> getLastRecord() { return lastRecord;}
 
+    int getAggregationPeriod() { return aggregationPeriod; }
+
+    boolean isColumnar() { return columnar && columns.length > 0; }
+
+    /**
+     * Method releases data readers and data writer of aggregator
+     */
+    @Override
+    public void close() {
+        flushLastRecord();
+        if (sourceDataReader != null) sourceDataReader.close();
+        if (aggregatorDataReader != null) aggregatorDataReader.close();
+        if (aggregatorDataWriter != null) aggregatorDataWriter.close();
+        if (stateDataWriter != null) stateDataWriter.close();
+        closeGroupWriters();
+        sourceDataReader = null;
+        aggregatorDataReader = null;
+        aggregatorDataWriter = null;
+        stateDataWriter = null;
+    }
+
     /**
      * Returns serialized information about last record as a string, ready to write to file in "statusPath"
      * @return String representation of last record or null if not able to produce this string
@@ -403,20 +993,180 @@ public class SimpleFileDataAggregator extends DataAggregator implements Syslog.L
     }
 
     /**
-     * Class, which holds summarized information of single field in aggregated interval
+     * Class, which holds summarized information of single field in aggregated interval. Numeric statistics kept
+     * in primitive fields, so adding values does not create objects. Can be reset and reused for next interval
      */
-    public class AggregateFieldStats {
-        Double max;
-        Double min;
+    public static class AggregateFieldStats {
+        // Should numeric statistics be collected (if false, only first and last values kept)
+        final boolean numeric;
+        // Number of added values
+        int values;
+        // Number of added numeric values and their summarized statistics
+        long count;
+        double sum;
+        double min;
+        double max;
+        // First and last added values. When value added as primitive number, it kept in firstNumber or lastNumber
+        // and object is null
         Object first;
         Object last;
-        Integer count;
-        Double sum;
-        public void init() {
-            if (sum==null) sum = 0.0;
-            if (count==null) count = 0;
-            if (max==null) max = -999999999.0;
-            if (min==null) min = 999999999.0;
+        double firstNumber;
+        double lastNumber;
+        // Sketch of distribution of numeric values (null if quantiles not needed)
+        QuantileSketch quantiles;
+        // Sketch of distinct values (null if distinct count not needed)
+        HyperLogLog distinct;
+
+        public AggregateFieldStats(boolean numeric) {
+            this(numeric,false,false);
+        }
+
+        public AggregateFieldStats(boolean numeric, boolean quantiles, boolean distinct) {
+            this.numeric = numeric;
+            if (quantiles) this.quantiles = new QuantileSketch();
+            if (distinct) this.distinct = new HyperLogLog();
+            this.reset();
+        }
+
+        /**
+         * Adds value of field. Numbers and numeric strings added to numeric statistics, if field is numeric
+         * @param value Value to add
+         */
+        public void add(Object value) {
+            if (values++ == 0) first = value;
+            last = value;
+            if (distinct != null) distinct.add(value);
+            if (!numeric) return;
+            if (value instanceof Number) addNumber(((Number)value).doubleValue());
+            else if (value instanceof String) {
+                double number = MathUtils.toDouble(value);
+                if (!Double.isNaN(number)) addNumber(number);
+            }
+        }
+
+        /**
+         * Adds numeric value of field
+         * @param value Value to add
+         */
+        public void add(double value) {
+            if (values++ == 0) {
+                first = null;
+                firstNumber = value;
+            }
+            last = null;
+            lastNumber = value;
+            if (distinct != null) distinct.add(value);
+            if (numeric) addNumber(value);
+        }
+
+        /**
+         * Adds numeric values of field from column. NaN values skipped. Statistics accumulated in local variables
+         * in single loop over primitive array
+         * @param column Values to add
+         * @param size Number of values in column
+         */
+        public void add(double[] column, int size) {
+            int firstIndex = -1;
+            int lastIndex = -1;
+            long columnCount = 0;
+            double columnSum = 0.0;
+            double columnMin = min;
+            double columnMax = max;
+            for (int index=0;index<size;index++) {
+                double value = column[index];
+                if (Double.isNaN(value)) continue;
+                if (firstIndex < 0) firstIndex = index;
+                lastIndex = index;
+                columnCount++;
+                columnSum += value;
+                if (value < columnMin) columnMin = value;
+                if (value > columnMax) columnMax = value;
+            }
+            if (columnCount == 0) return;
+            if (values == 0) {
+                first = null;
+                firstNumber = column[firstIndex];
+            }
+            last = null;
+            lastNumber = column[lastIndex];
+            values += columnCount;
+            if (distinct != null)
+                for (int index=firstIndex;index<=lastIndex;index++) if (!Double.isNaN(column[index])) distinct.add(column[index]);
+            if (!numeric) return;
+            count += columnCount;
+            sum += columnSum;
+            min = columnMin;
+            max = columnMax;
+            if (quantiles != null)
+                for (int index=firstIndex;index<=lastIndex;index++) if (!Double.isNaN(column[index])) quantiles.add(column[index]);
+        }
+
+        private void addNumber(double value) {
+            count++;
+            sum += value;
+            if (value > max) max = value;
+            if (value < min) min = value;
+            if (quantiles != null) quantiles.add(value);
+        }
+
+        /**
+         * Removes all added values
+         */
+        public void reset() {
+            values = 0;
+            count = 0;
+            sum = 0.0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            first = null;
+            last = null;
+            if (quantiles != null) quantiles.reset();
+            if (distinct != null) distinct.reset();
+        }
+
+        /**
+         * Merges partial state of field, collected by other aggregator, to this statistics
+         * @param state Partial state of field, returned by getState
+         */
+        public void merge(Map<String,Object> state) {
+            int stateValues = Double.valueOf(state.getOrDefault("values",0).toString()).intValue();
+            if (stateValues == 0) return;
+            if (values == 0) first = state.get("first");
+            values += stateValues;
+            last = state.get("last");
+            if (distinct != null && state.get("distinct") instanceof Map)
+                distinct.merge(HyperLogLog.fromState((Map<String,Object>)state.get("distinct")));
+            if (quantiles != null && state.get("quantiles") instanceof Map)
+                quantiles.merge(QuantileSketch.fromState((Map<String,Object>)state.get("quantiles")));
+            long stateCount = Double.valueOf(state.getOrDefault("count",0).toString()).longValue();
+            if (!numeric || stateCount == 0) return;
+            count += stateCount;
+            sum += Double.parseDouble(state.get("sum").toString());
+            min = Math.min(min,Double.parseDouble(state.get("min").toString()));
+            max = Math.max(max,Double.parseDouble(state.get("max").toString()));
         }
+
+        /**
+         * Returns partial state of field, which other aggregators can merge to statistics of longer interval
+         * @return HashMap with number of values, first and last values, numeric statistics and sketches, if collected
+         */
+        public HashMap<String,Object> getState() {
+            HashMap<String,Object> result = new HashMap<>();
+            result.put("values",values);
+            result.put("first",getFirst());
+            result.put("last",getLast());
+            result.put("count",count);
+            if (distinct != null) result.put("distinct",distinct.getState());
+            if (quantiles != null) result.put("quantiles",quantiles.getState());
+            if (count == 0) return result;
+            result.put("sum",sum);
+            result.put("min",min);
+            result.put("max",max);
+            return result;
+        }
+
+        public boolean isEmpty() { return values == 0; }
+        public Object getFirst() { return isEmpty() || first != null ? first : (Object)firstNumber; }
+        public Object getLast() { return isEmpty() || last != null ? last : (Object)lastNumber; }
     }
-}
\ No newline at end of file
+}
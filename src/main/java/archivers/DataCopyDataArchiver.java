@@ -1,4 +1,5 @@
 package archivers;
+import readers.DataSegment;
 import java.nio.file.Path;
 import java.util.HashMap;
 
@@ -23,7 +24,8 @@ public class DataCopyDataArchiver extends FileCopyDataArchiver {
      * @return True if file should be archived or false otherwise
      */
     public boolean checkFile(Path file) {
-        if (!file.toString().endsWith(".json")) return false;
+        if (!file.toString().endsWith(".json") &&
+                !(file.toString().endsWith(DataSegment.EXTENSION) && DataSegment.isSealed(file))) return false;
         return super.checkFile(file);
     }
 
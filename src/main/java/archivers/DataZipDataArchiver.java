@@ -1,5 +1,6 @@
 package archivers;
 
+import readers.DataSegment;
 import java.nio.file.Path;
 import java.util.HashMap;
 
@@ -24,7 +25,8 @@ public class DataZipDataArchiver extends FileZipDataArchiver {
      * @return True if file should be archived or false otherwise
      */
     public boolean checkFile(Path file) {
-        if (!file.toString().endsWith(".json")) return false;
+        if (!file.toString().endsWith(".json") &&
+                !(file.toString().endsWith(DataSegment.EXTENSION) && DataSegment.isSealed(file))) return false;
         return super.checkFile(file);
     }
 
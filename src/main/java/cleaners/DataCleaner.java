@@ -6,6 +6,8 @@ import cronjobs.CronjobTaskStatus;
 import cronjobs.ICronjobTask;
 import main.ISyslog;
 import main.LoggerService;
+import readers.DataSegment;
+import readers.FileDataIndex;
 import utils.FileUtils;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -81,7 +83,7 @@ public class DataCleaner extends CronjobTask implements IDataCleaner, ISyslog.Lo
             Files.walk(sourcePath)
                 .filter(path -> {
                     try {
-                        return Files.isRegularFile(path) &&
+                        return Files.isRegularFile(path) && !isServiceFile(path) &&
                                 Files.getLastModifiedTime(path).toInstant().getEpochSecond() < maxTimestamp;
                     } catch (Exception e) { syslog.logException(e, this, "clean.filter");return false; }
                 })
@@ -96,6 +98,18 @@ public class DataCleaner extends CronjobTask implements IDataCleaner, ISyslog.Lo
         FileUtils.removeFolder(sourcePath,true);
     }
 
+    /**
+     * Determines if file is a service file of data folder (index or format marker), which should not be
+     * removed together with data files
+     * @param path Path to file
+     * @return True if file is a service file or false otherwise
+     */
+    private boolean isServiceFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return path.getParent().equals(sourcePath) &&
+                (fileName.equals(FileDataIndex.INDEX_FILE_NAME) || fileName.equals(DataSegment.FORMAT_FILE_NAME));
+    }
+
     /**
      * Method determines the maximum timestamp of data to remove, based on information from consumers
      * of this folder. Cleaner will remove only files, which modification time is less than timestamp,
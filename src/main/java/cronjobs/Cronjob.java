@@ -26,7 +26,7 @@ public class Cronjob extends TimerTask {
     /**
      * Method which Timer thread calls every time to run cronjob
      */
-    public void run() {
+    public synchronized void run() {
         if (task.isEnabled()) { task.run(); }
     }
 
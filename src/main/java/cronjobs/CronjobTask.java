@@ -5,10 +5,7 @@ import main.LoggerApplication;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.*;
 import java.time.Instant;
 import java.util.HashMap;
 
@@ -27,6 +24,14 @@ public abstract class CronjobTask implements ICronjobTask {
     private Long lastExecutionTime = 0L;
     // Path, to which task can write status information about progress or result of execution
     protected String statusPath = "";
+    // Number of processed records, after which last record written to status file (checkpoint)
+    protected int checkpointRecords = 1000;
+    // Maximum time in milliseconds between checkpoints, while task processes records
+    protected long checkpointInterval = 5000L;
+    // Number of records, processed after last checkpoint
+    private int uncommittedRecords = 0;
+    // Time of last checkpoint in milliseconds
+    private long lastCheckpointTime = System.currentTimeMillis();
     // Link to system logger used to write information about errors or warnings to file
     protected ISyslog syslog;
     protected HashMap<String,Object> syslogConfig = new HashMap<>();
@@ -66,6 +71,8 @@ public abstract class CronjobTask implements ICronjobTask {
         if (config==null) return;
         enabled = Boolean.parseBoolean(config.getOrDefault("enabled",false).toString());
         statusPath = config.getOrDefault("statusPath",statusPath).toString();
+        checkpointRecords = Double.valueOf(config.getOrDefault("checkpointRecords",checkpointRecords).toString()).intValue();
+        checkpointInterval = Double.valueOf(config.getOrDefault("checkpointInterval",checkpointInterval).toString()).longValue();
         try {
             syslogConfig = (HashMap<String, Object>) config.getOrDefault("syslog",
                     LoggerApplication.getInstance().getSyslogConfig());
@@ -108,37 +115,88 @@ public abstract class CronjobTask implements ICronjobTask {
      * @return Record
      */
     protected String readLastRecord() {
-        Path statusPath = Paths.get(this.getStatusPath()+"/last_record");
+        return readStatus("last_record");
+    }
+
+    /**
+     * Method used to read value from status file in "statusPath"
+     * @param name Name of status file
+     * @return First line of status file or null if file does not exist or could not be read
+     */
+    protected String readStatus(String name) {
+        Path statusPath = Paths.get(this.getStatusPath()+"/"+name);
         if (!Files.exists(statusPath)) return null;
         try (BufferedReader reader = Files.newBufferedReader(statusPath)) {
             return reader.readLine();
         } catch (IOException e) {
-            syslog.log(ISyslog.LogLevel.ERROR,"Could not read last record from '"+statusPath.toString()+"' file",
-                    this.getClass().getName(),"readLastRecord");
+            syslog.log(ISyslog.LogLevel.ERROR,"Could not read status from '"+statusPath.toString()+"' file",
+                    this.getClass().getName(),"readStatus");
         } catch (Exception e) {
-            syslog.log(ISyslog.LogLevel.ERROR,"Could not parse last record value from '"+statusPath.toString()+"' file.",
-                    this.getClass().getName(),"readLastRecord");
+            syslog.log(ISyslog.LogLevel.ERROR,"Could not parse status value from '"+statusPath.toString()+"' file.",
+                    this.getClass().getName(),"readStatus");
         }
         return null;
     }
 
+    /**
+     * Method used to register processed records. Writes last record to status file, if "checkpointRecords"
+     * records processed or "checkpointInterval" milliseconds passed after last checkpoint
+     * @param records Number of processed records
+     */
+    protected void checkpoint(int records) {
+        uncommittedRecords += records;
+        if (uncommittedRecords >= checkpointRecords || System.currentTimeMillis()-lastCheckpointTime >= checkpointInterval)
+            writeLastRecord();
+    }
+
+    protected void checkpoint() {
+        checkpoint(1);
+    }
+
+    /**
+     * Method writes last record to status file, if records were processed after last checkpoint. Should be
+     * called at the end of each run
+     */
+    public void flushLastRecord() {
+        if (uncommittedRecords > 0) writeLastRecord();
+    }
+
     /**
      * Method used to write last written record to file as JSON object
      */
     protected void writeLastRecord() {
         String lastRecordString = getLastRecordString();
         if (lastRecordString == null) return;
-        Path statusPath = Paths.get(this.getStatusPath()+"/last_record");
+        if (!writeStatus("last_record",lastRecordString)) return;
+        uncommittedRecords = 0;
+        lastCheckpointTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Method used to write value to status file in "statusPath". Value written to temporary file first,
+     * which then renamed to status file, so status file always contains complete value
+     * @param name Name of status file
+     * @param value Value to write
+     * @return True if value written or false otherwise
+     */
+    protected boolean writeStatus(String name, String value) {
+        Path statusPath = Paths.get(this.getStatusPath()+"/"+name);
+        Path tempPath = Paths.get(this.getStatusPath()+"/"+name+".tmp");
         try {
             if (!Files.exists(statusPath.getParent())) Files.createDirectories(statusPath.getParent());
-            Files.deleteIfExists(statusPath);
-            BufferedWriter writer = Files.newBufferedWriter(statusPath,StandardOpenOption.CREATE_NEW);
-            writer.write(lastRecordString);
-            writer.flush();
-            writer.close();
+            try (BufferedWriter writer = Files.newBufferedWriter(tempPath)) {
+                writer.write(value);
+            }
+            try {
+                Files.move(tempPath,statusPath,StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath,statusPath,StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
         } catch (IOException e) {
-            syslog.log(ISyslog.LogLevel.ERROR,"Could not write last record '"+ lastRecordString +
-                    "' to file '"+statusPath.toString()+"'",this.getClass().getName(),"writeLastRecord");
+            syslog.log(ISyslog.LogLevel.ERROR,"Could not write status '"+value+
+                    "' to file '"+statusPath.toString()+"'",this.getClass().getName(),"writeStatus");
+            return false;
         }
     }
 
@@ -161,4 +219,10 @@ public abstract class CronjobTask implements ICronjobTask {
         return syslogConfig;
     }
 
+    /**
+     * Method releases resources of task (files, connections, threads), when task stopped (descendants should
+     * override, if they hold such resources)
+     */
+    public void close() {}
+
 }
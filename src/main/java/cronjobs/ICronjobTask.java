@@ -21,4 +21,5 @@ public interface ICronjobTask {
     Object getLastRecord();
     long getLastRecordTimestamp();
     String getCollectionType();
+    void close();
 }
@@ -0,0 +1,329 @@
+package db.adapters;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of JDBC connections, shared by all database adapters with the same name. Connections opened on
+ * demand up to "poolSize" and returned to pool after each query. Connection validated before it borrowed.
+ * Connections, which were idle longer than "poolIdleTimeout" or opened earlier than "poolMaxLifetime"
+ * milliseconds ago, closed when pool is used next time or by background evictor, which checks idle connections
+ * of all pools every "EVICT_INTERVAL" milliseconds. If all connections borrowed, consumer waits up to
+ * "poolBorrowTimeout" milliseconds for released connection.
+ */
+public class ConnectionPool {
+
+    /**
+     * Interface of function, which opens new database connection
+     */
+    interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    // Interval in milliseconds between checks of idle connections of all pools by background evictor
+    private static final long EVICT_INTERVAL = 30000L;
+    // Pools of all database adapters, indexed by names of adapters
+    private static ConcurrentHashMap<String,ConnectionPool> pools = new ConcurrentHashMap<>();
+    // Background thread, which closes expired idle connections of all pools (started with first pool)
+    private static ScheduledExecutorService evictor;
+
+    // Function, which opens new connections
+    private ConnectionFactory factory;
+    // Maximum number of open connections
+    private int size = 4;
+    // Time in milliseconds, after which idle connection closed
+    private long idleTimeout = 600000L;
+    // Time in milliseconds, after which connection closed and replaced by new one
+    private long maxLifetime = 1800000L;
+    // Maximum time in milliseconds to wait for free connection
+    private long borrowTimeout = 30000L;
+    // Time in seconds to wait for database to validate connection
+    private int validationTimeout = 5;
+    // Idle connections, most recently used first
+    private ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    // Borrowed connections
+    private Set<PooledConnection> borrowed = new HashSet<>();
+    // Number of open connections and connections, which are opening now
+    private int opened = 0;
+    // Incremented when pool closed. Connections, opened before, are not returned to pool
+    private int generation = 0;
+
+    /**
+     * Returns pool of connections of database adapter. Pool created on first request with configuration of
+     * adapter
+     * @param name Name of database adapter
+     * @param config Configuration of database adapter
+     * @param factory Function, which opens new connections
+     * @return Connection pool
+     */
+    static ConnectionPool get(String name, HashMap<String,Object> config, ConnectionFactory factory) {
+        startEvictor();
+        return pools.computeIfAbsent(name,key -> new ConnectionPool(config,factory));
+    }
+
+    /**
+     * Method starts background evictor, if it is not started yet
+     */
+    private static synchronized void startEvictor() {
+        if (evictor != null) return;
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable,"connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(ConnectionPool::evictAll,EVICT_INTERVAL,EVICT_INTERVAL,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method closes expired idle connections of all pools
+     */
+    static void evictAll() {
+        pools.values().forEach(ConnectionPool::evict);
+    }
+
+    /**
+     * Method closes all connections of all pools, removes pools and stops background evictor
+     */
+    public static void closeAll() {
+        synchronized (ConnectionPool.class) {
+            if (evictor != null) evictor.shutdownNow();
+            evictor = null;
+        }
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+    }
+
+    /**
+     * Class constructor
+     * @param config Configuration of database adapter
+     * @param factory Function, which opens new connections
+     */
+    ConnectionPool(HashMap<String,Object> config, ConnectionFactory factory) {
+        this.factory = factory;
+        if (config == null) return;
+        this.size = Math.max(1,Double.valueOf(config.getOrDefault("poolSize",size).toString()).intValue());
+        this.idleTimeout = Double.valueOf(config.getOrDefault("poolIdleTimeout",idleTimeout).toString()).longValue();
+        this.maxLifetime = Double.valueOf(config.getOrDefault("poolMaxLifetime",maxLifetime).toString()).longValue();
+        this.borrowTimeout = Double.valueOf(config.getOrDefault("poolBorrowTimeout",borrowTimeout).toString()).longValue();
+        this.validationTimeout = Double.valueOf(config.getOrDefault("poolValidationTimeout",validationTimeout).toString()).intValue();
+    }
+
+    /**
+     * Returns valid connection from pool or opens new one, if pool does not have idle connections and maximum
+     * number of connections is not reached. Connection should be returned to pool by "release" method
+     * @return Connection
+     * @throws SQLException if connection could not be opened or no connections released during "poolBorrowTimeout"
+     */
+    PooledConnection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis()+borrowTimeout;
+        while (true) {
+            PooledConnection connection = null;
+            synchronized (this) {
+                evict();
+                while (idle.isEmpty() && opened >= size) {
+                    long timeout = deadline-System.currentTimeMillis();
+                    if (timeout <= 0) throw new SQLException("Timeout waiting for free connection in pool");
+                    try {
+                        wait(timeout);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for free connection in pool");
+                    }
+                    evict();
+                }
+                if (!idle.isEmpty()) connection = idle.pollFirst();
+                else opened++;
+            }
+            if (connection == null) return open();
+            if (isValid(connection)) {
+                synchronized (this) {
+                    borrowed.add(connection);
+                }
+                return connection;
+            }
+            discard(connection);
+        }
+    }
+
+    /**
+     * Method opens new connection. Slot for connection should be reserved before
+     * @return Connection
+     * @throws SQLException if connection could not be opened
+     */
+    private PooledConnection open() throws SQLException {
+        Connection connection = null;
+        try {
+            connection = factory.connect();
+        } finally {
+            if (connection == null) {
+                synchronized (this) {
+                    opened--;
+                    notifyAll();
+                }
+            }
+        }
+        if (connection == null) throw new SQLException("Could not open connection");
+        synchronized (this) {
+            PooledConnection result = new PooledConnection(connection,generation);
+            borrowed.add(result);
+            return result;
+        }
+    }
+
+    /**
+     * Method returns borrowed connection to pool
+     * @param connection Connection
+     * @param broken If true, connection closed instead of returning to pool
+     */
+    void release(PooledConnection connection, boolean broken) {
+        synchronized (this) {
+            if (!borrowed.remove(connection)) return;
+            if (!broken && !isExpired(connection,System.currentTimeMillis())) {
+                connection.lastUsed = System.currentTimeMillis();
+                idle.addFirst(connection);
+                notifyAll();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    /**
+     * Method checks if connection is still alive. Connections, which were used less than second ago, are not checked
+     * @param connection Connection
+     * @return True if connection can be used or false otherwise
+     */
+    private boolean isValid(PooledConnection connection) {
+        if (System.currentTimeMillis()-connection.lastUsed < 1000) return true;
+        try {
+            return connection.connection.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method closes idle connections, which are idle too long or exceeded maximum lifetime
+     */
+    synchronized void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            PooledConnection connection = iterator.next();
+            if (!isExpired(connection,now) && (idleTimeout <= 0 || now-connection.lastUsed < idleTimeout)) continue;
+            iterator.remove();
+            connection.close();
+            opened--;
+        }
+    }
+
+    /**
+     * Determines if connection exceeded maximum lifetime or was opened before pool closed
+     */
+    private boolean isExpired(PooledConnection connection, long now) {
+        return connection.generation != generation || (maxLifetime > 0 && now-connection.created >= maxLifetime);
+    }
+
+    /**
+     * Method closes connection, which removed from pool, and frees its slot
+     * @param connection Connection
+     */
+    private void discard(PooledConnection connection) {
+        connection.close();
+        synchronized (this) {
+            opened--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Method closes all idle connections. Borrowed connections closed when they are released. Pool can be used
+     * after close, it opens new connections on demand
+     */
+    synchronized void close() {
+        generation++;
+        idle.forEach(PooledConnection::close);
+        opened -= idle.size();
+        idle.clear();
+        notifyAll();
+    }
+
+    /**
+     * Returns statistics of pool
+     * @return HashMap with number of "opened", "idle" and "borrowed" connections and maximum "size" of pool
+     */
+    synchronized HashMap<String,Object> getStats() {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("size",size);
+        result.put("opened",opened);
+        result.put("idle",idle.size());
+        result.put("borrowed",borrowed.size());
+        return result;
+    }
+
+    /**
+     * Connection of pool with prepared statements, which are cached for this connection
+     */
+    static class PooledConnection {
+        // Database connection
+        private Connection connection;
+        // Generation of pool, in which connection opened
+        private int generation;
+        // Time, when connection opened
+        private long created = System.currentTimeMillis();
+        // Time, when connection was returned to pool last time
+        private long lastUsed = created;
+        // Prepared statements, indexed by SQL text
+        private HashMap<String,PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection connection, int generation) {
+            this.connection = connection;
+            this.generation = generation;
+        }
+
+        Connection getConnection() { return connection; }
+
+        /**
+         * Returns prepared statement for SQL text. Statement prepared on first use and cached
+         * @param sql SQL text
+         * @return Prepared statement
+         * @throws SQLException
+         */
+        PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql,statement);
+            }
+            return statement;
+        }
+
+        /**
+         * Method closes cached prepared statements
+         */
+        void closeStatements() {
+            for (PreparedStatement statement: statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) { }
+            }
+            statements.clear();
+        }
+
+        /**
+         * Method closes prepared statements and connection
+         */
+        void close() {
+            closeStatements();
+            try {
+                connection.close();
+            } catch (SQLException e) { }
+        }
+    }
+}
@@ -125,6 +125,11 @@ abstract public class DatabaseAdapter implements IDatabaseAdapter, ISyslog.Logga
      */
     ArrayList<Map<String,Object>> parseQueryResult(Object result) { return null;}
 
+    /**
+     * Method used to close connections to database, opened by adapter
+     */
+    public void close() {}
+
     /**
      * Method used to transform RAW row returned from database server to HashMap
      * @param rawRow Raw row from server
@@ -11,4 +11,5 @@ public interface IDatabaseAdapter {
     Integer insert(String collectionName,ArrayList<HashMap<String,Object>> data);
     Integer update(String collectionName,ArrayList<HashMap<String,Object>> data);
     ArrayList<HashMap<String,Object>> select(String sql,String collectionName);
+    void close();
 }
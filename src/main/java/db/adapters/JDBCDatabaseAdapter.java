@@ -2,13 +2,8 @@ package db.adapters;
 
 import main.ISyslog;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Optional;
+import java.sql.*;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -16,139 +11,234 @@ import java.util.stream.Collectors;
  */
 abstract public class JDBCDatabaseAdapter extends DatabaseAdapter {
 
-    // Link to database connection
-    protected Connection connection;
+    // Pool of database connections, shared by all adapters with the same name
+    protected ConnectionPool pool;
+    // Maximum number of rows, sent to database in single batch
+    protected int batchSize = 1000;
 
     /**
-     * Method used to open database connection (which is previously setup adn configured)
+     * Method used to apply configuration to data adapter
+     * @param config Configuration object
      */
-    abstract void connect();
+    public void configure(HashMap<String,Object> config) {
+        super.configure(config);
+        if (config == null) return;
+        this.batchSize = Double.valueOf(config.getOrDefault("batchSize",this.batchSize).toString()).intValue();
+        this.pool = ConnectionPool.get(this.name,config,this::connect);
+    }
 
     /**
-     * Base method, used to insert or update data in database
-     * @param collectionName Name of collection to update
-     * @param data Array of records
-     * @param isNew If true, then "INSERT" data, if false then "UPDATE" data
-     * @return Number of affected records
+     * Method used to open new database connection (which is previously setup adn configured)
+     * @return Connection
+     * @throws SQLException
      */
-    public Integer processUpdateQuery(String collectionName, ArrayList<HashMap<String,Object>> data, boolean isNew) {
-        if (connection == null) this.connect();
-        if (connection == null) return null;
-        String updateStatement = prepareUpdateBatchSQL(collectionName,data,isNew);
-        return updateStatement.isEmpty() ? null : executeUpdateQuery(updateStatement);
+    abstract Connection connect() throws SQLException;
+
+    /**
+     * Method used to close idle connections of pool. Connections, which are in use, closed after query
+     */
+    @Override
+    public void close() {
+        if (pool != null) pool.close();
     }
 
     /**
-     * Method used to execute specified update query in database and return number of affected rows
-     * @param updateStatement Query statement to execute
-     * @return Number of affected rows
+     * Method used to get connection from pool. Connection should be returned by pool.release
+     * @return Connection or null if connection could not be obtained
      */
-    Integer executeUpdateQuery(Object updateStatement) {
-        String updateString = updateStatement.toString();
-        Statement statement;
+    ConnectionPool.PooledConnection borrowConnection() {
         try {
-            statement = connection.createStatement();
-            Arrays.stream(updateString.split(";")).forEach(sql -> {
-                try {
-                    syslog.log(ISyslog.LogLevel.DEBUG,"Adding SQL to batch: '"+sql+"'",this.getClass().getName(),"executeUpdateQuery");
-                    statement.addBatch(sql);
-                } catch (Exception e) {
-                    syslog.logException(e,this,"executeUpdateQuery");
-                }
-            });
-            syslog.log(ISyslog.LogLevel.DEBUG,"Executing SQL batch",this.getClass().getName(),"executeUpdateQuery");
-            return Arrays.stream(statement.executeBatch()).reduce((i,i1) -> i+i1).orElse(0);
-        } catch (Exception e) {
-            syslog.log(ISyslog.LogLevel.ERROR,"Could not execute batch query '"+updateString+"'",
-                    this.getClass().getName(),"executeUpdateQuery");
+            return pool.borrow();
+        } catch (SQLException e) {
+            syslog.logException(e,this,"borrowConnection");
             return null;
         }
     }
 
     /**
-     * Method used to prepare set of SQL queries to UPDATE or INSERT multiple records to database
-     * @param collectionName Name of collection to update
-     * @param data Array or data rows to UPDATE or INSERT
-     * @param isNew if true, then method will return INSERT queries, otherwise will return UPDATE queries
-     * @return Set of INSERT or UPDATE query lines, delimited by ';' symbol
+     * Databases specific method to send SELECT query to server and return RAW result. If query fails,
+     * connection is not returned to pool, because it could be broken
+     * @param sql SQL query text
+     * @return List of rows, read from result set, or null in case of errors
      */
-    String prepareUpdateBatchSQL(String collectionName,ArrayList<HashMap<String,Object>> data,boolean isNew) {
-        return joinSqlLines(collectionName,data,isNew,";");
+    @Override
+    Object executeSelectQuery(String sql) {
+        ConnectionPool.PooledConnection connection = borrowConnection();
+        if (connection == null) return null;
+        boolean broken = true;
+        try (Statement statement = connection.getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            ArrayList<Map<String,Object>> result = new ArrayList<>();
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            while (resultSet.next()) {
+                HashMap<String,Object> row = new HashMap<>();
+                for (int column=1;column<=metaData.getColumnCount();column++)
+                    row.put(metaData.getColumnLabel(column),resultSet.getObject(column));
+                result.add(row);
+            }
+            broken = false;
+            return result;
+        } catch (SQLException e) {
+            syslog.logException(e,this,"executeSelectQuery");
+            return null;
+        } finally {
+            pool.release(connection,broken);
+        }
     }
 
     /**
-     * Method gets list of data rows to insert or update and returns concatentated
-     * string of appropriate UPDATE or INSERT statements
-     * @param collectionName Name of colleciton
-     * @param data Data array
-     * @param isNew Is it new rows (INSERT) or not (UPDATE)
-     * @param delimiter - Delimiter of SQL statements (usually ';')
-     * @return String with SQL statements delimited by delimiter
+     * Method used to transform RAW query result to array of rows (without transofrming field values)
+     * @param result Query result to transform
+     * @return
      */
-    String joinSqlLines(String collectionName,ArrayList<HashMap<String,Object>> data,boolean isNew,String delimiter) {
-        return data.stream()
-                .filter((row) -> row.size()>0)
-                .map(row -> prepareUpdateSQL(collectionName,row,isNew))
-                .filter(string -> string != null && !string.isEmpty())
-                .reduce((s,s1) -> s+delimiter+s1).orElse("");
+    @Override
+    ArrayList<Map<String,Object>> parseQueryResult(Object result) {
+        return result instanceof ArrayList ? (ArrayList<Map<String,Object>>)result : null;
     }
 
     /**
-     * Returns INSERT or UPDATE query statement for provided data row
+     * Base method, used to insert or update data in database. If query fails, connection is not returned
+     * to pool, because it could be broken
      * @param collectionName Name of collection to update
-     * @param row Row which is a set of fields
-     * @param isNew if true, then method will return INSERT query, otherwise will return UPDATE query
-     * @return
+     * @param data Array of records
+     * @param isNew If true, then "INSERT" data, if false then "UPDATE" data
+     * @return Number of affected records
+     */
+    public Integer processUpdateQuery(String collectionName, ArrayList<HashMap<String,Object>> data, boolean isNew) {
+        ConnectionPool.PooledConnection connection = borrowConnection();
+        if (connection == null) return null;
+        Integer result = null;
+        try {
+            result = executeUpdateBatch(connection,collectionName,data,isNew);
+            return result;
+        } finally {
+            pool.release(connection,result == null);
+        }
+    }
+
+    /**
+     * Method used to INSERT or UPDATE rows using prepared statements. Rows with the same set of fields share
+     * one statement, which prepared once per connection. Values bound according to types of fields, defined in
+     * configuration, and sent to database by batches of "batchSize" rows. All rows of call written in single
+     * transaction, so either all of them are written or none
+     * @param pooledConnection Connection from pool
+     * @param collectionName Name of collection to update
+     * @param data Array of records
+     * @param isNew If true, then "INSERT" data, if false then "UPDATE" data
+     * @return Number of affected rows or null in case of errors
      */
-    String prepareUpdateSQL(String collectionName,HashMap<String,Object> row, boolean isNew) {
-        HashMap<String,String> fields = prepareDataForSql(collectionName,row);
-        if (isNew) {
-            String keys = fields.keySet().stream().reduce((s, s1) -> s+","+s1).orElse("");
-            String values = fields.values().stream().reduce((s, s1) -> s+","+s1).orElse("");
-            if (keys.isEmpty()) return "";
-            return "INSERT INTO "+collectionName+" ("+keys+") VALUES("+values+")";
+    Integer executeUpdateBatch(ConnectionPool.PooledConnection pooledConnection, String collectionName,
+                               ArrayList<HashMap<String,Object>> data, boolean isNew) {
+        Connection connection = pooledConnection.getConnection();
+        HashMap<PreparedStatement,Integer> pending = new HashMap<>();
+        int result = 0;
+        boolean autoCommit = true;
+        try {
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) connection.setAutoCommit(false);
+            for (HashMap<String,Object> row: data) {
+                TreeMap<String,Object> fields = prepareDataForStatement(collectionName,row,isNew);
+                if (fields == null) continue;
+                PreparedStatement statement = getUpdateStatement(pooledConnection,collectionName,fields.keySet(),isNew);
+                int index = 1;
+                for (Object value: fields.values()) bindValue(statement,index++,value);
+                if (!isNew) bindValue(statement,index,formatFieldValue(collectionName,getIdFieldName(collectionName),
+                        row.get(getIdFieldName(collectionName))));
+                statement.addBatch();
+                int count = pending.getOrDefault(statement,0)+1;
+                pending.put(statement,count);
+                if (count < batchSize) continue;
+                result += executeBatch(statement);
+                pending.remove(statement);
+            }
+            for (PreparedStatement statement: pending.keySet()) result += executeBatch(statement);
+            connection.commit();
+            return result;
+        } catch (Exception e) {
+            syslog.logException(e,this,"executeUpdateBatch");
+            try {
+                if (!connection.getAutoCommit()) connection.rollback();
+            } catch (SQLException e2) {
+                syslog.logException(e2,this,"executeUpdateBatch");
+            }
+            pooledConnection.closeStatements();
+            return null;
+        } finally {
+            try {
+                if (autoCommit) connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                syslog.logException(e,this,"executeUpdateBatch");
+            }
         }
-        String fieldString = fields.keySet().stream().reduce((s,s1) -> s+"="+fields.get(s1)).orElse("");
-        String idValue = formatFieldValueForSQL(collectionName,getIdFieldName(collectionName),
-                row.get(getIdFieldName(collectionName)));
-        if (fieldString.isEmpty() || idValue == null) return "";
-        return "UPDATE "+collectionName+" SET "+fieldString+" WHERE id="+idValue;
     }
 
     /**
-     * Method returns row of fields, formatted according to configuration and ready to be used in
-     * SQL statements
+     * Method sends batch of prepared statement to database
+     * @param statement Prepared statement with added rows
+     * @return Number of affected rows
+     * @throws SQLException
+     */
+    private int executeBatch(PreparedStatement statement) throws SQLException {
+        syslog.log(ISyslog.LogLevel.DEBUG,"Executing SQL batch",this.getClass().getName(),"executeBatch");
+        int result = 0;
+        for (int count: statement.executeBatch()) result += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count,0);
+        return result;
+    }
+
+    /**
+     * Returns prepared INSERT or UPDATE statement for set of fields of collection. Statement prepared on
+     * first use and cached for connection
+     * @param connection Connection from pool
      * @param collectionName Name of collection
-     * @param row Row of data
-     * @return Row of data with field values, formatted according to their types
+     * @param fields Names of fields, in order of parameters
+     * @param isNew If true, returns INSERT statement, otherwise UPDATE statement by value of ID field
+     * @return Prepared statement
+     * @throws SQLException
      */
-    HashMap<String,String> prepareDataForSql(String collectionName,HashMap<String,Object> row) {
-        return row.keySet().stream()
-                .filter((fieldName) -> formatFieldValueForSQL(collectionName,fieldName,row.get(fieldName)) != null )
-                .collect(Collectors.toMap(fieldName -> fieldName,fieldName ->
-                        formatFieldValueForSQL(collectionName,fieldName,row.get(fieldName)),(s1,s2) -> s1,HashMap::new));
+    PreparedStatement getUpdateStatement(ConnectionPool.PooledConnection connection, String collectionName,
+                                         Set<String> fields, boolean isNew) throws SQLException {
+        String sql;
+        if (isNew)
+            sql = "INSERT INTO "+collectionName+" ("+String.join(",",fields)+") VALUES ("+
+                    String.join(",",Collections.nCopies(fields.size(),"?"))+")";
+        else
+            sql = "UPDATE "+collectionName+" SET "+fields.stream().map(field -> field+"=?").collect(Collectors.joining(","))+
+                    " WHERE "+getIdFieldName(collectionName)+"=?";
+        syslog.log(ISyslog.LogLevel.DEBUG,"Preparing SQL: '"+sql+"'",this.getClass().getName(),"getUpdateStatement");
+        return connection.prepareStatement(sql);
     }
 
     /**
-     * Formats value for specified field for UPDATE or INSERT query, depending on type of this field, defined
-     * in configuration file
+     * Method returns fields of row, which should be bound to INSERT or UPDATE statement, with values converted
+     * to types, defined in configuration
      * @param collectionName Name of collection
-     * @param fieldName Name of field
-     * @param value Value of field to format
-     * @return Properly formatted and escaped value to insert to SQL query line
+     * @param row Row of data
+     * @param isNew If false, ID field excluded from fields
+     * @return Fields, ordered by names, or null if row does not have fields to write or UPDATE row does not
+     * have value of ID field
      */
-    String formatFieldValueForSQL(String collectionName,String fieldName,Object value) {
-        if (!isValidFieldConfig(collectionName,fieldName)) return null;
-        if (value == null) return null;
-        String type = getFieldConfigValue(collectionName,fieldName,"type").toString();
-        switch (type) {
-            case "decimal":
-                return value.toString();
-            case "integer":
-                return value.toString();
-            case "string":
-                return "'"+value.toString()+"'";
+    TreeMap<String,Object> prepareDataForStatement(String collectionName, HashMap<String,Object> row, boolean isNew) {
+        String idField = getIdFieldName(collectionName);
+        if (!isNew && (idField == null || formatFieldValue(collectionName,idField,row.get(idField)) == null)) return null;
+        TreeMap<String,Object> result = new TreeMap<>();
+        for (String fieldName: row.keySet()) {
+            if (!isNew && fieldName.equals(idField)) continue;
+            Object value = formatFieldValue(collectionName,fieldName,row.get(fieldName));
+            if (value != null) result.put(fieldName,value);
         }
-        return null;
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * Method binds value of field to parameter of prepared statement according to type of value
+     * @param statement Prepared statement
+     * @param index Index of parameter
+     * @param value Value, converted by formatFieldValue
+     * @throws SQLException
+     */
+    private void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+        if (value instanceof Double) statement.setDouble(index,(Double)value);
+        else if (value instanceof Integer) statement.setInt(index,(Integer)value);
+        else statement.setString(index,value.toString());
     }
 }
\ No newline at end of file
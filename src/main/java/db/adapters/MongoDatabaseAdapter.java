@@ -53,6 +53,15 @@ public class MongoDatabaseAdapter extends DatabaseAdapter {
         }
     }
 
+    /**
+     * Method used to close database connection
+     */
+    @Override
+    public void close() {
+        if (connection != null) connection.close();
+        connection = null;
+    }
+
     /**
      * Base method for UPDATE and INSERT database queries
      * @param collectionName Name of collection to update
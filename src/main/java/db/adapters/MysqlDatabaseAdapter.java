@@ -31,14 +31,12 @@ public class MysqlDatabaseAdapter extends JDBCDatabaseAdapter {
     }
 
     /**
-     * Method used to open database connection (which is previously setup adn configured)
+     * Method used to open new database connection (which is previously setup adn configured)
+     * @return Connection
+     * @throws SQLException
      */
-    void connect() {
+    Connection connect() throws SQLException {
         String url = "jdbc:mysql://"+host+":"+port+"/"+database+"?serverTimezone=UTC";
-        try {
-            this.connection = DriverManager.getConnection(url,username,password);
-        } catch (SQLException e) {
-            syslog.logException(e,this,"connect");
-        }
+        return DriverManager.getConnection(url,username,password);
     }
 }
\ No newline at end of file
@@ -7,9 +7,11 @@ import utils.DataList;
 import utils.DataMap;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Database adapter for OrientDB databases
@@ -45,20 +47,18 @@ public class OrientDBDatabaseAdapter extends JDBCDatabaseAdapter {
     }
 
     /**
-     * Method used to open database connection (which is previously setup adn configured)
+     * Method used to open new database connection (which is previously setup adn configured)
+     * @return Connection
+     * @throws SQLException
      */
     @Override
-    void connect() {
-        if (this.mode != WorkMode.jdbc) return;
+    Connection connect() throws SQLException {
+        if (this.mode != WorkMode.jdbc) return null;
         String url = "jdbc:orient:remote:"+host+":"+port+"/"+database;
         Properties info = new Properties();
         info.put("user",username);
         info.put("password",password);
-        try {
-            this.connection = DriverManager.getConnection(url,info);
-        } catch (SQLException e) {
-            syslog.logException(e,this,"connect");
-        }
+        return DriverManager.getConnection(url,info);
     }
 
     /**
@@ -76,15 +76,13 @@ public class OrientDBDatabaseAdapter extends JDBCDatabaseAdapter {
     }
 
     /**
-     * Method used to execute specified update query in database and return number of affected rows
+     * Method used to execute specified update query in database in REST mode and return number of affected rows
      * @param updateStatement Query statement to execute
      * @return Number of affected rows
      */
-    @Override
-    Integer executeUpdateQuery(Object updateStatement) {
-        if (mode == WorkMode.jdbc) return executeUpdateQuery(updateStatement);
+    Integer executeUpdateQuery(String updateStatement) {
         HashMap<String,Object> options = DataMap.create("batch",true);
-        String result = execOrientDBRequest(updateStatement.toString(),options);
+        String result = execOrientDBRequest(updateStatement,options);
         if (result.isEmpty()) return 0;
         HashMap resultJson = gson.fromJson(result,HashMap.class);
         if (!resultJson.containsKey("result")) return 0;
@@ -92,48 +90,91 @@ public class OrientDBDatabaseAdapter extends JDBCDatabaseAdapter {
     }
 
     /**
-     * Method used to prepare set of SQL queries to UPDATE or INSERT multiple records to database
+     * Method used to prepare SQL to UPDATE or INSERT multiple records to database in REST mode. New records
+     * written by single INSERT query with list of values for each record, existing records written by UPDATE
+     * queries, delimited by ';' symbol
      * @param collectionName Name of collection to update
      * @param data Array or data rows to UPDATE or INSERT
-     * @param isNew if true, then method will return INSERT queries, otherwise will return UPDATE queries
-     * @return Set of INSERT or UPDATE query lines, delimited by ';' symbol
+     * @param isNew if true, then method will return INSERT query, otherwise will return UPDATE queries
+     * @return INSERT query, set of UPDATE queries or empty string if there are no rows to write
      */
-    @Override
     String prepareUpdateBatchSQL(String collectionName, ArrayList<HashMap<String,Object>> data, boolean isNew) {
-        if (mode == WorkMode.jdbc) return super.prepareUpdateBatchSQL(collectionName,data,isNew);
-        if (data.size() == 0) return "";
+        StringBuilder result = new StringBuilder();
+        for (HashMap<String,Object> row: data) {
+            if (row.size() == 0) continue;
+            String sql = prepareUpdateSQL(collectionName,row,isNew);
+            if (sql == null || sql.isEmpty()) continue;
+            if (result.length() > 0) result.append(isNew ? "),(" : ";");
+            result.append(sql);
+        }
+        if (result.length() == 0 || !isNew) return result.toString();
         String keys = getCollectionFields(collectionName).stream()
                 .filter(key->!key.equals(getIdFieldName(collectionName)))
-                .reduce((s, s1) -> s+","+s1).orElse("");
-        return (isNew ? "INSERT INTO "+collectionName+" ("+keys+") VALUES (" : "") +
-                joinSqlLines(collectionName,data,isNew,isNew ? "),(" : ";") + (isNew ? ")" : "");
+                .collect(Collectors.joining(","));
+        return "INSERT INTO "+collectionName+" ("+keys+") VALUES ("+result+")";
     }
 
     /**
-     * Returns INSERT or UPDATE query statement for provided data row
+     * Returns values for INSERT query or UPDATE query statement for provided data row
      * @param collectionName Name of collection to update
      * @param row Row which is a set of fields
-     * @param isNew if true, then method will return INSERT query, otherwise will return UPDATE query
-     * @return
+     * @param isNew if true, then method will return values for INSERT query, otherwise will return UPDATE query
+     * @return Values delimited by ',' symbol or UPDATE query, empty string or null if row can not be written
      */
-    @Override
     String prepareUpdateSQL(String collectionName,HashMap<String,Object> row, boolean isNew) {
-        if (mode == WorkMode.jdbc) super.prepareUpdateSQL(collectionName,row,isNew);
         HashMap<String,String> fields = prepareDataForSql(collectionName,row);
         if (fields.isEmpty()) return null;
-        Set<String> keys = getCollectionFields(collectionName);
         if (isNew)
-            return keys.stream()
+            return getCollectionFields(collectionName).stream()
                     .filter(key-> !key.equals(getIdFieldName(collectionName)))
                     .map(key -> fields.getOrDefault(key, "null"))
-                    .reduce((s, s1) -> s+","+s1).orElse("");
-        String fieldString = fields.keySet().stream().reduce((s,s1) -> s+"="+fields.get(s1)).orElse("");
+                    .collect(Collectors.joining(","));
+        String fieldString = fields.keySet().stream().map(key -> key+"="+fields.get(key)).collect(Collectors.joining(","));
         String idValue = formatFieldValueForSQL(collectionName,getIdFieldName(collectionName),
                 row.get(getIdFieldName(collectionName)));
-        if (fieldString.isEmpty() || idValue == null) return "";
+        if (idValue == null) return "";
         return "UPDATE "+collectionName+" SET "+fieldString+" WHERE id="+idValue;
     }
 
+    /**
+     * Method returns row of fields, formatted according to configuration and ready to be used in
+     * SQL statements
+     * @param collectionName Name of collection
+     * @param row Row of data
+     * @return Row of data with field values, formatted according to their types
+     */
+    HashMap<String,String> prepareDataForSql(String collectionName,HashMap<String,Object> row) {
+        HashMap<String,String> result = new HashMap<>();
+        for (String fieldName: row.keySet()) {
+            String value = formatFieldValueForSQL(collectionName,fieldName,row.get(fieldName));
+            if (value != null) result.put(fieldName,value);
+        }
+        return result;
+    }
+
+    /**
+     * Formats value for specified field for UPDATE or INSERT query, depending on type of this field, defined
+     * in configuration file
+     * @param collectionName Name of collection
+     * @param fieldName Name of field
+     * @param value Value of field to format
+     * @return Properly formatted and escaped value to insert to SQL query line
+     */
+    String formatFieldValueForSQL(String collectionName,String fieldName,Object value) {
+        if (!isValidFieldConfig(collectionName,fieldName)) return null;
+        if (value == null) return null;
+        String type = getFieldConfigValue(collectionName,fieldName,"type").toString();
+        switch (type) {
+            case "decimal":
+                return value.toString();
+            case "integer":
+                return value.toString();
+            case "string":
+                return "'"+value.toString()+"'";
+        }
+        return null;
+    }
+
     /**
      * Method used to execute REST request to OrientDB database server
      * @param sql SQL query to send to server
@@ -204,6 +245,7 @@ public class OrientDBDatabaseAdapter extends JDBCDatabaseAdapter {
      */
     @Override
     ArrayList<Map<String,Object>> parseQueryResult(Object result) {
+        if (mode == WorkMode.jdbc) return super.parseQueryResult(result);
         if (result==null) return null;
         HashMap resultJson = gson.fromJson(result.toString(),HashMap.class);
         if (resultJson == null || !resultJson.containsKey("result")) return null;
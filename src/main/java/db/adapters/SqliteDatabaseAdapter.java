@@ -1,5 +1,6 @@
 package db.adapters;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -23,14 +24,11 @@ public class SqliteDatabaseAdapter extends JDBCDatabaseAdapter {
     }
 
     /**
-     * Method used to open database connection (which is previously setup adn configured)
+     * Method used to open new database connection (which is previously setup adn configured)
+     * @return Connection
+     * @throws SQLException
      */
-    void connect() {
-        String url = "jdbc:sqlite://"+path;
-        try {
-            this.connection = DriverManager.getConnection(url);
-        } catch (SQLException e) {
-            syslog.logException(e,this,"connect");
-        }
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite://"+path);
     }
 }
@@ -6,14 +6,18 @@ import db.adapters.DatabaseAdapter;
 import db.adapters.IDatabaseAdapter;
 import main.ISyslog;
 import main.Syslog;
-import readers.FileDataReader;
+import readers.DataCursor;
+import readers.DataReader;
 import readers.IDataReader;
 import utils.DataMap;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class FileDatabasePersister extends DatabasePersister implements ISyslog.Loggable {
 
+    // Maximum time in milliseconds to wait for write-behind queue to write queued records on close
+    private static final long WRITE_QUEUE_CLOSE_TIMEOUT = 30000L;
+
     // Unique name of persister
     private String name = "";
     // Link to adapter, which provides database access settings
@@ -31,10 +35,26 @@ public class FileDatabasePersister extends DatabasePersister implements ISyslog.
     // How many rows should this persister write to database per single run. If 0, then will process all data in
     // source folder
     private int rowsPerRun = 0;
+    // Number of records, which persister writes to database in single transaction. Last record written to
+    // status file after each chunk
+    private int chunkSize = 1000;
     // Path to folder, in which this persister write temporary status information, like last processed row
     private String statusPath = "";
     // Last processed record
     private HashMap<String,Object> lastRecord;
+    // Should this persister write records asynchronously, using write-behind queue. With several writer threads
+    // and without spool records delivered at least once
+    private boolean writeBehind = false;
+    // Configuration of write-behind queue and spool
+    private HashMap<String,Object> queueConfig;
+    // Queue of records, which are written to database by background threads
+    private WriteBehindQueue writeQueue;
+    // Last record, added to write-behind queue. Next run continues from it, while queue does not fail
+    private HashMap<String,Object> queuedRecord;
+    // Should this persister append records to local spool, if database fails
+    private boolean spillToDisk = false;
+    // Spool of records, which database could not write. Replayed by background thread
+    private SpillQueue spillQueue;
 
     /**
      * Class constructor
@@ -76,30 +96,142 @@ public class FileDatabasePersister extends DatabasePersister implements ISyslog.
         writeDuplicates = Boolean.parseBoolean(config.getOrDefault("writeDuplicates",writeDuplicates).toString());
         fillDataGaps = Boolean.parseBoolean(config.getOrDefault("fillDataGaps",fillDataGaps).toString());
         rowsPerRun = Double.valueOf(config.getOrDefault("rowsPerRun",0).toString()).intValue();
+        chunkSize = Math.max(1,Double.valueOf(config.getOrDefault("chunkSize",chunkSize).toString()).intValue());
         statusPath = config.getOrDefault("statusPath",statusPath).toString();
+        writeBehind = Boolean.parseBoolean(config.getOrDefault("writeBehind",writeBehind).toString());
+        spillToDisk = Boolean.parseBoolean(config.getOrDefault("spillToDisk",spillToDisk).toString());
+        queueConfig = config;
+        closeQueues();
         if (config.containsKey("databaseAdapter")) databaseAdapter = DatabaseAdapter.get(config.get("databaseAdapter").toString());
         if (syslog == null) syslog = new Syslog(this);
-        sourceDataReader = new FileDataReader(sourcePath,syslog);
+        if (sourceDataReader != null) sourceDataReader.close();
+        sourceDataReader = DataReader.get(sourcePath,syslog,config);
     }
 
     /**
-     * Entry point method. Used to start process of writing source data to database
-     * @return
+     * Entry point method. Used to start process of writing source data to database. Source data read
+     * by cursor in timestamp order and written by chunks of "chunkSize" records, so memory usage does not depend
+     * on amount of source data. Last record of each written chunk saved to status file, so if writing of chunk
+     * fails, next run starts from this chunk
+     * @return Number of inserted rows or null if nothing inserted
      */
     @Override
     public Integer persist() {
         syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"' started to persist...",
                 this.getClass().getName(),"persist");
         lastRecord = new HashMap<>();
-        ArrayList<HashMap<String,Object>> data = prepareData();
-        if (data == null || data.size()==0) return null;
+        if (sourceDataReader == null) return null;
+        if (writeBehind && writeQueue != null && !writeQueue.isFailed() && queuedRecord != null)
+            lastRecord = queuedRecord;
+        else {
+            if (writeQueue != null) writeQueue.reset();
+            readAndSetLastRecord();
+        }
+        Long startDate = 0L;
+        if (lastRecord != null) startDate = Long.parseLong(lastRecord.get("timestamp").toString());
+        if (startDate > 0) startDate +=1;
+        syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"'. Last record timestamp = ."+startDate,
+                this.getClass().getName(),"persist");
+        int insertedRowsCount = 0;
+        int processedRowsCount = 0;
+        try (DataCursor cursor = sourceDataReader.getCursor(startDate,Instant.now().getEpochSecond(),true)) {
+            while (rowsPerRun <= 0 || processedRowsCount < rowsPerRun) {
+                HashMap<String,Object> chunkStartRecord = lastRecord;
+                int limit = rowsPerRun > 0 ? Math.min(chunkSize,rowsPerRun-processedRowsCount) : chunkSize;
+                ArrayList<HashMap<String,Object>> data = prepareData(cursor,limit);
+                if (data == null) break;
+                processedRowsCount += data.size();
+                Integer count = writeBehind ? queueData(data) : insertData(data);
+                if (count == null) {
+                    lastRecord = chunkStartRecord;
+                    break;
+                }
+                insertedRowsCount += count;
+            }
+        }
+        if (writeBehind) queuedRecord = writeQueue != null && writeQueue.isFailed() ? null : lastRecord;
+        else flushLastRecord();
+        return insertedRowsCount > 0 ? insertedRowsCount : null;
+    }
+
+    /**
+     * Method used to append chunk of records to spool, from which they replayed to database later, and
+     * write last record of chunk to status file
+     * @param spillQueue Spool
+     * @param data Records to append
+     * @return Number of spooled rows or null in case of errors
+     */
+    private Integer spillData(SpillQueue spillQueue, ArrayList<HashMap<String,Object>> data) {
+        if (!spillQueue.append(data)) return null;
+        writeLastRecord();
+        return data.size();
+    }
+
+    /**
+     * Returns spool of persister. Spool created on first use, if "spillToDisk" is enabled
+     * @return Spool or null if spool is disabled or could not be opened
+     */
+    private SpillQueue getSpillQueue() {
+        if (!spillToDisk || spillQueue != null) return spillQueue;
+        try {
+            spillQueue = new SpillQueue(name,getStatusPath()+"/spool",databaseAdapter,collectionName,queueConfig,syslog);
+        } catch (Exception e) {
+            syslog.logException(e,this,"getSpillQueue");
+        }
+        return spillQueue;
+    }
+
+    /**
+     * Method used to add chunk of records to write-behind queue. If queue is full, waits until writer threads
+     * free space in it
+     * @param data Records to write
+     * @return Number of queued rows or null if queue failed
+     */
+    private Integer queueData(ArrayList<HashMap<String,Object>> data) {
+        if (writeQueue == null)
+            writeQueue = new WriteBehindQueue(name,databaseAdapter,collectionName,queueConfig,syslog,
+                    getSpillQueue(),this::commitRecord);
+        for (HashMap<String,Object> record: data)
+            if (!writeQueue.put(record)) return null;
+        return data.size();
+    }
+
+    /**
+     * Method used by write-behind queue to save last record, which written to database together with all
+     * previous records
+     * @param record Written record
+     */
+    private void commitRecord(HashMap<String,Object> record) {
+        writeStatus("last_record",new Gson().toJson(record));
+    }
+
+    /**
+     * Method waits until write-behind queue writes all records and stops its writer threads. Then stops
+     * replaying of spool. Not written records of spool replayed when spool opened next time
+     */
+    void closeQueues() {
+        if (writeQueue != null) writeQueue.close(WRITE_QUEUE_CLOSE_TIMEOUT);
+        writeQueue = null;
+        queuedRecord = null;
+        if (spillQueue != null) spillQueue.close();
+        spillQueue = null;
+    }
+
+    /**
+     * Method used to write chunk of records to database and write last record of chunk to status file
+     * @param data Records to write
+     * @return Number of inserted rows or null in case of errors
+     */
+    private Integer insertData(ArrayList<HashMap<String,Object>> data) {
         syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"' got data record "+data.toString(),
                 this.getClass().getName(),"persist");
+        SpillQueue spillQueue = getSpillQueue();
+        if (spillQueue != null && !spillQueue.isEmpty()) return spillData(spillQueue,data);
         Integer insertedRowsCount = databaseAdapter.insert(collectionName,data);
         if (insertedRowsCount==null || insertedRowsCount==0) {
             syslog.log(ISyslog.LogLevel.ERROR,"Data persister '"+this.name+"' could not write data record "+data.toString(),
                     this.getClass().getName(),"persist");
-            return null;
+            return spillQueue != null ? spillData(spillQueue,data) : null;
         }
         syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"' wrote data record "+data.toString(),
                 this.getClass().getName(),"persist");
@@ -108,32 +240,23 @@ public class FileDatabasePersister extends DatabasePersister implements ISyslog.
     }
 
     /**
-     * Method used to read source data and transform it to format, ready for data adapter
+     * Method used to read next chunk of source data from cursor and transform it to format, ready for data adapter
      * to write to database
-     * @return
+     * @param cursor Cursor of source data
+     * @param limit Maximum number of records in chunk
+     * @return List of records or null if there is no more data
      */
-    private ArrayList<HashMap<String,Object>> prepareData() {
+    private ArrayList<HashMap<String,Object>> prepareData(DataCursor cursor, int limit) {
         syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"'. Begin prepare data to persist",
                 this.getClass().getName(),"prepareData");
-        if (sourceDataReader == null) return null;
-        readAndSetLastRecord();
-        syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"'. Read last data record.",
-                this.getClass().getName(),"prepareData");
-        Long startDate = 0L;
-        if (lastRecord != null) startDate = Long.parseLong(lastRecord.get("timestamp").toString());
-        if (startDate > 0) startDate +=1;
-        syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"'. Last record timestamp = ."+startDate,
-                this.getClass().getName(),"prepareData");
-        NavigableMap<Long,HashMap<String,Object>> data = sourceDataReader.getData(startDate,true);
-        syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+this.name+"'. Got data ."+data,
-                this.getClass().getName(),"prepareData");
-        return (data == null || data.size()==0) ? null :
-        (ArrayList<HashMap<String,Object>>)data.values().stream()
-                .sorted(Comparator.comparingInt(s -> Integer.parseInt(s.get("timestamp").toString())))
-                .filter(record -> !isDuplicateRecord(record))
-                .limit(rowsPerRun > 0 ? rowsPerRun : data.size())
-                .peek(this::setLastRecord)
-                .collect(Collectors.toList());
+        ArrayList<HashMap<String,Object>> result = new ArrayList<>();
+        while (result.size() < limit && cursor.hasNext()) {
+            HashMap<String,Object> record = cursor.next();
+            if (isDuplicateRecord(record)) continue;
+            setLastRecord(record);
+            result.add(record);
+        }
+        return result.size()==0 ? null : result;
     }
 
     /**
@@ -192,6 +315,38 @@ public class FileDatabasePersister extends DatabasePersister implements ISyslog.
         return lastRecord;
     }
 
+    /**
+     * Method writes queued records, stops queues and closes connections of database adapter and data reader
+     */
+    @Override
+    public void close() {
+        closeQueues();
+        if (databaseAdapter != null) databaseAdapter.close();
+        if (sourceDataReader != null) sourceDataReader.close();
+        sourceDataReader = null;
+    }
+
+    void setDatabaseAdapter(IDatabaseAdapter databaseAdapter) {
+        closeQueues();
+        this.databaseAdapter = databaseAdapter;
+    }
+
+    WriteBehindQueue getWriteQueue() { return writeQueue; }
+    SpillQueue getSpillQueueInstance() { return spillQueue; }
+
+    /**
+     * Returns statistics of write-behind queue (queue depth, sizes of batches and write latency) and spool
+     * @return HashMap with statistics or null if persister writes synchronously without spool
+     */
+    @Override
+    public HashMap<String,Object> getTaskInfo() {
+        if (writeQueue == null && spillQueue == null) return null;
+        HashMap<String,Object> result = new HashMap<>();
+        if (writeQueue != null) result.putAll(writeQueue.getStats());
+        if (spillQueue != null) result.putAll(spillQueue.getStats());
+        return result;
+    }
+
     @Override
     public String getName() {
         return name;
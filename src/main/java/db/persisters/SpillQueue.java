@@ -0,0 +1,256 @@
+package db.persisters;
+
+import com.google.gson.Gson;
+import db.adapters.IDatabaseAdapter;
+import main.ISyslog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Local append-only spool of records, which persister could not write to database. Records stored in "spool"
+ * file as JSON lines. Background drainer thread replays spool in order by chunks of "chunkSize" records every
+ * "spillRetryInterval" milliseconds, until database accepts them. Position of first not written record kept in
+ * "offset" file. When all records written, spool file truncated. While spool is not empty, persister should
+ * append new records to spool too, so records reach database in the same order, as they were read from source.
+ */
+class SpillQueue {
+
+    // Name of persister, which owns spool
+    private String name;
+    // Database adapter to write records
+    private IDatabaseAdapter databaseAdapter;
+    // Collection (table) to write records
+    private String collectionName;
+    // Link to system logger
+    private ISyslog syslog;
+    // Path to spool file
+    private Path spoolPath;
+    // Path to file with offset of first not written record in spool file
+    private Path offsetPath;
+    // Maximum number of records, replayed to database at once
+    private int chunkSize = 1000;
+    // Time in milliseconds between attempts to replay spool
+    private long retryInterval = 10000L;
+    // Offset of first not written record in spool file
+    private long offset = 0;
+    // Size of spool file
+    private long size = 0;
+    // Background thread, which replays spool
+    private Thread drainer;
+    // Lock, which allows only one consumer to replay spool
+    private final Object replayLock = new Object();
+    // Is spool closed
+    private volatile boolean closed = false;
+    private Gson gson = new Gson();
+
+    /**
+     * Class constructor
+     * @param name Name of persister
+     * @param path Path to folder of spool
+     * @param databaseAdapter Database adapter to write records
+     * @param collectionName Collection to write records
+     * @param config Configuration of persister
+     * @param syslog System logger
+     * @throws IOException if spool could not be opened
+     */
+    SpillQueue(String name, String path, IDatabaseAdapter databaseAdapter, String collectionName,
+               HashMap<String,Object> config, ISyslog syslog) throws IOException {
+        this.name = name;
+        this.databaseAdapter = databaseAdapter;
+        this.collectionName = collectionName;
+        this.syslog = syslog;
+        this.chunkSize = Math.max(1,Double.valueOf(config.getOrDefault("chunkSize",chunkSize).toString()).intValue());
+        this.retryInterval = Double.valueOf(config.getOrDefault("spillRetryInterval",retryInterval).toString()).longValue();
+        this.spoolPath = Paths.get(path,"spool");
+        this.offsetPath = Paths.get(path,"offset");
+        Files.createDirectories(spoolPath.getParent());
+        recover();
+        drainer = new Thread(this::drain,"persister-"+name+"-spool");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Method reads offset of spool and removes incomplete record from the end of spool file, which could stay
+     * there, if application stopped while appending records
+     * @throws IOException
+     */
+    private void recover() throws IOException {
+        if (Files.exists(offsetPath)) {
+            try {
+                offset = Long.parseLong(new String(Files.readAllBytes(offsetPath),StandardCharsets.UTF_8).trim());
+            } catch (NumberFormatException e) {
+                offset = 0;
+            }
+        }
+        if (!Files.exists(spoolPath)) {
+            offset = 0;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(spoolPath,StandardOpenOption.READ,StandardOpenOption.WRITE)) {
+            size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while (size > 0) {
+                buffer.clear();
+                channel.read(buffer,size-1);
+                if (buffer.get(0) == '\n') break;
+                size--;
+            }
+            if (size < channel.size()) channel.truncate(size);
+        }
+        if (offset > size) offset = size;
+    }
+
+    /**
+     * Method appends records to the end of spool and forces them to disk
+     * @param records Records to append
+     * @return True if records appended or false otherwise
+     */
+    synchronized boolean append(List<HashMap<String,Object>> records) {
+        StringBuilder lines = new StringBuilder();
+        for (HashMap<String,Object> record: records) lines.append(gson.toJson(record)).append('\n');
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(spoolPath,StandardOpenOption.CREATE,StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer,size+buffer.position());
+            channel.force(false);
+            size += bytes.length;
+            syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+name+"' spooled "+records.size()+" records",
+                    this.getClass().getName(),"append");
+            return true;
+        } catch (IOException e) {
+            syslog.logException(e,this,"append");
+            return false;
+        }
+    }
+
+    /**
+     * Method replays records of spool to database until spool is empty, database fails or spool could not be read
+     * @return True if spool is empty
+     */
+    boolean replay() {
+        synchronized (replayLock) {
+            while (!closed) {
+                long nextOffset;
+                ArrayList<HashMap<String,Object>> records = new ArrayList<>();
+                synchronized (this) {
+                    if (offset >= size) return true;
+                    nextOffset = read(records);
+                }
+                if (nextOffset <= offset) return false;
+                if (records.isEmpty()) {
+                    commit(nextOffset);
+                    continue;
+                }
+                Integer result = databaseAdapter.insert(collectionName,records);
+                if (result == null || result == 0) return false;
+                syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+name+"' replayed "+records.size()+
+                        " spooled records",this.getClass().getName(),"replay");
+                commit(nextOffset);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Method reads chunk of records from current offset of spool
+     * @param records List, to which read records added
+     * @return Offset of spool after read records or -1 if spool could not be read
+     */
+    private long read(ArrayList<HashMap<String,Object>> records) {
+        long result = offset;
+        try (FileChannel channel = FileChannel.open(spoolPath,StandardOpenOption.READ)) {
+            channel.position(offset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                    StandardCharsets.UTF_8));
+            String line;
+            while (records.size() < chunkSize && result < size && (line = reader.readLine()) != null) {
+                result += line.getBytes(StandardCharsets.UTF_8).length+1;
+                try {
+                    HashMap<String,Object> record = gson.fromJson(line,HashMap.class);
+                    if (record != null) records.add(record);
+                } catch (Exception e) {
+                    syslog.log(ISyslog.LogLevel.ERROR,"Data persister '"+name+"' skipped corrupted spooled record '"+
+                            line+"'",this.getClass().getName(),"read");
+                }
+            }
+        } catch (IOException e) {
+            syslog.logException(e,this,"read");
+            return -1;
+        }
+        return result;
+    }
+
+    /**
+     * Method saves offset of first not written record. If all records written, truncates spool file
+     * @param nextOffset New offset
+     */
+    private synchronized void commit(long nextOffset) {
+        offset = nextOffset;
+        try {
+            if (offset >= size) {
+                try (FileChannel channel = FileChannel.open(spoolPath,StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+                offset = 0;
+                size = 0;
+            }
+            Path tempPath = Paths.get(offsetPath.toString()+".tmp");
+            Files.write(tempPath,String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tempPath,offsetPath,StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath,offsetPath,StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            syslog.logException(e,this,"commit");
+        }
+    }
+
+    /**
+     * Main loop of drainer thread
+     */
+    private void drain() {
+        while (!closed) {
+            if (!isEmpty()) replay();
+            try {
+                Thread.sleep(isEmpty() ? 1000 : retryInterval);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Method stops drainer thread. Not written records stay in spool
+     */
+    void close() {
+        closed = true;
+        drainer.interrupt();
+        try {
+            drainer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    synchronized boolean isEmpty() { return offset >= size; }
+
+    /**
+     * Returns statistics of spool
+     * @return HashMap with "spoolSize" (bytes of not written records)
+     */
+    synchronized HashMap<String,Object> getStats() {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("spoolSize",size-offset);
+        return result;
+    }
+}
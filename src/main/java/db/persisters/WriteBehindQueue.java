@@ -0,0 +1,317 @@
+package db.persisters;
+
+import db.adapters.IDatabaseAdapter;
+import main.ISyslog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of records, which persister sends to database asynchronously. Records drained by writer threads,
+ * which collect batches up to "writeBatchSize" records, waiting up to "writeBatchDelay" milliseconds for batch
+ * to fill. If queue is full, producer waits until writers free space. Batches taken from queue in order, but
+ * written in parallel, so when batch written, last record of all batches before it, which are written too, passed
+ * to "commit" function (to save it as checkpoint). If write of batch fails and spill queue is set, batch appended
+ * to spill queue and treated as written. Otherwise queue stops to accept records until "reset". If spill queue
+ * is set, queue uses single writer thread, so batches reach database or spool strictly in order. Without spill
+ * queue, several writer threads ("writeThreads") deliver records at least once: if batch fails, batches after it
+ * could be already written and they are written again when persister continues from last committed record
+ */
+class WriteBehindQueue {
+
+    /**
+     * Batch of records, taken from queue
+     */
+    private static class Batch {
+        // Sequence number of batch
+        long sequence;
+        // Records of batch
+        ArrayList<HashMap<String,Object>> records;
+        Batch(long sequence, ArrayList<HashMap<String,Object>> records) {
+            this.sequence = sequence;
+            this.records = records;
+        }
+    }
+
+    // Name of persister, which owns queue
+    private String name;
+    // Database adapter to write records
+    private IDatabaseAdapter databaseAdapter;
+    // Collection (table) to write records
+    private String collectionName;
+    // Spool, to which batches appended if database fails or spool already contains records (could be null)
+    private SpillQueue spillQueue;
+    // Function, which receives last record, written to database together with all records before it
+    private Consumer<HashMap<String,Object>> commit;
+    // Link to system logger
+    private ISyslog syslog;
+    // Records, waiting to be written
+    private ArrayBlockingQueue<HashMap<String,Object>> queue;
+    // Maximum number of records in batch
+    private int batchSize = 1000;
+    // Maximum time in milliseconds, which writer waits for batch to fill
+    private long batchDelay = 100L;
+    // Writer threads
+    private ArrayList<Thread> writers = new ArrayList<>();
+    // Lock, which writers hold while taking batch from queue, so each batch contains sequential records
+    private final Object takeLock = new Object();
+    // Sequence number of next batch
+    private long nextSequence = 0;
+    // Sequence number of next batch to commit
+    private long commitSequence = 0;
+    // Written batches, which wait for previous batches to commit, indexed by sequence number
+    private TreeMap<Long,Batch> written = new TreeMap<>();
+    // Number of batches, taken from queue and not finished yet
+    private int inFlight = 0;
+    // Is write of some batch failed
+    private volatile boolean failed = false;
+    // Is queue closed
+    private volatile boolean closed = false;
+    // Statistics of written batches
+    private long batchesCount = 0;
+    private long recordsCount = 0;
+    private int lastBatchSize = 0;
+    private long lastLatency = 0;
+    private long maxLatency = 0;
+    private long totalLatency = 0;
+
+    /**
+     * Class constructor
+     * @param name Name of persister
+     * @param databaseAdapter Database adapter to write records
+     * @param collectionName Collection to write records
+     * @param config Configuration of persister
+     * @param syslog System logger
+     * @param spillQueue Spool for batches, which database could not write (could be null)
+     * @param commit Function, which receives last record, written to database together with all records before it
+     */
+    WriteBehindQueue(String name, IDatabaseAdapter databaseAdapter, String collectionName, HashMap<String,Object> config,
+                     ISyslog syslog, SpillQueue spillQueue, Consumer<HashMap<String,Object>> commit) {
+        this.name = name;
+        this.databaseAdapter = databaseAdapter;
+        this.collectionName = collectionName;
+        this.spillQueue = spillQueue;
+        this.syslog = syslog;
+        this.commit = commit;
+        int queueSize = Math.max(1,Double.valueOf(config.getOrDefault("writeQueueSize",10000).toString()).intValue());
+        int threadsCount = Math.max(1,Double.valueOf(config.getOrDefault("writeThreads",1).toString()).intValue());
+        if (spillQueue != null && threadsCount > 1) {
+            syslog.log(ISyslog.LogLevel.WARNING,"Data persister '"+name+"' uses single writer thread instead of "+
+                    threadsCount+", because spool requires records to be written in order",this.getClass().getName(),
+                    "WriteBehindQueue");
+            threadsCount = 1;
+        }
+        this.batchSize = Math.max(1,Double.valueOf(config.getOrDefault("writeBatchSize",batchSize).toString()).intValue());
+        this.batchDelay = Double.valueOf(config.getOrDefault("writeBatchDelay",batchDelay).toString()).longValue();
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        for (int index=0;index<threadsCount;index++) {
+            Thread writer = new Thread(this::drain,"persister-"+name+"-writer-"+index);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * Method adds record to queue. If queue is full, waits until writers free space for it
+     * @param record Record to write
+     * @return True if record added or false if queue failed or closed
+     */
+    boolean put(HashMap<String,Object> record) {
+        try {
+            while (!failed && !closed)
+                if (queue.offer(record,batchDelay > 0 ? batchDelay : 100,TimeUnit.MILLISECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Main loop of writer thread
+     */
+    private void drain() {
+        while (!closed || !queue.isEmpty()) {
+            Batch batch;
+            try {
+                batch = takeBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch == null) continue;
+            long startTime = System.currentTimeMillis();
+            Integer result = failed ? null : write(batch.records);
+            long latency = System.currentTimeMillis()-startTime;
+            if (result == null || result == 0) {
+                syslog.log(ISyslog.LogLevel.ERROR,"Data persister '"+name+"' could not write batch of "+
+                        batch.records.size()+" records",this.getClass().getName(),"drain");
+                failBatch();
+            } else {
+                syslog.log(ISyslog.LogLevel.DEBUG,"Data persister '"+name+"' wrote batch of "+batch.records.size()+
+                        " records in "+latency+" ms. Queue size: "+queue.size(),this.getClass().getName(),"drain");
+                finishBatch(batch,latency);
+            }
+        }
+    }
+
+    /**
+     * Method writes batch to database. If spool contains records, which are not written yet, or database fails,
+     * appends batch to spool
+     * @param records Records of batch
+     * @return Number of written or spooled records or null in case of errors
+     */
+    private Integer write(ArrayList<HashMap<String,Object>> records) {
+        Integer result = null;
+        if (spillQueue == null || spillQueue.isEmpty()) result = databaseAdapter.insert(collectionName,records);
+        if ((result == null || result == 0) && spillQueue != null && spillQueue.append(records)) result = records.size();
+        return result;
+    }
+
+    /**
+     * Method takes next batch of sequential records from queue. Waits up to "writeBatchDelay" milliseconds
+     * after first record for batch to fill
+     * @return Batch or null if queue is empty
+     * @throws InterruptedException
+     */
+    private Batch takeBatch() throws InterruptedException {
+        synchronized (takeLock) {
+            HashMap<String,Object> record = queue.poll(100,TimeUnit.MILLISECONDS);
+            if (record == null) return null;
+            ArrayList<HashMap<String,Object>> records = new ArrayList<>();
+            records.add(record);
+            long deadline = System.currentTimeMillis()+batchDelay;
+            while (records.size() < batchSize) {
+                queue.drainTo(records,batchSize-records.size());
+                long timeout = deadline-System.currentTimeMillis();
+                if (records.size() >= batchSize || timeout <= 0 || closed) break;
+                record = queue.poll(timeout,TimeUnit.MILLISECONDS);
+                if (record == null) break;
+                records.add(record);
+            }
+            synchronized (this) {
+                inFlight++;
+                return new Batch(nextSequence++,records);
+            }
+        }
+    }
+
+    /**
+     * Method registers written batch and commits last record of all sequentially written batches
+     * @param batch Written batch
+     * @param latency Time of write in milliseconds
+     */
+    private synchronized void finishBatch(Batch batch, long latency) {
+        inFlight--;
+        batchesCount++;
+        recordsCount += batch.records.size();
+        lastBatchSize = batch.records.size();
+        lastLatency = latency;
+        maxLatency = Math.max(maxLatency,latency);
+        totalLatency += latency;
+        written.put(batch.sequence,batch);
+        HashMap<String,Object> lastRecord = null;
+        while (!failed && written.containsKey(commitSequence)) {
+            Batch committed = written.remove(commitSequence++);
+            lastRecord = committed.records.get(committed.records.size()-1);
+        }
+        if (lastRecord != null) commit.accept(lastRecord);
+        notifyAll();
+    }
+
+    /**
+     * Method registers failed batch. Records of this batch and all next batches should be written again
+     */
+    private synchronized void failBatch() {
+        inFlight--;
+        failed = true;
+        notifyAll();
+    }
+
+    /**
+     * Method waits until all records of queue written or write fails
+     * @param timeout Maximum time to wait in milliseconds
+     * @return True if all records written
+     */
+    boolean flush(long timeout) {
+        long deadline = System.currentTimeMillis()+timeout;
+        while (true) {
+            synchronized (takeLock) {
+                synchronized (this) {
+                    if (failed) return false;
+                    if (queue.isEmpty() && inFlight == 0) return true;
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) return false;
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Method clears queue after failure and waits for batches, which are writing now. After that queue accepts
+     * new records, which should start from last committed record
+     */
+    void reset() {
+        synchronized (takeLock) {
+            queue.clear();
+            synchronized (this) {
+                try {
+                    while (inFlight > 0) wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.clear();
+                commitSequence = nextSequence;
+                failed = false;
+            }
+        }
+    }
+
+    /**
+     * Method stops writer threads after they write all queued records
+     * @param timeout Maximum time to wait in milliseconds
+     */
+    void close(long timeout) {
+        closed = true;
+        long deadline = System.currentTimeMillis()+timeout;
+        for (Thread writer: writers) {
+            try {
+                writer.join(Math.max(1,deadline-System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer.interrupt();
+        }
+    }
+
+    boolean isFailed() { return failed; }
+
+    /**
+     * Returns statistics of queue and written batches
+     * @return HashMap with "queueSize", "queueCapacity", "inFlight", "batches", "records", "lastBatchSize",
+     * "averageBatchSize", "lastLatency", "averageLatency", "maxLatency" (in milliseconds) and "failed" flag
+     */
+    synchronized HashMap<String,Object> getStats() {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("queueSize",queue.size());
+        result.put("queueCapacity",queue.size()+queue.remainingCapacity());
+        result.put("inFlight",inFlight);
+        result.put("batches",batchesCount);
+        result.put("records",recordsCount);
+        result.put("lastBatchSize",lastBatchSize);
+        result.put("averageBatchSize",batchesCount > 0 ? (double)recordsCount/batchesCount : 0.0);
+        result.put("lastLatency",lastLatency);
+        result.put("averageLatency",batchesCount > 0 ? (double)totalLatency/batchesCount : 0.0);
+        result.put("maxLatency",maxLatency);
+        result.put("failed",failed);
+        return result;
+    }
+}
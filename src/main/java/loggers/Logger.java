@@ -8,10 +8,8 @@ import loggers.parsers.IParser;
 import main.ISyslog;
 import main.LoggerApplication;
 import main.Syslog;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import writers.DataWriter;
+import writers.IDataWriter;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -47,6 +45,8 @@ public abstract class Logger extends CronjobTask implements ILogger,Cloneable, S
     // List of field names, which should be logged to file. If empty or null, then
     // all fields will be saved
     private List<String> fieldsToLog;
+    // Data writer, which writes records to destination folder in configured storage format
+    private IDataWriter dataWriter;
 
     /**
      * Factory method, used to get instanse of logger of specified type
@@ -99,17 +99,21 @@ public abstract class Logger extends CronjobTask implements ILogger,Cloneable, S
         if (!fieldsToLog.isEmpty())
             this.fieldsToLog = Arrays.asList(fieldsToLog.split(","));
         if (this.syslog == null) this.syslog = new Syslog(this);
+        if (this.dataWriter != null) this.dataWriter.close();
+        this.dataWriter = DataWriter.create(config,getDestinationPath(),syslog);
         this.downloader.configure(config);
         this.parser.configure(config);
         this.propagateSyslog();
     }
 
     /**
-     * Method, which Timer used to run this object as a Cronjob ("TimerTask" implementation)
+     * Method, which Timer used to run this object as a Cronjob ("TimerTask" implementation). Last written record
+     * saved to status file at the end of each run
      */
     public void run() {
         super.run();
         log();
+        flushLastRecord();
         setTaskStatus(CronjobTaskStatus.IDLE);
         setLastExecTime(Instant.now().getEpochSecond());
     }
@@ -234,22 +238,24 @@ public abstract class Logger extends CronjobTask implements ILogger,Cloneable, S
      */
     void writeRecord(HashMap<String,Object> record) {
         if (record == null) return;
-        String recordPath = getRecordPath(record);
-        Path path = Paths.get(recordPath);
         try {
-            if (!Files.exists(path.getParent())) Files.createDirectories(path.getParent());
-            String json = getJson(record);
-            BufferedWriter recordFile = Files.newBufferedWriter(path);
-            recordFile.write(json);
-            recordFile.flush();
-            recordFile.close();
-            writeLastRecord();
-        } catch (IOException e) {
+            getDataWriter().write(record);
+            checkpoint();
+        } catch (Exception e) {
             e.printStackTrace();
             syslog.logException(e,this,"writeRecord");
         }
     }
 
+    /**
+     * Returns data writer, which writes records to destination folder
+     * @return Data writer instance
+     */
+    IDataWriter getDataWriter() {
+        if (dataWriter == null) dataWriter = DataWriter.create(null,getDestinationPath(),syslog);
+        return dataWriter;
+    }
+
     /**
      * Method used to return Path to file, to which provided record will be written
      * @param record: Record to write
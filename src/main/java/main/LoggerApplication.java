@@ -1,6 +1,7 @@
 package main;
 
 import config.ConfigManager;
+import db.adapters.ConnectionPool;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -81,9 +82,18 @@ public class LoggerApplication {
         setupOutputs();
         LoggerService.getInstance().start();
         WebService.getInstance().start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop,"shutdown"));
         System.out.println("Application started ...");
     }
 
+    /**
+     * Method stops all services and closes connections to databases. Called when application exits
+     */
+    public void stop() {
+        LoggerService.getInstance().stop();
+        ConnectionPool.closeAll();
+    }
+
     private void setupOutputs() {
         Path errorLogPath = Paths.get(this.getLogPath()+"/main/error.log");
         Path outputLogPath = Paths.get(this.getLogPath()+"/main/output.log");
@@ -1,6 +1,6 @@
 package main;
 
-import aggregators.SimpleFileDataAggregator;
+import aggregators.DataAggregator;
 import archivers.DataArchiver;
 import archivers.ZipArchiveExtractor;
 import cleaners.DataCleaner;
@@ -33,6 +33,8 @@ public class LoggerService {
     private boolean started = false;
     /// Array of started service cronjobs indexed by names
     private HashMap<String,Cronjob> cronjobs = new HashMap<>();
+    /// Timers, which run cronjobs
+    private ArrayList<Timer> timers = new ArrayList<>();
     /// Link to configuration manager, which provides configuration objects for cronjobs
     private ConfigManager configManager = ConfigManager.getInstance();
 
@@ -55,6 +57,24 @@ public class LoggerService {
         this.started = true;
     }
 
+    /**
+     * Method used to stop service. Cancels all cronjobs, waits until running tasks finish and releases
+     * resources of tasks
+     */
+    public synchronized void stop() {
+        if (!started) return;
+        timers.forEach(Timer::cancel);
+        timers.clear();
+        cronjobs.values().forEach(cronjob -> {
+            ICronjobTask task = cronjob.getTask();
+            synchronized (cronjob) {
+                task.close();
+            }
+        });
+        cronjobs.clear();
+        this.started = false;
+    }
+
     /**
      * Method used to setup cronjobs for all configured modules in collection of specified type
      * @param collectionType Type of module (loggers,aggregators, persisters etc.)
@@ -67,7 +87,9 @@ public class LoggerService {
             if (cronjob == null) return;
             ICronjobTask task = cronjob.getTask();
             cronjobs.put(task.getCollectionType()+"_"+task.getName(),cronjob);
-            (new Timer()).scheduleAtFixedRate(cronjob,0, cronjob.getPollPeriod()*1000);
+            Timer timer = new Timer();
+            timers.add(timer);
+            timer.scheduleAtFixedRate(cronjob,0, cronjob.getPollPeriod()*1000);
         });
     }
 
@@ -96,7 +118,7 @@ public class LoggerService {
             case "loggers":
                 return Logger.create(objectConfig);
             case "aggregators":
-                return new SimpleFileDataAggregator(objectConfig);
+                return DataAggregator.create(objectConfig);
             case "persisters":
                 return new FileDatabasePersister(objectConfig);
             case "archivers":
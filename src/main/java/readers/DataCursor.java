@@ -0,0 +1,133 @@
+package readers;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cursor used to iterate records of data folder inside specified date range, ordered by timestamp.
+ * Cursor reads records lazily, by batches of limited size, so memory usage does not depend on size of range.
+ */
+public class DataCursor implements Iterator<HashMap<String,Object>>, AutoCloseable {
+
+    // Default number of records, which cursor reads ahead
+    public static final int DEFAULT_READ_AHEAD = 100;
+
+    // Data reader, which cursor uses to read records
+    private DataReader reader;
+    // Timestamp, from which next batch of records will be read
+    private Long position;
+    // End timestamp of date range
+    private Long endDate;
+    // Maximum number of records, which cursor reads ahead
+    private int readAhead;
+    // Records, which already read but not returned yet
+    private ArrayDeque<HashMap<String,Object>> buffer = new ArrayDeque<>();
+    // Determines if cursor reached end of date range or was closed
+    private boolean finished = false;
+    // Timestamps of records of date range, listed when cursor opened (null if cursor asks reader for each batch)
+    private NavigableSet<Long> timestamps;
+
+    /**
+     * Class constructor
+     * @param reader Data reader, which cursor uses to read records
+     * @param startDate Start timestamp of date range
+     * @param endDate End timestamp of date range
+     * @param readAhead Maximum number of records, which cursor reads ahead
+     */
+    DataCursor(DataReader reader, Long startDate, Long endDate, int readAhead) {
+        this.reader = reader;
+        this.position = startDate;
+        this.endDate = endDate;
+        this.readAhead = readAhead > 0 ? readAhead : DEFAULT_READ_AHEAD;
+    }
+
+    /**
+     * Class constructor
+     * @param reader Data reader, which cursor uses to read records
+     * @param startDate Start timestamp of date range
+     * @param endDate End timestamp of date range
+     * @param readAhead Maximum number of records, which cursor reads ahead
+     * @param timestamps Timestamps of records of date range, from which cursor takes batches
+     */
+    DataCursor(DataReader reader, Long startDate, Long endDate, int readAhead, NavigableSet<Long> timestamps) {
+        this(reader,startDate,endDate,readAhead);
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Method reads next batch of records to buffer
+     */
+    private void readBatch() {
+        while (buffer.isEmpty() && !finished) {
+            List<Long> batch = position > endDate ? new ArrayList<>() : getTimestamps();
+            if (batch.isEmpty()) {
+                finished = true;
+                return;
+            }
+            position = batch.get(batch.size()-1)+1;
+            buffer.addAll(reader.readRecords(batch).values());
+        }
+    }
+
+    /**
+     * Returns timestamps of next batch of records, starting from current position
+     * @return Ordered list of timestamps
+     */
+    private List<Long> getTimestamps() {
+        if (timestamps == null) return reader.getTimestamps(position,endDate,readAhead);
+        List<Long> result = new ArrayList<>();
+        for (Long timestamp: timestamps.subSet(position,true,endDate,true)) {
+            if (result.size() >= readAhead) break;
+            result.add(timestamp);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if cursor has more records
+     * @return True if there are more records or false otherwise
+     */
+    @Override
+    public boolean hasNext() {
+        readBatch();
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * Returns next record of cursor
+     * @return Record as HashMap<String,Object>
+     */
+    @Override
+    public HashMap<String,Object> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return buffer.poll();
+    }
+
+    /**
+     * Returns next record of cursor without moving cursor to next record
+     * @return Record as HashMap<String,Object> or null if there are no more records
+     */
+    public HashMap<String,Object> peek() {
+        return hasNext() ? buffer.peek() : null;
+    }
+
+    /**
+     * Returns remaining records of cursor as ordered sequential stream
+     * @return Stream of records
+     */
+    public Stream<HashMap<String,Object>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL),false).onClose(this::close);
+    }
+
+    /**
+     * Method closes cursor and releases buffered records
+     */
+    @Override
+    public void close() {
+        finished = true;
+        buffer.clear();
+        timestamps = null;
+    }
+}
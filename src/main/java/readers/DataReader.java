@@ -0,0 +1,374 @@
+package readers;
+
+import com.google.gson.Gson;
+import main.ISyslog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Base class for data readers. Implements queries by date range over ordered list of records of data folder.
+ * Concrete readers provide this list and read single records, depending on storage format of data folder.
+ */
+public abstract class DataReader implements IDataReader {
+
+    // Shared readers of data folders, indexed by canonical paths of folders
+    private static final HashMap<String,DataReader> readers = new HashMap<>();
+    // JSON parser of records. Gson instances are thread-safe, so one instance used by all readers
+    private static final Gson gson = new Gson();
+
+    // Path of root directory
+    protected String filePath;
+    // Instance of internal error logger used to log exceptions and other issues to file
+    protected ISyslog syslog;
+    // Key of this reader in registry of shared readers (null if reader is not shared)
+    private String registryKey;
+    // Number of consumers, which use this shared reader
+    private int references = 0;
+
+    /**
+     * Class constructor
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     */
+    DataReader(String filePath, ISyslog syslog) {
+        this.filePath = filePath;
+        this.syslog = syslog;
+    }
+
+    /**
+     * Factory method, which returns data reader for specified data folder, depending on storage format of this folder
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     * @return Data reader instance
+     */
+    public static IDataReader create(String filePath, ISyslog syslog) {
+        if (DataSegment.isSegmentFolder(filePath)) return new SegmentDataReader(filePath,syslog);
+        return new FileDataReader(filePath,syslog);
+    }
+
+    /**
+     * Factory method, which returns data reader for specified data folder, configured by provided configuration
+     * of consumer of this folder (aggregator or persister)
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     * @param config Configuration object of consumer
+     * @return Data reader instance
+     */
+    public static IDataReader create(String filePath, ISyslog syslog, HashMap<String,Object> config) {
+        if (config == null || DataSegment.isSegmentFolder(filePath)) return create(filePath,syslog);
+        boolean watchMode = Boolean.parseBoolean(config.getOrDefault("watchSourceFolder",false).toString());
+        long rescanInterval = Double.valueOf(config.getOrDefault("rescanInterval",3600).toString()).longValue();
+        FileDataReader reader = new FileDataReader(filePath,syslog,watchMode,rescanInterval);
+        reader.setPartitionScan(Boolean.parseBoolean(config.getOrDefault("partitionScan",false).toString()));
+        reader.setVerifyInterval(Double.valueOf(config.getOrDefault("indexVerifyInterval",0).toString()).longValue());
+        if (config.containsKey("recordCacheSize") || config.containsKey("recordCacheMemory"))
+            reader.setRecordCache(new RecordCache(
+                    Double.valueOf(config.getOrDefault("recordCacheSize",10000).toString()).intValue(),
+                    Double.valueOf(config.getOrDefault("recordCacheMemory",32*1024*1024).toString()).longValue()));
+        return reader;
+    }
+
+    /**
+     * Returns shared reader of specified data folder. All consumers of the same folder get the same reader
+     * instance, so folder is indexed and records are read only once. Reader is created using configuration of
+     * first consumer. Each consumer must call "close" when it does not need reader anymore; reader is released
+     * when last consumer closes it
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     * @param config Configuration object of consumer
+     * @return Shared data reader instance
+     */
+    public static IDataReader get(String filePath, ISyslog syslog, HashMap<String,Object> config) {
+        String key = getCanonicalPath(filePath);
+        synchronized (readers) {
+            DataReader reader = readers.get(key);
+            if (reader == null) {
+                reader = (DataReader)create(filePath,syslog,config);
+                reader.registryKey = key;
+                readers.put(key,reader);
+            }
+            reader.references++;
+            return reader;
+        }
+    }
+
+    /**
+     * Method returns canonical path of data folder, which used as a key in registry of shared readers
+     * @param filePath Path to data folder
+     * @return Canonical path
+     */
+    private static String getCanonicalPath(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        try {
+            if (Files.exists(path)) path = path.toRealPath();
+        } catch (IOException e) {}
+        return path.toString();
+    }
+
+    /**
+     * Returns locations of all records of data folder, ordered by timestamp
+     * @param refreshCache Should this method reread list of records from filesystem or just return cached one
+     * @return HashMap of record locations, ordered by timestamp
+     */
+    abstract NavigableMap<Long,?> getEntries(boolean refreshCache);
+
+    /**
+     * Method used to read record with specified timestamp
+     * @param timestamp Timestamp of record
+     * @return record as HashMap<String,Object> or null in case of errors
+     */
+    abstract HashMap<String,Object> readRecord(Long timestamp);
+
+    /**
+     * Returns locations of records inside specified date range, ordered by timestamp
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @return HashMap of record locations, ordered by timestamp
+     */
+    NavigableMap<Long,?> getEntries(Long startDate, Long endDate) {
+        NavigableMap<Long,?> result = new TreeMap<>();
+        if (startDate>endDate) return result;
+        FileDataReader.DataRange range = getRangeBounds(startDate,endDate);
+        if (range.startDate == 0 || range.endDate == 0) return result;
+        try {
+            result = getEntries(false).subMap(range.startDate, true, range.endDate, true);
+        } catch (Exception e) {};
+        return result;
+    }
+
+    /**
+     * Method returns closest date range of data, based on provided date range
+     * @param startDate Timestamp of start
+     * @param endDate Timestamp of end
+     * @return Calculated date range
+     */
+    FileDataReader.DataRange getRangeBounds(Long startDate,Long endDate)  {
+        return new FileDataReader.DataRange(getStartRangeBound(startDate),getEndRangeBound(endDate));
+    }
+
+    /**
+     * Method finds timestamp of record, which is closest to specified date (same date or later)
+     * @param value Input timestamp
+     * @return Closest timestamp of data (can be the same timestamp or later closest one)
+     */
+    private Long getStartRangeBound(Long value) {
+        return getRangeBound(value,true);
+    }
+
+    /**
+     * Method finds timestamp of record, which is closest to specified date (same date or earlier)
+     * @param value Input timestamp
+     * @return Closest timestamp of data (can be the same timestamp or earlier closest one)
+     */
+    private Long getEndRangeBound(Long value) {
+        return getRangeBound(value,false);
+    }
+
+    /**
+     * Base method which returns timestamp of record which is closest to provided one
+     * @param value Input timestamp
+     * @param findHigher : Direction: if true, than will return later closest timestamp, otherwise earlier closest timestamp
+     * @return Closest timestamp of data based on provided options
+     */
+    private Long getRangeBound(Long value, boolean findHigher) {
+        NavigableMap<Long,?> source = getEntries(false);
+        if (source.size()==0) return 0L;
+        if (source.containsKey(value)) return value;
+        Long result = findHigher ? value < source.firstKey() ? source.firstKey() : value : value > source.lastKey() ? source.lastKey() : value ;
+        Long closeKey = findHigher ? source.higherKey(value) : source.lowerKey(value);
+        if (closeKey != null) result = closeKey;
+        return result;
+    }
+
+    /**
+     * Returns Time range of data. Includes first date and last date
+     * @return Range object with timestamp of first record and timestamp of last record
+     */
+    @Override
+    public FileDataReader.DataRange getRange() {
+        NavigableMap<Long,?> source = getEntries(false);
+        if (source.size()==0) return new FileDataReader.DataRange();
+        return new FileDataReader.DataRange(source.firstKey(),source.lastKey());
+    }
+
+    /**
+     * Returns timestamps of all records inside specified date range, using index of data folder
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param refreshCache Should index be refreshed before query
+     * @return Ordered set of timestamps
+     */
+    @Override
+    public NavigableSet<Long> getTimestamps(Long startDate, Long endDate, boolean refreshCache) {
+        if (startDate > endDate) return new TreeSet<>();
+        return new TreeSet<>(getEntries(refreshCache).navigableKeySet().subSet(startDate,true,endDate,true));
+    }
+
+    /**
+     * Returns timestamp of last record inside specified date range, using index of data folder
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param refreshCache Should index be refreshed before query
+     * @return Timestamp or null if range does not have records
+     */
+    @Override
+    public Long getLastTimestamp(Long startDate, Long endDate, boolean refreshCache) {
+        Long result = getEntries(refreshCache).floorKey(endDate);
+        return result != null && result >= startDate ? result : null;
+    }
+
+    /**
+     * Returns statistical information about data: Date range and number of records
+     * @return DataStats object with start timestamp, end timestamp and number of records
+     */
+    @Override
+    public FileDataReader.DataStats getDataStats(boolean refreshCache) {
+        return getDataStats(0L,0L,refreshCache);
+    }
+
+    /**
+     * Returns statistical information about data inside requested date range, it includes timestamp of first
+     * record, timestamp of last record and number of records in this period.
+     * @param startDate Start date
+     * @param endDate End date
+     * @return DataStats object with start timestamp, end timestamp and number of records
+     */
+    @Override
+    public FileDataReader.DataStats getDataStats(Long startDate, Long endDate, boolean refreshCache) {
+        if (refreshCache) getEntries(refreshCache);
+        FileDataReader.DataRange range = getRangeBounds(startDate,endDate);
+        return new FileDataReader.DataStats(range,getEntries(startDate,endDate).size());
+    }
+
+    /**
+     * Method read data from all files and returns it as a HashMap, ordered by timestamp
+     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     */
+    @Override
+    public NavigableMap<Long,HashMap<String,Object>> getData(boolean refreshCache) {
+        FileDataReader.DataRange range = getRange();
+        return getData(range.startDate,range.endDate,refreshCache);
+    }
+
+    /**
+     * Method read data from files inside specified date range and returns it as a HashMap, ordered by timestamp
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     */
+    @Override
+    public NavigableMap<Long,HashMap<String,Object>> getData(Long startDate, Long endDate, boolean refreshCache) {
+        FileDataReader.DataStats stats = getDataStats(startDate,endDate,refreshCache);
+        if (stats.count==0) return new TreeMap<>();
+        return readRecords(getEntries(startDate,endDate).keySet());
+    }
+
+    /**
+     * Method used to read records with specified timestamps
+     * @param timestamps Timestamps of records
+     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     */
+    NavigableMap<Long,HashMap<String,Object>> readRecords(Collection<Long> timestamps) {
+        NavigableMap<Long,HashMap<String,Object>> result = new TreeMap<>();
+        timestamps.parallelStream().forEach( key -> {
+            HashMap<String,Object> record = readRecord(key);
+            if (record == null) return;
+            Long timestamp = new Long(record.get("timestamp").toString());
+            synchronized (result) {
+                result.put(timestamp, record);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns cursor, which reads records inside specified date range lazily, ordered by timestamp
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param refreshCache Should list of records be refreshed before query
+     * @return Cursor of records
+     */
+    @Override
+    public DataCursor getCursor(Long startDate, Long endDate, boolean refreshCache) {
+        if (refreshCache) getEntries(true);
+        return new DataCursor(this,startDate,endDate,DataCursor.DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * Returns limited number of timestamps of records inside specified date range
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param limit Maximum number of timestamps to return
+     * @return Ordered list of timestamps
+     */
+    synchronized List<Long> getTimestamps(Long startDate, Long endDate, int limit) {
+        List<Long> result = new ArrayList<>();
+        if (startDate > endDate) return result;
+        for (Long timestamp: getEntries(false).navigableKeySet().subSet(startDate,true,endDate,true)) {
+            if (result.size() >= limit) break;
+            result.add(timestamp);
+        }
+        return result;
+    }
+
+    /**
+     * Method read data from files inside specified date range and returns it as a HashMap, ordered by timestamp
+     * @param startDate Start timestamp
+     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     */
+    public NavigableMap<Long,HashMap<String,Object>> getData(Long startDate,boolean refreshCache) {
+        return getData(startDate,Instant.now().getEpochSecond(),refreshCache);
+    }
+
+    /**
+     * Method checks if file was modified after specified time
+     * @param path Path to file
+     * @param modifiedSince Time in milliseconds
+     * @return True if file was modified after this time or false otherwise or if file does not exist
+     */
+    static boolean isModifiedSince(Path path, long modifiedSince) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() > modifiedSince;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method called by consumer, when it does not need reader anymore. Shared reader released only when
+     * all its consumers closed it
+     */
+    @Override
+    public void close() {
+        synchronized (readers) {
+            if (registryKey != null) {
+                if (--references > 0) return;
+                readers.remove(registryKey);
+                registryKey = null;
+            }
+        }
+        release();
+    }
+
+    /**
+     * Method releases resources of reader
+     */
+    void release() {}
+
+    /**
+     * Method used to convert JSON string of record to HashMap
+     * @param content JSON string
+     * @return record as HashMap<String,Object> or null if string is not a valid record
+     */
+    HashMap<String,Object> parseRecord(String content) {
+        if (content == null || content.isEmpty()) return null;
+        HashMap<String,Object> record = gson.fromJson(content,HashMap.class);
+        if (record == null || record.size()==0 || !record.containsKey("timestamp")) return null;
+        return record;
+    }
+}
@@ -0,0 +1,348 @@
+package readers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Class represents single segment file of data folder in "segments" storage format. Segment is an append-only
+ * file with length-prefixed records. Each record is [int length][long timestamp][JSON bytes]. When segment
+ * is sealed, writer appends footer with index of all records: [int count][count x (long timestamp, long offset)]
+ * [long footer offset][int magic], so readers can load sealed segments without scanning them.
+ */
+public class DataSegment {
+
+    // Extension of segment files
+    public static final String EXTENSION = ".seg";
+    // Name of file in root of data folder, which marks folder as a folder in "segments" storage format
+    public static final String FORMAT_FILE_NAME = "format";
+    // Content of format file
+    public static final String FORMAT_NAME = "segments";
+    // Magic number in the end of footer of sealed segment
+    private static final int MAGIC = 0x5345474D;
+    // Size of header of each record: length and timestamp
+    private static final int RECORD_HEADER_SIZE = 12;
+    // Size of trailer of footer: footer offset and magic number
+    private static final int FOOTER_TRAILER_SIZE = 12;
+
+    // Path to segment file
+    private Path path;
+    // Offsets of records inside segment file, indexed by timestamps
+    private NavigableMap<Long,Long> offsets = new TreeMap<>();
+    // Size of area of valid records in bytes
+    private long size = 0L;
+    // Determines if segment already sealed by footer
+    private boolean sealed = false;
+    // Channel, which writer uses to append records
+    private FileChannel channel;
+
+    /**
+     * Class constructor
+     * @param path Path to segment file
+     */
+    public DataSegment(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Method returns path of segment file, which starts from record with specified timestamp
+     * @param rootPath Root path of data folder
+     * @param timestamp Timestamp of first record of segment
+     * @return Full path to segment file
+     */
+    public static Path getSegmentPath(String rootPath, Long timestamp) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(timestamp,0,ZoneOffset.UTC);
+        return Paths.get(rootPath + "/" + date.getYear() + "/" + date.getMonthValue() + "/" +
+                date.getDayOfMonth() + "/" + date.getHour() + "/" + date.getMinute() + "/" + date.getSecond() + EXTENSION);
+    }
+
+    /**
+     * Method returns path of new segment file for record with specified timestamp. If hour of timestamp already
+     * has segments (for example, when records of this hour are written again), file name gets sequence number,
+     * which is greater than sequence numbers of all segments of this hour: "<second>.<sequence>.seg"
+     * @param rootPath Root path of data folder
+     * @param timestamp Timestamp of first record of segment
+     * @return Full path to segment file, which does not exist yet
+     * @throws IOException If could not read folder of hour
+     */
+    public static Path getNewSegmentPath(String rootPath, Long timestamp) throws IOException {
+        Path path = getSegmentPath(rootPath,timestamp);
+        Path hourPath = path.getParent().getParent();
+        if (!Files.exists(hourPath)) return path;
+        int sequence = -1;
+        try (Stream<Path> stream = Files.walk(hourPath,2)) {
+            for (Path file: (Iterable<Path>)stream::iterator)
+                if (file.toString().endsWith(EXTENSION)) sequence = Math.max(sequence,getSequence(file));
+        }
+        if (sequence < 0) return path;
+        String second = path.getFileName().toString().replace(EXTENSION,"");
+        return path.resolveSibling(second+"."+(sequence+1)+EXTENSION);
+    }
+
+    /**
+     * Returns sequence number of segment file in its hour. Segments with greater numbers written later
+     * @param path Path to segment file
+     * @return Sequence number (0 for first segment of hour)
+     */
+    public static int getSequence(Path path) {
+        String name = path.getFileName().toString();
+        String[] parts = name.substring(0,name.length()-EXTENSION.length()).split("\\.");
+        try {
+            return parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Determines if specified data folder uses "segments" storage format
+     * @param rootPath Root path of data folder
+     * @return True if folder marked as segments folder or false otherwise
+     */
+    public static boolean isSegmentFolder(String rootPath) {
+        Path formatPath = Paths.get(rootPath,FORMAT_FILE_NAME);
+        if (!Files.exists(formatPath)) return false;
+        try {
+            return new String(Files.readAllBytes(formatPath),StandardCharsets.UTF_8).trim().equals(FORMAT_NAME);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method marks specified data folder as a folder in "segments" storage format
+     * @param rootPath Root path of data folder
+     * @throws IOException If could not write format file
+     */
+    public static void markSegmentFolder(String rootPath) throws IOException {
+        Path formatPath = Paths.get(rootPath,FORMAT_FILE_NAME);
+        if (isSegmentFolder(rootPath)) return;
+        Files.createDirectories(formatPath.getParent());
+        Files.write(formatPath,FORMAT_NAME.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Determines if specified segment file is sealed, so it will not be changed anymore
+     * @param path Path to segment file
+     * @return True if segment is sealed or false otherwise
+     */
+    public static boolean isSealed(Path path) {
+        try (FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)) {
+            return readFooter(channel,channel.size()) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method loads index of records of segment. For sealed segment it reads footer, for active segment
+     * it scans all records
+     * @throws IOException If could not read segment file
+     */
+    public synchronized void load() throws IOException {
+        offsets.clear();
+        size = 0L;
+        sealed = false;
+        refresh();
+    }
+
+    /**
+     * Method loads records, which were appended to active segment after previous load
+     * @return True if new records were loaded or false otherwise
+     * @throws IOException If could not read segment file
+     */
+    public synchronized boolean refresh() throws IOException {
+        if (sealed) return false;
+        int count = offsets.size();
+        try (FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            NavigableMap<Long,Long> footer = readFooter(channel,fileSize);
+            if (footer != null) {
+                offsets = footer;
+                sealed = true;
+                size = fileSize;
+                return true;
+            }
+            size = scanRecords(channel,size,fileSize);
+        }
+        return offsets.size() != count;
+    }
+
+    /**
+     * Method reads footer of segment
+     * @param channel Opened segment file
+     * @param fileSize Size of segment file
+     * @return Offsets of records, indexed by timestamps or null if segment does not have valid footer
+     * @throws IOException If could not read segment file
+     */
+    private static NavigableMap<Long,Long> readFooter(FileChannel channel, long fileSize) throws IOException {
+        if (fileSize < FOOTER_TRAILER_SIZE + 4) return null;
+        ByteBuffer trailer = readBuffer(channel,fileSize-FOOTER_TRAILER_SIZE,FOOTER_TRAILER_SIZE);
+        long footerOffset = trailer.getLong();
+        if (trailer.getInt() != MAGIC || footerOffset < 0 || footerOffset > fileSize - FOOTER_TRAILER_SIZE - 4) return null;
+        int count = readBuffer(channel,footerOffset,4).getInt();
+        if (count < 0 || footerOffset + 4 + count * 16L + FOOTER_TRAILER_SIZE != fileSize) return null;
+        ByteBuffer entries = readBuffer(channel,footerOffset+4,count*16);
+        NavigableMap<Long,Long> result = new TreeMap<>();
+        for (int i=0;i<count;i++) result.put(entries.getLong(),entries.getLong());
+        return result;
+    }
+
+    /**
+     * Method scans records of active segment and adds them to index
+     * @param channel Opened segment file
+     * @param position Offset from which to start scan
+     * @param fileSize Size of segment file
+     * @return Offset of the end of last complete record
+     * @throws IOException If could not read segment file
+     */
+    private long scanRecords(FileChannel channel, long position, long fileSize) throws IOException {
+        while (position + RECORD_HEADER_SIZE < fileSize) {
+            ByteBuffer header = readBuffer(channel,position,RECORD_HEADER_SIZE);
+            int length = header.getInt();
+            long timestamp = header.getLong();
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > fileSize) break;
+            if (!isValidRecord(channel,position+RECORD_HEADER_SIZE,length)) break;
+            offsets.put(timestamp,position);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Method checks that record body is a complete JSON object, to not treat partially written record or footer
+     * as a record
+     * @param channel Opened segment file
+     * @param position Offset of record body
+     * @param length Length of record body
+     * @return True if record body looks valid or false otherwise
+     * @throws IOException If could not read segment file
+     */
+    private boolean isValidRecord(FileChannel channel, long position, int length) throws IOException {
+        return readBuffer(channel,position,1).get() == '{' && readBuffer(channel,position+length-1,1).get() == '}';
+    }
+
+    /**
+     * Utility method which reads specified number of bytes from specified position of file
+     * @param channel Opened file
+     * @param position Offset in file
+     * @param length Number of bytes to read
+     * @return Buffer with data, ready to read
+     * @throws IOException If could not read file
+     */
+    private static ByteBuffer readBuffer(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer,position+buffer.position()) < 0) throw new IOException("Unexpected end of segment");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Method reads body of record with specified timestamp
+     * @param timestamp Timestamp of record
+     * @return JSON string of record or null if record not found
+     * @throws IOException If could not read segment file
+     */
+    public String readRecord(Long timestamp) throws IOException {
+        return readRecords(Collections.singleton(timestamp)).get(timestamp);
+    }
+
+    /**
+     * Method reads bodies of records with specified timestamps, using single opened file
+     * @param timestamps Timestamps of records
+     * @return JSON strings of records, indexed by timestamps
+     * @throws IOException If could not read segment file
+     */
+    public Map<Long,String> readRecords(Collection<Long> timestamps) throws IOException {
+        Map<Long,String> result = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)) {
+            for (Long timestamp: timestamps) {
+                Long offset;
+                synchronized (this) { offset = offsets.get(timestamp); }
+                if (offset == null) continue;
+                int length = readBuffer(channel,offset,4).getInt();
+                ByteBuffer body = readBuffer(channel,offset+RECORD_HEADER_SIZE,length);
+                result.put(timestamp,new String(body.array(),StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Method opens segment for appending records. If segment file exists, method loads it and removes
+     * partially written record from the end of it
+     * @throws IOException If could not open segment file
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(path.getParent());
+        if (Files.exists(path)) load();
+        if (sealed) throw new IOException("Segment '"+path.toString()+"' is sealed");
+        channel = FileChannel.open(path,StandardOpenOption.CREATE,StandardOpenOption.WRITE);
+        channel.truncate(size);
+        channel.position(size);
+    }
+
+    /**
+     * Method appends record to the end of opened segment
+     * @param timestamp Timestamp of record
+     * @param json Record as JSON string
+     * @throws IOException If could not write record
+     */
+    public synchronized void append(Long timestamp, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE+body.length);
+        buffer.putInt(body.length).putLong(timestamp).put(body);
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        offsets.put(timestamp,size);
+        size += RECORD_HEADER_SIZE + body.length;
+    }
+
+    /**
+     * Method writes footer with index of records to the end of segment and closes it
+     * @throws IOException If could not write footer
+     */
+    public synchronized void seal() throws IOException {
+        if (channel == null) return;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + offsets.size() * 16 + FOOTER_TRAILER_SIZE);
+        buffer.putInt(offsets.size());
+        for (Map.Entry<Long,Long> entry: offsets.entrySet()) buffer.putLong(entry.getKey()).putLong(entry.getValue());
+        buffer.putLong(size).putInt(MAGIC);
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        close();
+        sealed = true;
+    }
+
+    /**
+     * Method closes segment, opened for appending, without sealing it
+     * @throws IOException If could not close file
+     */
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        channel.force(false);
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Getters for properties
+     */
+    public Path getPath() { return path; }
+    public int getSequence() { return getSequence(path); }
+    public synchronized NavigableMap<Long,Long> getOffsets() { return new TreeMap<>(offsets); }
+    public synchronized long getSize() { return size; }
+    public synchronized boolean isSealed() { return sealed; }
+    public synchronized Long getFirstTimestamp() { return offsets.isEmpty() ? null : offsets.firstKey(); }
+}
@@ -0,0 +1,165 @@
+package readers;
+
+import main.ISyslog;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class implements persistent index of data files inside data folder. Index is an append-only file in the root
+ * of data folder, which contains timestamps of data files as a sequence of 8-byte numbers. Writers append
+ * timestamp of each new file to it, readers load it once and then read only entries, appended after previous read.
+ */
+public class FileDataIndex {
+
+    // Name of index file inside root of data folder
+    public static final String INDEX_FILE_NAME = "index.dat";
+    // Size of single index entry in bytes
+    private static final int ENTRY_SIZE = 8;
+    // Maximum number of bytes, which read from index file at once
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Root path of data folder
+    private String rootPath;
+    // Path to index file
+    private Path indexPath;
+    // Number of bytes of index file, which already read by this object
+    private long position = 0L;
+    // Instance of internal error logger used to log exceptions and other issues to file
+    private ISyslog syslog;
+
+    /**
+     * Class constructor
+     * @param rootPath Full path to root folder of data
+     * @param syslog Link to system logger
+     */
+    public FileDataIndex(String rootPath, ISyslog syslog) {
+        this.rootPath = rootPath;
+        this.indexPath = Paths.get(rootPath,INDEX_FILE_NAME);
+        this.syslog = syslog;
+    }
+
+    /**
+     * Method used by data writers to register new data file in index
+     * @param timestamp Timestamp of written data file
+     */
+    public synchronized void append(Long timestamp) {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE).putLong(timestamp);
+        buffer.flip();
+        try {
+            if (!Files.exists(indexPath.getParent())) Files.createDirectories(indexPath.getParent());
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+        } catch (IOException e) {
+            if (syslog != null) syslog.logException(e,this,"append");
+        }
+    }
+
+    /**
+     * Method reads all entries, which were appended to index after previous call
+     * @return List of timestamps of new data files
+     */
+    public synchronized List<Long> read() {
+        List<Long> result = new ArrayList<>();
+        if (!Files.exists(indexPath)) return result;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long length = (channel.size() - position) / ENTRY_SIZE * ENTRY_SIZE;
+            if (length <= 0) return result;
+            ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(length,READ_BUFFER_SIZE));
+            channel.position(position);
+            while (length > 0) {
+                buffer.clear();
+                buffer.limit((int)Math.min(length,buffer.capacity()));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+                buffer.flip();
+                while (buffer.remaining() >= ENTRY_SIZE) result.add(buffer.getLong());
+                length -= buffer.limit();
+                position += buffer.limit();
+            }
+        } catch (IOException e) {
+            if (syslog != null) syslog.logException(e,this,"read");
+        }
+        return result;
+    }
+
+    /**
+     * Method replaces content of index with provided list of timestamps. Index written to temporary file first
+     * and then moved to destination to not leave partially written index in case of errors
+     * @param timestamps Timestamps of all data files in folder
+     */
+    public synchronized void write(Collection<Long> timestamps) {
+        Path tmpPath = Paths.get(indexPath.toString()+".tmp");
+        try {
+            if (!Files.exists(indexPath.getParent())) Files.createDirectories(indexPath.getParent());
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+                for (Long timestamp: timestamps) stream.writeLong(timestamp);
+            }
+            Files.move(tmpPath,indexPath,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+            position = Files.size(indexPath);
+        } catch (IOException e) {
+            if (syslog != null) syslog.logException(e,this,"write");
+        }
+    }
+
+    /**
+     * Method determines if index file was replaced by another reader after previous read, so all
+     * entries should be loaded again from the beginning
+     * @return True if index was rewritten or false otherwise
+     */
+    public synchronized boolean isRewritten() {
+        try {
+            return Files.exists(indexPath) && Files.size(indexPath) < position;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method resets read position, so next call to "read" will return all entries of index
+     */
+    public synchronized void reset() {
+        position = 0L;
+    }
+
+    /**
+     * Returns number of entries of index file, which already read by this object
+     * @return Number of entries
+     */
+    public synchronized long getEntriesCount() {
+        return position / ENTRY_SIZE;
+    }
+
+    /**
+     * Determines if index file exists in data folder
+     * @return True if index exists or false otherwise
+     */
+    public boolean exists() {
+        return Files.exists(indexPath);
+    }
+
+    /**
+     * Method returns path of data file, which contains record with specified timestamp
+     * @param timestamp Timestamp of record
+     * @return Full path to data file
+     */
+    public Path getFilePath(Long timestamp) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(timestamp,0,ZoneOffset.UTC);
+        return Paths.get(rootPath + "/" + date.getYear() + "/" + date.getMonthValue() + "/" +
+                date.getDayOfMonth() + "/" + date.getHour() + "/" + date.getMinute() + "/" + date.getSecond() + ".json");
+    }
+}
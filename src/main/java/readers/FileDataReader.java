@@ -1,38 +1,78 @@
 package readers;
 
-import com.google.gson.Gson;
 import main.ISyslog;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Class provide functions to get information from downloaded data folder.
  */
-public class FileDataReader implements IDataReader {
+public class FileDataReader extends DataReader {
 
-    // Path of root directory
-    private String filePath;
-    // Cached list of file paths. Key of map is 'timestamp', value is full file path
-    private NavigableMap<Long,Path> filesList = new TreeMap<>();
-    // Instance of internal error logger used to log exceptions and other issues to file
-    private ISyslog syslog;
+    // Minimum number of entries in index file, after which index compacted, if most of them are stale
+    private static final int COMPACT_MIN_ENTRIES = 1000;
+
+    // Cached list of file paths. Key of map is 'timestamp', value is full file path. Map is concurrent, because
+    // reader can be shared by consumers, which run in different threads
+    private NavigableMap<Long,Path> filesList = new ConcurrentSkipListMap<>();
+    // Persistent index of data files, used to not walk whole folder tree on every refresh
+    private FileDataIndex index;
+    // Determines if content of index already loaded to "filesList"
+    private boolean indexLoaded = false;
+    // Watcher of data folder, used to discover new files in "watch" mode (null if mode is disabled)
+    private FileDataWatcher watcher;
+    // Interval in seconds between full reconciliations of "filesList" with data folder in "watch" mode
+    private long rescanInterval = 3600L;
+    // Timestamp of last full reconciliation of "filesList" with data folder
+    private long lastRescanTime = 0L;
+    // Interval in seconds between checks, that all files of index still exist (0 - only files in the beginning
+    // of data checked, which is where cleaner removes files)
+    private long verifyInterval = 0L;
+    // Timestamp of last check of all files of index
+    private long lastVerifyTime = 0L;
+    // Determines if range queries should walk only subfolders, which overlap requested date range, instead of
+    // using list of all files of data folder
+    private boolean partitionScan = false;
+    // Files of date range, which was walked last in "partitionScan" mode. Reused by cursors inside this range, so
+    // they do not walk subfolders again for each batch. Map is replaced on each walk and never modified
+    private NavigableMap<Long,Path> rangeFiles = new TreeMap<>();
+    // Date range of "rangeFiles" (null if no range walked yet)
+    private DataRange filesRange;
+    // Cache of decoded records of data files
+    private RecordCache recordCache = new RecordCache(10000,32*1024*1024);
 
     /**
      * Class constructor
      * @param filePath Full path to root folder
      */
     public FileDataReader(String filePath, ISyslog syslog) {
-        this.filePath = filePath;
-        this.syslog = syslog;
+        super(filePath,syslog);
+        this.index = new FileDataIndex(filePath,syslog);
+    }
+
+    /**
+     * Class constructor
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     * @param watchMode Should reader discover new files using filesystem watches instead of index
+     * @param rescanInterval Interval in seconds between full reconciliations of files list with data folder
+     */
+    public FileDataReader(String filePath, ISyslog syslog, boolean watchMode, long rescanInterval) {
+        this(filePath,syslog);
+        if (watchMode) this.watcher = new FileDataWatcher(filePath,syslog);
+        this.rescanInterval = rescanInterval;
     }
 
     /**
@@ -50,38 +90,248 @@ public class FileDataReader implements IDataReader {
      * @return HashMap of files, ordered by timestamp
      */
     NavigableMap<Long,Path> getFilesList(Long startDate, Long endDate) {
-        NavigableMap<Long,Path> result = new TreeMap<>();
-        if (startDate>endDate) return result;
-        DataRange range = getRangeBounds(startDate,endDate);
-        if (range.startDate == 0 || range.endDate == 0) return result;
-        try {
-            result = getFilesList().subMap(range.startDate, true, range.endDate, true);
-        } catch (Exception e) {};
-        return result;
+        return (NavigableMap<Long,Path>)getEntries(startDate,endDate);
+    }
+
+    /**
+     * Returns list of files inside folder, ordered by timestamp
+     * @param refreshCache Should this method reread files list from index or just return cached one
+     * @return HashMap of files, ordered by timestamp
+     */
+    @Override
+    NavigableMap<Long,Path> getEntries(boolean refreshCache) {
+        return getFilesList(refreshCache);
+    }
+
+    /**
+     * Base method to fill "filesList" with all valid files inside folder. On first call, method loads
+     * persistent index of folder and reconciles it with filesystem, on next calls it reads only entries,
+     * appended to index by data writers after previous refresh
+     * @param refreshCache Should this method reread files list from index or just return cached one
+     * @return HashMap of files, ordered by timestamp
+     */
+    private synchronized NavigableMap<Long,Path> getFilesList(boolean refreshCache) {
+        if (!Files.exists(Paths.get(filePath))) return filesList;
+        if (!indexLoaded) loadIndex();
+        else if (refreshCache && watcher != null) refreshWatcher();
+        else if (refreshCache) refreshIndex();
+        return filesList;
+    }
+
+    /**
+     * Method loads persistent index of data folder to "filesList" and reconciles it with filesystem: removes
+     * entries of files, which were cleaned from the beginning of data (or all cleaned files, if it is time to
+     * verify index) and adds files, which were written after last indexed file, but not registered in index.
+     * If index does not exist, it rebuilt by walking the folder.
+     */
+    private void loadIndex() {
+        if (!index.exists()) {
+            rebuildIndex();
+            return;
+        }
+        NavigableMap<Long,Path> result = new ConcurrentSkipListMap<>();
+        index.reset();
+        List<Long> entries = index.read();
+        entries.forEach(timestamp -> result.put(timestamp,index.getFilePath(timestamp)));
+        boolean changed = entries.size() != result.size();
+        while (!result.isEmpty() && !Files.exists(result.firstEntry().getValue())) {
+            result.pollFirstEntry();
+            changed = true;
+        }
+        if (isVerifyTime()) {
+            if (result.entrySet().removeIf(entry -> !Files.exists(entry.getValue()))) changed = true;
+            lastVerifyTime = Instant.now().getEpochSecond();
+        }
+        Long lastTimestamp = result.isEmpty() ? 0L : result.lastKey();
+        for (Map.Entry<Long,Path> entry: scanFolder(lastTimestamp,Long.MAX_VALUE).entrySet()) {
+            if (result.containsKey(entry.getKey())) continue;
+            result.put(entry.getKey(),entry.getValue());
+            changed = true;
+        }
+        filesList = result;
+        indexLoaded = true;
+        if (changed) index.write(filesList.keySet());
+        startWatcher();
+    }
+
+    /**
+     * Method adds to "filesList" all files, which were registered in index after previous refresh, and removes
+     * files, which were cleaned from the beginning of data. If index contains much more entries than data folder
+     * (because of rewritten and cleaned files), it is compacted. If "verifyInterval" is set, index reloaded and
+     * all its files checked once per this interval
+     */
+    private void refreshIndex() {
+        if (!index.exists() || index.isRewritten() || isVerifyTime()) {
+            loadIndex();
+            return;
+        }
+        for (Long timestamp: index.read()) filesList.put(timestamp,index.getFilePath(timestamp));
+        while (!filesList.isEmpty() && !Files.exists(filesList.firstEntry().getValue())) filesList.pollFirstEntry();
+        long entriesCount = index.getEntriesCount();
+        if (entriesCount > COMPACT_MIN_ENTRIES && entriesCount > filesList.size()*2L) loadIndex();
+    }
+
+    /**
+     * Determines if it is time to check, that all files of index still exist
+     * @return True if check enabled and interval passed after previous check
+     */
+    private boolean isVerifyTime() {
+        return verifyInterval > 0 && Instant.now().getEpochSecond() - lastVerifyTime >= verifyInterval;
+    }
+
+    /**
+     * Method adds to "filesList" files, which watcher discovered after previous refresh. If watcher lost
+     * some events or rescan interval passed, method reconciles "filesList" with data folder as a safety net
+     */
+    private void refreshWatcher() {
+        if (!watcher.isStarted() || Instant.now().getEpochSecond() - lastRescanTime >= rescanInterval) {
+            loadIndex();
+            return;
+        }
+        List<Path> files = watcher.poll();
+        if (files == null) {
+            loadIndex();
+            return;
+        }
+        for (Path file: files) filesList.put(getPathTimestamp(file),file);
+    }
+
+    /**
+     * Method starts watcher on active subfolders of data folder (if "watch" mode enabled) and adds to
+     * "filesList" files, which were written while watcher started
+     */
+    private void startWatcher() {
+        lastRescanTime = Instant.now().getEpochSecond();
+        if (watcher == null) return;
+        Path lastFilePath = filesList.isEmpty() ? null : filesList.lastEntry().getValue();
+        if (!watcher.start(lastFilePath)) return;
+        scanFolder(filesList.isEmpty() ? 0L : filesList.lastKey(),Long.MAX_VALUE).forEach(filesList::putIfAbsent);
+    }
+
+    /**
+     * Method stops watcher of data folder, if it was started, and clears cache of records
+     */
+    @Override
+    void release() {
+        if (watcher != null) watcher.stop();
+        recordCache.clear();
+    }
+
+    /**
+     * Method walks whole data folder to fill "filesList" and writes persistent index from scratch
+     */
+    @Override
+    public synchronized void rebuildIndex() {
+        filesList = new ConcurrentSkipListMap<>(scanFolder(0L,Long.MAX_VALUE));
+        indexLoaded = true;
+        if (Files.exists(Paths.get(filePath))) index.write(filesList.keySet());
+        startWatcher();
+    }
+
+    /**
+     * Method walks data folder and returns files inside specified date range. Method descends only to
+     * "year/month/day/hour/minute" subfolders, which overlap this date range
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @return HashMap of files, ordered by timestamp
+     */
+    NavigableMap<Long,Path> scanFolder(Long startDate, Long endDate) {
+        return scanFolder(startDate,endDate,Integer.MAX_VALUE);
+    }
+
+    /**
+     * Method walks data folder in order of timestamps and returns first files inside specified date range.
+     * Method descends only to "year/month/day/hour/minute" subfolders, which overlap this date range, and
+     * stops when found specified number of files
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param limit Maximum number of files to return
+     * @return HashMap of files, ordered by timestamp
+     */
+    NavigableMap<Long,Path> scanFolder(Long startDate, Long endDate, int limit) {
+        return scanFolder(startDate,endDate,limit,false);
     }
 
     /**
-     * Base method to fill "filesList" with all valid files inside folder
-     * @param refreshCache Should this method reread files list from filesystem or just return cached one
+     * Method walks data folder in specified order of timestamps and returns first found files inside specified
+     * date range. Method descends only to "year/month/day/hour/minute" subfolders, which overlap this date range,
+     * and stops when found specified number of files
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param limit Maximum number of files to return
+     * @param descending Should folder be walked from last files to first
      * @return HashMap of files, ordered by timestamp
      */
-    private NavigableMap<Long,Path> getFilesList(boolean refreshCache) {
-        NavigableMap<Long,Path> result = filesList;
+    NavigableMap<Long,Path> scanFolder(Long startDate, Long endDate, int limit, boolean descending) {
+        NavigableMap<Long,Path> result = new TreeMap<>();
         Path path = Paths.get(filePath);
-        if (!Files.exists(path)) return result;
+        if (startDate <= endDate && Files.exists(path))
+            scanFolder(path,new ArrayList<>(),startDate,endDate,limit,descending,result);
+        return result;
+    }
+
+    /**
+     * Recursive method used to walk subfolder of data folder in order of timestamps
+     * @param path Path of current subfolder
+     * @param parts Date parts, which current subfolder represents (year, month, day, hour, minute)
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param limit Maximum number of files to return
+     * @param descending Should subfolder be walked from last files to first
+     * @param result HashMap to which found files added
+     */
+    private void scanFolder(Path path, List<Integer> parts, Long startDate, Long endDate, int limit,
+                            boolean descending, NavigableMap<Long,Path> result) {
+        TreeMap<Integer,Path> entries = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path entry: stream) {
+                String name = entry.getFileName().toString();
+                if (parts.size() == 5 && name.matches("[0-9]+\\.json")) entries.put(Integer.valueOf(name.split("\\.")[0]),entry);
+                else if (parts.size() < 5 && name.matches("[0-9]+")) entries.put(Integer.valueOf(name),entry);
+            }
+        } catch (Exception e) {
+            syslog.logException(e,this,"scanFolder");
+            return;
+        }
+        for (Map.Entry<Integer,Path> entry: (descending ? entries.descendingMap() : entries).entrySet()) {
+            if (result.size() >= limit) return;
+            if (parts.size() == 5) {
+                if (!Files.isRegularFile(entry.getValue())) continue;
+                Long timestamp = getPathTimestamp(entry.getValue());
+                if (timestamp >= startDate && timestamp <= endDate) result.put(timestamp,entry.getValue());
+            } else if (Files.isDirectory(entry.getValue())) {
+                parts.add(entry.getKey());
+                if (isPartitionInRange(parts,startDate,endDate))
+                    scanFolder(entry.getValue(),parts,startDate,endDate,limit,descending,result);
+                parts.remove(parts.size()-1);
+            }
+        }
+    }
+
+    /**
+     * Method determines if subfolder of data folder can contain files inside specified date range
+     * @param parts Date parts, which subfolder represents (year, month, day, hour, minute)
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @return True if subfolder overlaps date range or false otherwise
+     */
+    private boolean isPartitionInRange(List<Integer> parts, Long startDate, Long endDate) {
         try {
-            if (refreshCache || filesList.size() == 0) {
-                result = Files.walk(path)
-                        .filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".json"))
-                        .collect(Collectors.toMap(this::getPathTimestamp, p -> p, (v1, v2) -> {
-                            throw new RuntimeException(String.format("Duplicate key for values %s and %s", v1, v2));
-                        }, TreeMap::new));
-                filesList = result;
+            LocalDateTime start = LocalDateTime.of(parts.get(0), parts.size() > 1 ? parts.get(1) : 1,
+                    parts.size() > 2 ? parts.get(2) : 1, parts.size() > 3 ? parts.get(3) : 0,
+                    parts.size() > 4 ? parts.get(4) : 0);
+            LocalDateTime end;
+            switch (parts.size()) {
+                case 1: end = start.plusYears(1);break;
+                case 2: end = start.plusMonths(1);break;
+                case 3: end = start.plusDays(1);break;
+                case 4: end = start.plusHours(1);break;
+                default: end = start.plusMinutes(1);
             }
-        } catch (IOException e) {
-            syslog.logException(e,this,"getFilesList");
+            return start.toEpochSecond(ZoneOffset.UTC) <= endDate && end.toEpochSecond(ZoneOffset.UTC) > startDate;
+        } catch (DateTimeException e) {
+            return false;
         }
-        return result;
     }
 
     /**
@@ -101,137 +351,180 @@ public class FileDataReader implements IDataReader {
     }
 
     /**
-     * Method returns closest date range of data, based on provided date range
-     * @param startDate Timestamp of start
-     * @param endDate Timestamp of end
-     * @return Calculated date range
+     * Method used to read record with specified timestamp
+     * @param timestamp Timestamp of record
+     * @return record as HashMap<String,Object> or null in case of errors
      */
-    private DataRange getRangeBounds(Long startDate,Long endDate)  {
-        return new DataRange(getStartRangeBound(startDate),getEndRangeBound(endDate));
+    @Override
+    HashMap<String,Object> readRecord(Long timestamp) {
+        Path path = partitionScan ? index.getFilePath(timestamp) : getFilesList().get(timestamp);
+        return path == null || !Files.exists(path) ? null : getDataRecord(path);
     }
 
     /**
-     * Method finds timestamp of record, which is closest to specified date (same date or later)
-     * @param value Input timestamp
-     * @return Closest timestamp of data (can be the same timestamp or later closest one)
+     * Returns files inside specified date range, ordered by timestamp. In "partitionScan" mode method walks
+     * only subfolders, which overlap this range
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @return HashMap of files, ordered by timestamp
      */
-    private Long getStartRangeBound(Long value) {
-        return getRangeBound(value,true);
+    @Override
+    NavigableMap<Long,?> getEntries(Long startDate, Long endDate) {
+        if (!partitionScan) return super.getEntries(startDate,endDate);
+        return scanFolder(startDate,endDate);
     }
 
     /**
-     * Method finds timestamp of record, which is closest to specified date (same date or earlier)
-     * @param value Input timestamp
-     * @return Closest timestamp of data (can be the same timestamp or earlier closest one)
+     * Returns statistical information about data inside requested date range. In "partitionScan" mode method walks
+     * only subfolders, which overlap this range. If range does not contain files, method falls back to list of all
+     * files to find closest records outside of range
+     * @param startDate Start date
+     * @param endDate End date
+     * @return DataStats object with start timestamp, end timestamp and number of records
      */
-    private Long getEndRangeBound(Long value) {
-        return getRangeBound(value,false);
+    @Override
+    public DataStats getDataStats(Long startDate, Long endDate, boolean refreshCache) {
+        if (!partitionScan) return super.getDataStats(startDate,endDate,refreshCache);
+        NavigableMap<Long,Path> files = getRangeFiles(startDate,endDate,refreshCache);
+        if (files.isEmpty()) return super.getDataStats(startDate,endDate,refreshCache);
+        return new DataStats(new DataRange(files.firstKey(),files.lastKey()),files.size());
     }
 
     /**
-     * Base method which returns timestamp of record which is closest to provided one
-     * @param value Input timestamp
-     * @param findHigher : Direction: if true, than will return later closest timestamp, otherwise earlier closest timestamp
-     * @return Closest timestamp of data based on provided options
+     * Returns timestamps of all records inside specified date range
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param refreshCache Should index be refreshed before query
+     * @return Ordered set of timestamps
      */
-    private Long getRangeBound(Long value, boolean findHigher) {
-        NavigableMap<Long,Path> source = getFilesList();
-        if (source.size()==0) return 0L;
-        if (source.containsKey(value)) return value;
-        Long result = findHigher ? value < source.firstKey() ? source.firstKey() : value : value > source.lastKey() ? source.lastKey() : value ;
-        Long closeKey = findHigher ? source.higherKey(value) : source.lowerKey(value);
-        if (closeKey != null) result = closeKey;
-        return result;
+    @Override
+    public NavigableSet<Long> getTimestamps(Long startDate, Long endDate, boolean refreshCache) {
+        if (!partitionScan) return super.getTimestamps(startDate,endDate,refreshCache);
+        return new TreeSet<>(scanFolder(startDate,endDate).navigableKeySet());
     }
 
     /**
-     * Returns Time range of data. Includes first date and last date
-     * @return Range object with timestamp of first record and timestamp of last record
+     * Returns timestamp of last record inside specified date range. In "partitionScan" mode method walks
+     * subfolders, which overlap this range, from last to first and stops on first found file
+     * @param startDate Timestamp of start date
+     * @param endDate Timestamp of end date
+     * @param refreshCache Should index be refreshed before query
+     * @return Timestamp or null if range does not have records
      */
     @Override
-    public DataRange getRange() {
-        NavigableMap<Long,Path> source = getFilesList();
-        if (source.size()==0) return new DataRange();
-        return new DataRange(source.firstKey(),source.lastKey());
+    public Long getLastTimestamp(Long startDate, Long endDate, boolean refreshCache) {
+        if (!partitionScan) return super.getLastTimestamp(startDate,endDate,refreshCache);
+        NavigableMap<Long,Path> files = scanFolder(startDate,endDate,1,true);
+        return files.isEmpty() ? null : files.lastKey();
     }
 
     /**
-     * Returns statistical information about data: Date range and number of records
-     * @return DataStats object with start timestamp, end timestamp and number of records
+     * Returns limited number of timestamps of records inside specified date range
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param limit Maximum number of timestamps to return
+     * @return Ordered list of timestamps
      */
     @Override
-    public DataStats getDataStats(boolean refreshCache) {
-        return getDataStats(0L,0L,refreshCache);
+    List<Long> getTimestamps(Long startDate, Long endDate, int limit) {
+        if (!partitionScan) return super.getTimestamps(startDate,endDate,limit);
+        return new ArrayList<>(scanFolder(startDate,endDate,limit).navigableKeySet());
     }
 
     /**
-     * Returns statistical information about data inside requested date range, it includes timestamp of first
-     * record, timestamp of last record and number of records in this period.
-     * @param startDate Start date
-     * @param endDate End date
-     * @return DataStats object with start timestamp, end timestamp and number of records
+     * Returns cursor, which reads records inside specified date range lazily, ordered by timestamp. In
+     * "partitionScan" mode subfolders, which overlap this range, walked once and cursor reads batches from this
+     * listing, so files, written after cursor opened, are not returned
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param refreshCache Should list of records be refreshed before query
+     * @return Cursor of records
      */
     @Override
-    public DataStats getDataStats(Long startDate, Long endDate, boolean refreshCache) {
-        if (refreshCache) getFilesList(refreshCache);
-        DataRange range = getRangeBounds(startDate,endDate);
-        return new DataStats(range,getFilesList(startDate,endDate).size());
+    public DataCursor getCursor(Long startDate, Long endDate, boolean refreshCache) {
+        if (!partitionScan) return super.getCursor(startDate,endDate,refreshCache);
+        NavigableSet<Long> timestamps = startDate > endDate ? new TreeSet<>() :
+                getRangeFiles(startDate,endDate,refreshCache).navigableKeySet().subSet(startDate,true,endDate,true);
+        return new DataCursor(this,startDate,endDate,DataCursor.DEFAULT_READ_AHEAD,timestamps);
     }
 
     /**
-     * Method read data from all files and returns it as a HashMap, ordered by timestamp
-     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     * Returns files inside specified date range in "partitionScan" mode. Subfolders walked only if cache should be
+     * refreshed or range is outside of last walked range, otherwise files taken from listing of last walked range
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param refreshCache Should subfolders be walked again, even if range is inside of last walked range
+     * @return Files of range, ordered by timestamp. Map can contain files outside of range
      */
-    @Override
-    public NavigableMap<Long,HashMap<String,Object>> getData(boolean refreshCache) {
-        DataRange range = getRange();
-        return getData(range.startDate,range.endDate,refreshCache);
+    private synchronized NavigableMap<Long,Path> getRangeFiles(Long startDate, Long endDate, boolean refreshCache) {
+        if (refreshCache || filesRange == null || startDate < filesRange.startDate || endDate > filesRange.endDate) {
+            rangeFiles = scanFolder(startDate,endDate);
+            filesRange = new DataRange(startDate,endDate);
+            return rangeFiles;
+        }
+        return rangeFiles.subMap(startDate,true,endDate,true);
     }
 
     /**
-     * Method read data from files inside specified date range and returns it as a HashMap, ordered by timestamp
+     * Returns timestamps of records inside specified date range, which files were written or changed after
+     * specified time, including files which were written to data folder without data writer (for example,
+     * extracted from archives). Such files added to list of files and to index of data folder, so they can be
+     * read by range queries and cursors
      * @param startDate Start timestamp
      * @param endDate End timestamp
-     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     * @param modifiedSince Time in milliseconds
+     * @return Ordered set of timestamps
      */
     @Override
-    public NavigableMap<Long,HashMap<String,Object>> getData(Long startDate, Long endDate, boolean refreshCache) {
-        NavigableMap<Long,HashMap<String,Object>> result = new TreeMap<>();
-        DataStats stats = getDataStats(startDate,endDate,refreshCache);
-        if (stats.count==0) return result;
-        getFilesList(startDate,endDate).entrySet().parallelStream().forEach( entry -> {
-            HashMap<String,Object> record = getDataRecord(entry.getValue());
-            if (record == null) return;
-            Long timestamp = new Long(record.get("timestamp").toString());
+    public NavigableSet<Long> getModifiedTimestamps(Long startDate, Long endDate, long modifiedSince) {
+        NavigableSet<Long> result = new TreeSet<>();
+        if (!partitionScan) getFilesList(false);
+        for (Map.Entry<Long,Path> entry: scanFolder(startDate,endDate).entrySet()) {
+            if (!isModifiedSince(entry.getValue(),modifiedSince)) continue;
+            result.add(entry.getKey());
+            if (partitionScan) continue;
             synchronized (this) {
-                result.put(timestamp, record);
+                if (filesList.putIfAbsent(entry.getKey(),entry.getValue()) == null) index.append(entry.getKey());
             }
-        });
+        }
         return result;
     }
 
     /**
-     * Method read data from files inside specified date range and returns it as a HashMap, ordered by timestamp
-     * @param startDate Start timestamp
-     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     * Method enables or disables "partitionScan" mode, in which range queries walk only subfolders of data folder,
+     * which overlap requested date range, instead of loading list of all files of data folder
+     * @param partitionScan True to enable mode or false to disable
      */
-    public NavigableMap<Long,HashMap<String,Object>> getData(Long startDate,boolean refreshCache) {
-        return getData(startDate,Instant.now().getEpochSecond(),refreshCache);
+    public void setPartitionScan(boolean partitionScan) {
+        this.partitionScan = partitionScan;
     }
 
     /**
-     * Method used to read single record from data file
+     * Method sets interval, in which reader checks, that all files of index still exist. Check reads attributes
+     * of all files of data folder, so it disabled by default and only files in the beginning of data checked
+     * @param verifyInterval Interval in seconds (0 - disabled)
+     */
+    public void setVerifyInterval(long verifyInterval) {
+        this.verifyInterval = verifyInterval;
+    }
+
+    /**
+     * Method used to read single record from data file. Decoded records are cached, so data file is read again
+     * only if it was changed after previous read
      * @param path Path to datafile
      * @return record as HashMap<String,Object> or null in case of errors
      */
     private HashMap<String,Object> getDataRecord(Path path) {
-        Gson gson = new Gson();
-        try (BufferedReader reader = Files.newBufferedReader(path)) {
-            if (!Files.exists(path) || Files.size(path) == 0) return null;
-            String content = reader.readLine();
-            if (content.isEmpty()) return null;
-            HashMap<String,Object> record = gson.fromJson(content,HashMap.class);
-            if (record.size()==0 || !record.containsKey("timestamp")) return null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path,BasicFileAttributes.class);
+            if (attributes.size() == 0) return null;
+            long modifiedTime = attributes.lastModifiedTime().toMillis();
+            HashMap<String,Object> record = recordCache.get(path,modifiedTime,attributes.size());
+            if (record != null) return record;
+            try (BufferedReader reader = Files.newBufferedReader(path)) {
+                record = parseRecord(reader.readLine());
+            }
+            if (record != null) recordCache.put(path,modifiedTime,attributes.size(),record);
             return record;
         } catch (Exception e) {
             syslog.logException(e,this,"getDataRecord");
@@ -239,6 +532,22 @@ public class FileDataReader implements IDataReader {
         }
     }
 
+    /**
+     * Method replaces cache of decoded records of data files
+     * @param recordCache Cache of records
+     */
+    public void setRecordCache(RecordCache recordCache) {
+        this.recordCache = recordCache;
+    }
+
+    /**
+     * Returns cache of decoded records of data files
+     * @return Cache of records
+     */
+    public RecordCache getRecordCache() {
+        return recordCache;
+    }
+
     /**
      * Class which holds information about date range
      */
@@ -255,7 +564,7 @@ public class FileDataReader implements IDataReader {
     /**
      * Class which holds statistical information about data folder
      */
-    public class DataStats {
+    public static class DataStats {
         public DataRange range;
         public int count;
         DataStats(DataRange range,int count) {
@@ -0,0 +1,165 @@
+package readers;
+
+import main.ISyslog;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Class used to discover new data files in data folder without walking it. Watcher registers watches only on
+ * root folder and on "active" branch of "year/month/day/hour/minute" subfolders, to which writers append new
+ * files. When new subfolder appears, watcher moves watch of its level to this subfolder.
+ */
+public class FileDataWatcher {
+
+    // Depth of subfolders, which contain data files (year/month/day/hour/minute)
+    private static final int FILES_DEPTH = 5;
+
+    // Root path of data folder
+    private Path rootPath;
+    // Watch service, which receives events from filesystem (null if watcher is not started)
+    private WatchService watchService;
+    // Watched folders, indexed by watch keys
+    private HashMap<WatchKey,Path> keys = new HashMap<>();
+    // Watch keys of active branch of subfolders, indexed by depth of subfolder (0 - root folder)
+    private WatchKey[] activeKeys = new WatchKey[FILES_DEPTH+1];
+    // Instance of internal error logger used to log exceptions and other issues to file
+    private ISyslog syslog;
+
+    /**
+     * Class constructor
+     * @param rootPath Full path to root folder of data
+     * @param syslog Link to system logger
+     */
+    public FileDataWatcher(String rootPath, ISyslog syslog) {
+        this.rootPath = Paths.get(rootPath);
+        this.syslog = syslog;
+    }
+
+    /**
+     * Method starts watching data folder from scratch. Watches registered on root folder and on subfolders,
+     * which contain data file with specified timestamp
+     * @param lastFilePath Path to last known data file or null if folder does not contain data files yet
+     * @return True if watcher started or false otherwise
+     */
+    public synchronized boolean start(Path lastFilePath) {
+        stop();
+        if (!Files.isDirectory(rootPath)) return false;
+        try {
+            watchService = rootPath.getFileSystem().newWatchService();
+            register(rootPath,0);
+            if (lastFilePath == null) return true;
+            Path relativePath = rootPath.relativize(lastFilePath.getParent());
+            Path path = rootPath;
+            for (int depth=1;depth<=Math.min(relativePath.getNameCount(),FILES_DEPTH);depth++) {
+                path = path.resolve(relativePath.getName(depth-1));
+                if (!Files.isDirectory(path)) break;
+                register(path,depth);
+            }
+            return true;
+        } catch (IOException e) {
+            syslog.logException(e,this,"start");
+            stop();
+            return false;
+        }
+    }
+
+    /**
+     * Method returns data files, which appeared in data folder after previous call
+     * @return List of paths of new data files or null if some events were lost and data folder should be rescanned
+     */
+    public synchronized List<Path> poll() {
+        if (watchService == null) return null;
+        List<Path> result = new ArrayList<>();
+        boolean overflow = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path folder = keys.get(key);
+            for (WatchEvent<?> event: key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                if (folder == null || event.kind() != ENTRY_CREATE) continue;
+                try {
+                    addPath(folder.resolve((Path)event.context()),result);
+                } catch (IOException e) {
+                    syslog.logException(e,this,"poll");
+                    overflow = true;
+                }
+            }
+            if (!key.reset()) keys.remove(key);
+        }
+        if (keys.isEmpty()) overflow = true;
+        return overflow ? null : result;
+    }
+
+    /**
+     * Method processes new entry of watched folder. Data files added to result, subfolders registered as
+     * new active branch and scanned for files, which were created before subfolder was registered
+     * @param path Path of new entry
+     * @param result List to which found data files added
+     * @throws IOException If could not register subfolder
+     */
+    private void addPath(Path path, List<Path> result) throws IOException {
+        int depth = rootPath.relativize(path).getNameCount();
+        String name = path.getFileName().toString();
+        if (depth == FILES_DEPTH+1) {
+            if (name.endsWith(".json") && Files.isRegularFile(path)) result.add(path);
+            return;
+        }
+        if (depth > FILES_DEPTH || !name.matches("[0-9]+") || !Files.isDirectory(path)) return;
+        register(path,depth);
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path entry: stream) entries.add(entry);
+        }
+        entries.sort(Comparator.comparing((Path entry) -> entry.getFileName().toString().length())
+                .thenComparing(entry -> entry.getFileName().toString()));
+        for (Path entry: entries) addPath(entry,result);
+    }
+
+    /**
+     * Method registers watch on specified subfolder and cancels watch of previous subfolder of the same level
+     * @param path Path to subfolder
+     * @param depth Depth of subfolder inside data folder
+     * @throws IOException If could not register watch
+     */
+    private void register(Path path, int depth) throws IOException {
+        WatchKey key = path.register(watchService,ENTRY_CREATE);
+        WatchKey previousKey = activeKeys[depth];
+        if (previousKey != null && !previousKey.equals(key)) {
+            previousKey.cancel();
+            keys.remove(previousKey);
+        }
+        activeKeys[depth] = key;
+        keys.put(key,path);
+    }
+
+    /**
+     * Method stops watching data folder and releases watch service
+     */
+    public synchronized void stop() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            syslog.logException(e,this,"stop");
+        }
+        watchService = null;
+        keys.clear();
+        Arrays.fill(activeKeys,null);
+    }
+
+    /**
+     * Determines if watcher is started
+     * @return True if watcher is started or false otherwise
+     */
+    public synchronized boolean isStarted() {
+        return watchService != null;
+    }
+}
@@ -2,6 +2,7 @@ package readers;
 
 import java.util.HashMap;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
 
 /**
  * Interface which all data readers must implement
@@ -16,4 +17,10 @@ public interface IDataReader {
     NavigableMap<Long,HashMap<String,Object>> getData(boolean refreshCache);
     NavigableMap<Long,HashMap<String,Object>> getData(Long startDate,boolean refreshCache);
     NavigableMap<Long,HashMap<String,Object>> getData(Long startDate, Long endDate, boolean refreshCache);
+    NavigableSet<Long> getTimestamps(Long startDate, Long endDate, boolean refreshCache);
+    Long getLastTimestamp(Long startDate, Long endDate, boolean refreshCache);
+    DataCursor getCursor(Long startDate, Long endDate, boolean refreshCache);
+    NavigableSet<Long> getModifiedTimestamps(Long startDate, Long endDate, long modifiedSince);
+    void rebuildIndex();
+    void close();
 }
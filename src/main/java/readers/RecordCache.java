@@ -0,0 +1,109 @@
+package readers;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded data records, indexed by path of data file. Each cached record remembers
+ * modification time and size of file, from which it was decoded, so record is not returned if file was
+ * changed after it. Cache limited both by number of records and by summary size of source files.
+ */
+public class RecordCache {
+
+    // Cached records in order of access, from least recently used to most recently used
+    private LinkedHashMap<Path,Entry> entries = new LinkedHashMap<>(16,0.75f,true);
+    // Maximum number of records in cache (0 - cache disabled)
+    private int maxEntries;
+    // Maximum summary size of source files of cached records in bytes
+    private long maxSize;
+    // Current summary size of source files of cached records in bytes
+    private long size = 0L;
+    // Number of requests, which were served from cache
+    private long hits = 0L;
+    // Number of requests, which were not found in cache
+    private long misses = 0L;
+    // Number of records, which were removed from cache to fit limits
+    private long evictions = 0L;
+
+    /**
+     * Class constructor
+     * @param maxEntries Maximum number of records in cache (0 - cache disabled)
+     * @param maxSize Maximum summary size of source files of cached records in bytes
+     */
+    public RecordCache(int maxEntries, long maxSize) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns copy of cached record of specified data file
+     * @param path Path to data file
+     * @param modifiedTime Current modification time of data file
+     * @param fileSize Current size of data file
+     * @return Record or null if record is not in cache or file was changed after it was cached
+     */
+    public synchronized HashMap<String,Object> get(Path path, long modifiedTime, long fileSize) {
+        Entry entry = entries.get(path);
+        if (entry == null || entry.modifiedTime != modifiedTime || entry.size != fileSize) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (HashMap<String,Object>)entry.record.clone();
+    }
+
+    /**
+     * Method puts copy of decoded record of specified data file to cache and evicts least recently used records,
+     * if cache exceeds its limits
+     * @param path Path to data file
+     * @param modifiedTime Modification time of data file
+     * @param fileSize Size of data file
+     * @param record Decoded record
+     */
+    public synchronized void put(Path path, long modifiedTime, long fileSize, HashMap<String,Object> record) {
+        if (maxEntries <= 0 || fileSize > maxSize) return;
+        Entry previous = entries.put(path,new Entry(modifiedTime,fileSize,(HashMap<String,Object>)record.clone()));
+        if (previous != null) size -= previous.size;
+        size += fileSize;
+        Iterator<Map.Entry<Path,Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || size > maxSize) && iterator.hasNext()) {
+            size -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Method removes all records from cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0L;
+    }
+
+    /**
+     * Getters for properties
+     */
+    public synchronized int getCount() { return entries.size(); }
+    public synchronized long getSize() { return size; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Cached record with information about source file
+     */
+    private static class Entry {
+        long modifiedTime;
+        long size;
+        HashMap<String,Object> record;
+        Entry(long modifiedTime, long size, HashMap<String,Object> record) {
+            this.modifiedTime = modifiedTime;
+            this.size = size;
+            this.record = record;
+        }
+    }
+}
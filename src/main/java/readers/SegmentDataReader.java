@@ -0,0 +1,173 @@
+package readers;
+
+import main.ISyslog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class provide functions to get information from data folder in "segments" storage format, in which
+ * records are stored in append-only segment files instead of one file per record
+ */
+public class SegmentDataReader extends DataReader {
+
+    // Loaded segments of data folder, indexed by path of segment file
+    private HashMap<Path,DataSegment> segments = new HashMap<>();
+    // Segments, which contain records, indexed by timestamp of record. Map is concurrent, because reader can be
+    // shared by consumers, which run in different threads
+    private NavigableMap<Long,DataSegment> records = new ConcurrentSkipListMap<>();
+    // Determines if segments of folder already loaded
+    private boolean loaded = false;
+
+    /**
+     * Class constructor
+     * @param filePath Full path to root folder
+     * @param syslog Link to system logger
+     */
+    public SegmentDataReader(String filePath, ISyslog syslog) {
+        super(filePath,syslog);
+    }
+
+    /**
+     * Returns segments which contain records of data folder, ordered by timestamp of records
+     * @param refreshCache Should this method look for new segments and records or just return cached list
+     * @return HashMap of segments, ordered by timestamp of records
+     */
+    @Override
+    synchronized NavigableMap<Long,DataSegment> getEntries(boolean refreshCache) {
+        if (!loaded || refreshCache) refreshSegments();
+        return records;
+    }
+
+    /**
+     * Method loads segments, which appeared in data folder after previous refresh, loads new records of
+     * active segments and removes segments, which were deleted from data folder. If record exists in several
+     * segments of its hour, record from segment with greatest sequence number (written last) is used
+     */
+    private void refreshSegments() {
+        loaded = true;
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) return;
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(path)) {
+            paths = stream.filter(p -> p.toString().endsWith(DataSegment.EXTENSION) && Files.isRegularFile(p))
+                    .sorted(Comparator.comparingInt((Path file) -> DataSegment.getSequence(file)).thenComparing(Comparator.naturalOrder()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            syslog.logException(e,this,"refreshSegments");
+            return;
+        }
+        Set<Path> existingPaths = new HashSet<>(paths);
+        boolean removed = segments.keySet().removeIf(segmentPath -> !existingPaths.contains(segmentPath));
+        if (removed) records.clear();
+        for (Path segmentPath: paths) {
+            DataSegment segment = segments.get(segmentPath);
+            try {
+                if (segment == null) {
+                    segment = new DataSegment(segmentPath);
+                    segment.load();
+                    segments.put(segmentPath,segment);
+                } else if (!segment.refresh() && !removed) continue;
+            } catch (IOException e) {
+                syslog.logException(e,this,"refreshSegments");
+                continue;
+            }
+            for (Long timestamp: segment.getOffsets().keySet()) records.merge(timestamp,segment,SegmentDataReader::getLatestSegment);
+        }
+    }
+
+    /**
+     * Returns segment, which was written later
+     * @param segment1 First segment
+     * @param segment2 Second segment
+     * @return Segment with greater sequence number or second segment, if numbers are equal
+     */
+    private static DataSegment getLatestSegment(DataSegment segment1, DataSegment segment2) {
+        return segment1.getSequence() > segment2.getSequence() ? segment1 : segment2;
+    }
+
+    /**
+     * Method loads all segments of data folder from scratch
+     */
+    @Override
+    public synchronized void rebuildIndex() {
+        segments.clear();
+        records.clear();
+        refreshSegments();
+    }
+
+    /**
+     * Returns timestamps of records inside specified date range, which segment files were written or changed
+     * after specified time
+     * @param startDate Start timestamp
+     * @param endDate End timestamp
+     * @param modifiedSince Time in milliseconds
+     * @return Ordered set of timestamps
+     */
+    @Override
+    public NavigableSet<Long> getModifiedTimestamps(Long startDate, Long endDate, long modifiedSince) {
+        NavigableSet<Long> result = new TreeSet<>();
+        if (startDate > endDate) return result;
+        HashMap<DataSegment,Boolean> modified = new HashMap<>();
+        for (Map.Entry<Long,DataSegment> entry: getEntries(true).subMap(startDate,true,endDate,true).entrySet())
+            if (modified.computeIfAbsent(entry.getValue(),segment -> isModifiedSince(segment.getPath(),modifiedSince)))
+                result.add(entry.getKey());
+        return result;
+    }
+
+    /**
+     * Method used to read record with specified timestamp
+     * @param timestamp Timestamp of record
+     * @return record as HashMap<String,Object> or null in case of errors
+     */
+    @Override
+    HashMap<String,Object> readRecord(Long timestamp) {
+        DataSegment segment = getEntries(false).get(timestamp);
+        if (segment == null) return null;
+        try {
+            return parseRecord(segment.readRecord(timestamp));
+        } catch (Exception e) {
+            syslog.logException(e,this,"readRecord");
+            return null;
+        }
+    }
+
+    /**
+     * Method used to read records with specified timestamps. Records of each segment are read using
+     * single opened segment file
+     * @param timestamps Timestamps of records
+     * @return HashMap with timestamp as key and data record (HashMap<String,Object>) as value
+     */
+    @Override
+    NavigableMap<Long,HashMap<String,Object>> readRecords(Collection<Long> timestamps) {
+        NavigableMap<Long,HashMap<String,Object>> result = new TreeMap<>();
+        Map<DataSegment,List<Long>> segmentTimestamps = new HashMap<>();
+        synchronized (this) {
+            for (Long timestamp: timestamps) {
+                DataSegment segment = records.get(timestamp);
+                if (segment != null) segmentTimestamps.computeIfAbsent(segment,key -> new ArrayList<>()).add(timestamp);
+            }
+        }
+        segmentTimestamps.entrySet().parallelStream().forEach(entry -> {
+            try {
+                for (String content: entry.getKey().readRecords(entry.getValue()).values()) {
+                    HashMap<String,Object> record = parseRecord(content);
+                    if (record == null) continue;
+                    Long timestamp = new Long(record.get("timestamp").toString());
+                    synchronized (result) {
+                        result.put(timestamp,record);
+                    }
+                }
+            } catch (Exception e) {
+                syslog.logException(e,this,"readRecords");
+            }
+        });
+        return result;
+    }
+}
@@ -11,4 +11,44 @@ public class MathUtils {
         Double result = Double.valueOf(value.toString());
         return (double)Math.round(result*(10*precision))/(10*precision);
     }
+
+    /**
+     * Method converts value to number without throwing exceptions. Strings are checked to be decimal numbers
+     * before parsing, so values which are not numbers are rejected by single scan of their characters
+     * @param value Source value
+     * @return Number or NaN if value is not a number
+     */
+    public static double toDouble(Object value) {
+        if (value instanceof Number) return ((Number)value).doubleValue();
+        if (value == null) return Double.NaN;
+        String text = value.toString().trim();
+        return isDecimal(text) ? Double.parseDouble(text) : Double.NaN;
+    }
+
+    /**
+     * Method checks that string is a decimal number with optional sign, fraction and exponent, like "-12", "4.5"
+     * or "1.2e-3"
+     * @param text Source string
+     * @return True if string is a decimal number or false otherwise
+     */
+    static boolean isDecimal(String text) {
+        int index = 0;
+        int length = text.length();
+        if (index < length && (text.charAt(index) == '-' || text.charAt(index) == '+')) index++;
+        int digits = 0;
+        while (index < length && Character.isDigit(text.charAt(index))) { index++;digits++; }
+        if (index < length && text.charAt(index) == '.') {
+            index++;
+            while (index < length && Character.isDigit(text.charAt(index))) { index++;digits++; }
+        }
+        if (digits == 0) return false;
+        if (index < length && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+            index++;
+            if (index < length && (text.charAt(index) == '-' || text.charAt(index) == '+')) index++;
+            int exponentDigits = 0;
+            while (index < length && Character.isDigit(text.charAt(index))) { index++;exponentDigits++; }
+            if (exponentDigits == 0) return false;
+        }
+        return index == length;
+    }
 }
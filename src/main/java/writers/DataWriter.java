@@ -0,0 +1,59 @@
+package writers;
+
+import com.google.gson.Gson;
+import main.ISyslog;
+
+import java.util.HashMap;
+
+/**
+ * Base class for data writers. Data writers used by loggers and aggregators to write records to
+ * destination data folder in one of supported storage formats
+ */
+public abstract class DataWriter implements IDataWriter {
+
+    // Root path of destination data folder
+    protected String rootPath;
+    // Link to system logger, used to write error messages
+    protected ISyslog syslog;
+    // Object used to convert records to JSON
+    protected Gson gson = new Gson();
+
+    /**
+     * Factory method, used to get instance of data writer for storage format, specified in configuration
+     * @param config Configuration object of logger or aggregator ("storageFormat" option: "files" or "segments")
+     * @param rootPath Root path of destination data folder
+     * @param syslog Link to system logger
+     * @return Instance of data writer
+     */
+    public static IDataWriter create(HashMap<String,Object> config, String rootPath, ISyslog syslog) {
+        String storageFormat = config == null ? "files" : config.getOrDefault("storageFormat","files").toString();
+        switch (storageFormat) {
+            case "segments": return new SegmentDataWriter(config,rootPath,syslog);
+            default: return new FileDataWriter(rootPath,syslog);
+        }
+    }
+
+    /**
+     * Class constructor
+     * @param rootPath Root path of destination data folder
+     * @param syslog Link to system logger
+     */
+    DataWriter(String rootPath, ISyslog syslog) {
+        this.rootPath = rootPath;
+        this.syslog = syslog;
+    }
+
+    /**
+     * Method returns timestamp of provided record
+     * @param record Data record
+     * @return Timestamp
+     */
+    Long getTimestamp(HashMap<String,Object> record) {
+        return Long.valueOf(record.get("timestamp").toString());
+    }
+
+    /**
+     * Method used to close all files, opened by writer
+     */
+    public void close() {}
+}
@@ -0,0 +1,45 @@
+package writers;
+
+import main.ISyslog;
+import readers.FileDataIndex;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * Data writer, which writes each record to separate JSON file inside "year/month/day/hour/minute" folder
+ * structure and registers written files in index of data folder
+ */
+public class FileDataWriter extends DataWriter {
+
+    // Persistent index of destination folder
+    private FileDataIndex index;
+
+    /**
+     * Class constructor
+     * @param rootPath Root path of destination data folder
+     * @param syslog Link to system logger
+     */
+    public FileDataWriter(String rootPath, ISyslog syslog) {
+        super(rootPath,syslog);
+        this.index = new FileDataIndex(rootPath,syslog);
+    }
+
+    /**
+     * Method writes record to file. If file with the same timestamp already exists, it will be overwritten
+     * @param record Record to write
+     * @throws Exception If could not write record
+     */
+    @Override
+    public void write(HashMap<String,Object> record) throws Exception {
+        Long timestamp = getTimestamp(record);
+        Path path = index.getFilePath(timestamp);
+        if (!Files.exists(path.getParent())) Files.createDirectories(path.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write(gson.toJson(record));
+        }
+        index.append(timestamp);
+    }
+}
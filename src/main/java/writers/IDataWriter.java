@@ -0,0 +1,11 @@
+package writers;
+
+import java.util.HashMap;
+
+/**
+ * Interface which all data writers must implement
+ */
+public interface IDataWriter {
+    void write(HashMap<String,Object> record) throws Exception;
+    void close();
+}
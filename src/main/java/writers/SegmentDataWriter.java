@@ -0,0 +1,116 @@
+package writers;
+
+import main.ISyslog;
+import readers.DataSegment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Data writer, which appends records to segment files. Writer starts new segment each hour, or when size of
+ * active segment exceeds configured limit. Previous segment is sealed by footer with index of its records.
+ * Sealed segments are never changed: if records of hour are written again, they are appended to new segment
+ * of this hour with greater sequence number, which supersedes previous segments.
+ */
+public class SegmentDataWriter extends DataWriter {
+
+    // Maximum size of single segment in bytes (0 - unlimited, segment is rotated only each hour)
+    private long maxSegmentSize = 0L;
+    // Segment, to which writer appends records
+    private DataSegment activeSegment;
+    // Determines if segments, which were left unsealed by previous writer, already sealed
+    private boolean recovered = false;
+
+    /**
+     * Class constructor
+     * @param config Configuration object of logger or aggregator
+     * @param rootPath Root path of destination data folder
+     * @param syslog Link to system logger
+     */
+    public SegmentDataWriter(HashMap<String,Object> config, String rootPath, ISyslog syslog) {
+        super(rootPath,syslog);
+        if (config != null)
+            maxSegmentSize = Double.valueOf(config.getOrDefault("maxSegmentSize",maxSegmentSize).toString()).longValue();
+        try {
+            DataSegment.markSegmentFolder(rootPath);
+        } catch (IOException e) {
+            if (syslog != null) syslog.logException(e,this,"SegmentDataWriter");
+        }
+    }
+
+    /**
+     * Method appends record to active segment
+     * @param record Record to write
+     * @throws Exception If could not write record
+     */
+    @Override
+    public synchronized void write(HashMap<String,Object> record) throws Exception {
+        Long timestamp = getTimestamp(record);
+        getSegment(timestamp).append(timestamp,gson.toJson(record));
+    }
+
+    /**
+     * Method returns segment, to which record with specified timestamp should be appended. If active segment
+     * belongs to another hour or too big, method seals it and opens new one. Before first write, method seals
+     * segments, which were left unsealed after crash
+     * @param timestamp Timestamp of record
+     * @return Opened segment
+     * @throws IOException If could not open segment
+     */
+    private DataSegment getSegment(Long timestamp) throws IOException {
+        if (!recovered) sealStaleSegments();
+        if (activeSegment != null && activeSegment.getFirstTimestamp() != null &&
+                (activeSegment.getFirstTimestamp() / 3600 != timestamp / 3600 ||
+                        (maxSegmentSize > 0 && activeSegment.getSize() >= maxSegmentSize))) {
+            activeSegment.seal();
+            activeSegment = null;
+        }
+        if (activeSegment == null) {
+            activeSegment = new DataSegment(DataSegment.getNewSegmentPath(rootPath,timestamp));
+            activeSegment.open();
+        }
+        return activeSegment;
+    }
+
+    /**
+     * Method seals all segments of data folder, which were not sealed, because writer stopped without closing
+     * them, so archivers can process them
+     * @throws IOException If could not read data folder
+     */
+    private void sealStaleSegments() throws IOException {
+        recovered = true;
+        Path path = Paths.get(rootPath);
+        if (!Files.exists(path)) return;
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(path)) {
+            files = stream.filter(file -> file.toString().endsWith(DataSegment.EXTENSION) && Files.isRegularFile(file))
+                    .collect(Collectors.toList());
+        }
+        for (Path file: files) {
+            if (DataSegment.isSealed(file)) continue;
+            DataSegment segment = new DataSegment(file);
+            segment.open();
+            segment.seal();
+        }
+    }
+
+    /**
+     * Method seals active segment. Next record will be written to new segment
+     */
+    @Override
+    public synchronized void close() {
+        if (activeSegment == null) return;
+        try {
+            activeSegment.seal();
+        } catch (IOException e) {
+            if (syslog != null) syslog.logException(e,this,"close");
+        }
+        activeSegment = null;
+    }
+}
@@ -0,0 +1,78 @@
+package aggregators;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class AggregateFieldStatsTest {
+
+    @Test
+    public void add() {
+        SimpleFileDataAggregator.AggregateFieldStats stats = new SimpleFileDataAggregator.AggregateFieldStats(true);
+        assertTrue("Should be empty before values added",stats.isEmpty());
+        stats.add(2.0);
+        stats.add("4.5");
+        stats.add(-1000000000L);
+        stats.add("unknown");
+        assertEquals("Should count only numeric values",3,stats.count);
+        assertEquals("Should sum numeric values",-999999993.5,stats.sum,0.001);
+        assertEquals("Should find minimum below any default",-1000000000.0,stats.min,0.001);
+        assertEquals("Should find maximum",4.5,stats.max,0.001);
+        assertEquals("Should return first primitive value",2.0,stats.getFirst());
+        assertEquals("Should return last value as added","unknown",stats.getLast());
+        stats.reset();
+        assertTrue("Should be empty after reset",stats.isEmpty());
+        assertNull("Should not return first value after reset",stats.getFirst());
+        stats.add(7.0);
+        assertEquals("Should collect values after reset",7.0,stats.sum,0.001);
+        SimpleFileDataAggregator.AggregateFieldStats text = new SimpleFileDataAggregator.AggregateFieldStats(false);
+        text.add("10");
+        text.add("20");
+        assertEquals("Should not convert values of non numeric field",0,text.count);
+        assertEquals("Should keep first value of non numeric field","10",text.getFirst());
+        assertEquals("Should keep last value of non numeric field","20",text.getLast());
+    }
+
+    @Test
+    public void addRecordToStats() {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","stats");
+        config.put("sourcePath","/tmp/logger_test/stats/source");
+        config.put("destinationPath","/tmp/logger_test/stats/stats");
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("expression","temperature * 2");
+        field.put("aggregate_function","average");
+        fields.put("double_temperature",field);
+        field = new HashMap<>();
+        field.put("field","temperature");
+        field.put("aggregate_function","last");
+        fields.put("temperature",field);
+        field = new HashMap<>();
+        field.put("field","temperature");
+        field.put("aggregate_function","p50");
+        fields.put("temperature_median",field);
+        field = new HashMap<>();
+        field.put("field","temperature");
+        field.put("aggregate_function","distinct_count");
+        fields.put("temperature_distinct",field);
+        config.put("fields",fields);
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        HashMap<String,SimpleFileDataAggregator.AggregateFieldStats> stats = new HashMap<>();
+        for (double value=1.0;value<=3.0;value++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("temperature",value);
+            aggregator.addRecordToStats(record,stats);
+        }
+        assertEquals("Should aggregate expression values",4.0,
+                (Double)aggregator.getAggregatedValue("double_temperature",stats.get("double_temperature")),0.001);
+        assertEquals("Should aggregate field values",3.0,
+                (Double)aggregator.getAggregatedValue("temperature",stats.get("temperature")),0.001);
+        assertEquals("Should aggregate quantile of values",2.0,
+                (Double)aggregator.getAggregatedValue("temperature_median",stats.get("temperature_median")),0.001);
+        assertEquals("Should aggregate distinct count of values",3L,
+                aggregator.getAggregatedValue("temperature_distinct",stats.get("temperature_distinct")));
+    }
+}
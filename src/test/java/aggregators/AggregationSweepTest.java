@@ -0,0 +1,106 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NavigableMap;
+
+import static org.junit.Assert.*;
+
+public class AggregationSweepTest {
+
+    private String rootPath = "/tmp/logger_test/sweep";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352005L;timestamp<=1538352120L;timestamp+=5) writer.write(record(timestamp,1.0));
+        for (long timestamp=1538438405L;timestamp<=1538438460L;timestamp+=5) writer.write(record(timestamp,2.0));
+    }
+
+    @Test
+    public void aggregate() {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","sweep");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/sweep");
+        config.put("statusPath",rootPath+"/status");
+        config.put("aggregationPeriod",60);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("field","value");
+        field.put("aggregate_function","sum");
+        fields.put("value",field);
+        config.put("fields",fields);
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        aggregator.aggregate();
+        NavigableMap<Long,HashMap<String,Object>> data = DataReader.create(rootPath+"/sweep",null)
+                .getData(0L,Long.MAX_VALUE,true);
+        assertEquals("Should write only intervals with data",3,data.size());
+        assertEquals("Should aggregate records of first interval",12.0,
+                Double.valueOf(data.get(1538352000L).get("value").toString()),0.001);
+        assertEquals("Should aggregate records of second interval",12.0,
+                Double.valueOf(data.get(1538352060L).get("value").toString()),0.001);
+        assertEquals("Should continue after gap in data",24.0,
+                Double.valueOf(data.get(1538438400L).get("value").toString()),0.001);
+        assertEquals("Should save last aggregated interval",1538438400L,aggregator.getLastRecordTimestamp());
+    }
+
+    @Test
+    public void aggregateParallel() throws Exception {
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538438465L;timestamp<=1538460000L;timestamp+=15) writer.write(record(timestamp,(double)(timestamp % 11)));
+        HashMap<String,Object> config = getConfig("sequential",300);
+        SimpleFileDataAggregator sequential = new SimpleFileDataAggregator(config);
+        sequential.aggregate();
+        config = getConfig("parallel",300);
+        config.put("parallelism",4);
+        SimpleFileDataAggregator parallel = new SimpleFileDataAggregator(config);
+        parallel.aggregate();
+        NavigableMap<Long,HashMap<String,Object>> expected = DataReader.create(rootPath+"/sequential",null)
+                .getData(0L,Long.MAX_VALUE,true);
+        assertTrue("Should aggregate many intervals",expected.size() > 50);
+        assertEquals("Should write the same records as sequential aggregation",expected.toString(),
+                DataReader.create(rootPath+"/parallel",null).getData(0L,Long.MAX_VALUE,true).toString());
+        assertEquals("Should save last aggregated interval",sequential.getLastRecordTimestamp(),
+                parallel.getLastRecordTimestamp());
+        config = getConfig("limited",300);
+        config.put("parallelism",4);
+        config.put("parallelChunkSize",1);
+        new SimpleFileDataAggregator(config).aggregate();
+        assertEquals("Should write the same records with limited chunk size",expected.toString(),
+                DataReader.create(rootPath+"/limited",null).getData(0L,Long.MAX_VALUE,true).toString());
+    }
+
+    private HashMap<String,Object> getConfig(String name, Integer period) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name",name);
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/"+name);
+        config.put("statusPath",rootPath+"/status/"+name);
+        config.put("aggregationPeriod",period);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("sum","count","first","last")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","value");
+            field.put("aggregate_function",function);
+            fields.put("value_"+function,field);
+        }
+        config.put("fields",fields);
+        return config;
+    }
+
+    private HashMap<String,Object> record(Long timestamp, Double value) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put("value",value);
+        return record;
+    }
+}
@@ -0,0 +1,90 @@
+package aggregators;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ColumnBatchTest {
+
+    private String rootPath = "/tmp/logger_test/columnar";
+
+    @Test
+    public void add() {
+        ColumnBatch batch = new ColumnBatch(new String[] {"temperature","humidity"},2);
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("temperature","12.5");
+        record.put("humidity","unknown");
+        assertFalse("Should not be full after first record",batch.add(record));
+        record.put("temperature",10);
+        assertTrue("Should be full after capacity reached",batch.add(record));
+        assertArrayEquals("Should decode values to numbers",new double[] {12.5,10.0},batch.getColumn(0),0.001);
+        assertTrue("Should decode not numeric values to NaN",Double.isNaN(batch.getColumn(1)[0]));
+        assertEquals("Should find index of column",1,batch.getColumnIndex("humidity"));
+        batch.clear();
+        assertEquals("Should be empty after clear",0,batch.size());
+    }
+
+    @Test
+    public void aggregateColumnar() {
+        SimpleFileDataAggregator rowAggregator = new SimpleFileDataAggregator(getConfig(false));
+        SimpleFileDataAggregator columnAggregator = new SimpleFileDataAggregator(getConfig(true));
+        assertFalse("Should not use columns by default",rowAggregator.isColumnar());
+        assertTrue("Should use columns if enabled",columnAggregator.isColumnar());
+        AggregationSweep rowSweep = new AggregationSweep(rowAggregator,1538352000L,10,true);
+        AggregationSweep columnSweep = new AggregationSweep(columnAggregator,1538352000L,10,true);
+        Random random = new Random(1);
+        for (long timestamp=1538352001L;timestamp<=1538352600L;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("place",timestamp % 2 == 0 ? "anapa" : "temryuk");
+            if (timestamp % 7 != 0) record.put("temperature",random.nextGaussian()*10);
+            record.put("humidity",timestamp % 5 == 0 ? "unknown" : String.valueOf(random.nextInt(100)));
+            rowSweep.addRecord(timestamp,record);
+            columnSweep.addRecord(timestamp,record);
+        }
+        rowSweep.finish();
+        columnSweep.finish();
+        assertEquals("Should close the same intervals",rowSweep.getResults().keySet(),columnSweep.getResults().keySet());
+        for (Long startDate: rowSweep.getResults().keySet())
+            for (String group: Arrays.asList("anapa","temryuk")) {
+                HashMap<String,SimpleFileDataAggregator.AggregateFieldStats> rowStats = rowSweep.getResults().get(startDate).get(group);
+                HashMap<String,SimpleFileDataAggregator.AggregateFieldStats> columnStats = columnSweep.getResults().get(startDate).get(group);
+                for (String field: rowStats.keySet()) {
+                    Object rowValue = rowAggregator.getAggregatedValue(field,rowStats.get(field));
+                    Object columnValue = columnAggregator.getAggregatedValue(field,columnStats.get(field));
+                    if (field.equals("humidity")) assertEquals("Should calculate not numeric fields by records",rowValue,columnValue);
+                    else assertEquals("Should calculate the same value of "+field,
+                            Double.valueOf(rowValue.toString()),Double.valueOf(columnValue.toString()),0.000001);
+                }
+            }
+    }
+
+    private HashMap<String,Object> getConfig(boolean columnar) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","columnar");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/columnar");
+        config.put("aggregationPeriod",60);
+        config.put("groupBy","place");
+        config.put("columnar",columnar);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("sum","average","min","max","count","p90")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","humidity");
+            field.put("aggregate_function",function);
+            fields.put("humidity_"+function,field);
+            field = new HashMap<>();
+            field.put("expression","temperature * 1.8 + 32");
+            field.put("aggregate_function",function);
+            fields.put("fahrenheit_"+function,field);
+        }
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("field","humidity");
+        field.put("aggregate_function","last");
+        fields.put("humidity",field);
+        config.put("fields",fields);
+        return config;
+    }
+}
@@ -0,0 +1,37 @@
+package aggregators;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class CompiledExpressionTest {
+
+    @Test
+    public void parseVariables() {
+        String[] variables = CompiledExpression.parseVariables("sqrt(temperature_1^2 + humidity) * pi + temperature_1 / e");
+        assertArrayEquals("Should return variables without functions and constants",
+                new String[]{"temperature_1","humidity"},variables);
+        variables = CompiledExpression.parseVariables("temperature*1e3 + humidity*2.5E-2");
+        assertArrayEquals("Should not return exponents of numbers",new String[]{"temperature","humidity"},variables);
+    }
+
+    @Test
+    public void evaluate() {
+        CompiledExpression expression = new CompiledExpression("(temperature - 32) * 5 / 9 + offset");
+        assertTrue("Should compile valid expression",expression.isValid());
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp","1538352005");
+        record.put("temperature",212.0);
+        record.put("offset","1");
+        assertEquals("Should bind numeric and string values",101.0,expression.evaluate(record),0.001);
+        record.put("temperature",32);
+        assertEquals("Should reuse compiled expression for next record",1.0,expression.evaluate(record),0.001);
+        record.put("offset","unknown");
+        assertNull("Should return null for non numeric value",expression.evaluate(record));
+        record.remove("offset");
+        assertNull("Should return null if variable is missing",expression.evaluate(record));
+        assertNull("Should return null for invalid expression",new CompiledExpression("temperature * (2").evaluate(record));
+    }
+}
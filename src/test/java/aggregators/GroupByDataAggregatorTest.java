@@ -0,0 +1,98 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GroupByDataAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/group_by";
+    private List<String> places = Arrays.asList("golubitskaya","temryuk","anapa");
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352001L;timestamp<1538352360L;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("place",places.get((int)(timestamp % 3)));
+            record.put("temperature",(double)(timestamp % 3)+1);
+            writer.write(record);
+        }
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp","1538352360");
+        record.put("temperature",100.0);
+        writer.write(record);
+    }
+
+    @Test
+    public void aggregate() {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","group_by");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/group_by");
+        config.put("statusPath",rootPath+"/status");
+        config.put("aggregationPeriod",60);
+        config.put("groupBy","place");
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("sum","count")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","temperature");
+            field.put("aggregate_function",function);
+            fields.put("temperature_"+function,field);
+        }
+        config.put("fields",fields);
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        aggregator.aggregate();
+        for (String place: places) {
+            NavigableMap<Long,HashMap<String,Object>> data = DataReader.create(rootPath+"/group_by/"+place,null)
+                    .getData(0L,Long.MAX_VALUE,true);
+            assertEquals("Should write record for each interval of group "+place,6,data.size());
+            HashMap<String,Object> record = data.get(1538352060L);
+            assertEquals("Should add dimension field to record",place,record.get("place"));
+            double value = places.indexOf(place)+1;
+            assertEquals("Should aggregate only records of group "+place,20*value,
+                    Double.valueOf(record.get("temperature_sum").toString()),0.001);
+        }
+        assertFalse("Should skip records without dimension fields",
+                Files.exists(Paths.get(rootPath,"group_by","2018")));
+        assertEquals("Should save last aggregated interval",1538352300L,aggregator.getLastRecordTimestamp());
+        assertEquals("Should make safe folder names","%2E.%2Fa%2Fb",SimpleFileDataAggregator.escapeGroupValue("../a/b"));
+        assertEquals("Should escape non ASCII characters","%D0%90-1.5",SimpleFileDataAggregator.escapeGroupValue("\u0410-1.5"));
+    }
+
+    @Test
+    public void groupKey() {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","group_key");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/group_key");
+        config.put("statusPath",rootPath+"/status_key");
+        config.put("groupBy","place,kind");
+        config.put("fields",new HashMap<String,HashMap<String,Object>>());
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        assertNotEquals("Should make different keys for different values",
+                aggregator.getGroupKey(record("a_b","c")),aggregator.getGroupKey(record("a","b_c")));
+        assertNotEquals("Should make different keys for different values",
+                aggregator.getGroupKey(record("x/y","z")),aggregator.getGroupKey(record("x_y","z")));
+        assertNotEquals("Should make different keys for empty values",
+                aggregator.getGroupKey(record("","a")),aggregator.getGroupKey(record("a","")));
+        assertEquals("Should keep simple values in key","anapa_sea",aggregator.getGroupKey(record("anapa","sea")));
+    }
+
+    private HashMap<String,Object> record(String place, String kind) {
+        HashMap<String,Object> result = new HashMap<>();
+        result.put("place",place);
+        result.put("kind",kind);
+        return result;
+    }
+}
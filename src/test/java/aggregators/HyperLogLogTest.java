@@ -0,0 +1,40 @@
+package aggregators;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimate() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals("Should return zero for empty sketch",0,sketch.estimate());
+        for (int value=0;value<100;value++) {
+            sketch.add(value);
+            sketch.add((double)value);
+            sketch.add(String.valueOf(value % 10));
+        }
+        assertEquals("Should count small number of distinct values exactly",110,sketch.estimate(),2);
+        sketch.reset();
+        for (int value=0;value<100000;value++) sketch.add("user"+(value % 50000));
+        assertEquals("Should estimate large number of distinct values",50000,sketch.estimate(),2500);
+    }
+
+    @Test
+    public void merge() {
+        HyperLogLog total = new HyperLogLog();
+        Gson gson = new Gson();
+        for (int part=0;part<10;part++) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int value=part*1000;value<part*1000+2000;value++) sketch.add(value);
+            Map<String,Object> state = (Map<String,Object>)gson.fromJson(gson.toJson(sketch.getState()),HashMap.class);
+            total.merge(HyperLogLog.fromState(state));
+        }
+        assertEquals("Should estimate distinct values of merged sketches",11000,total.estimate(),550);
+    }
+}
@@ -0,0 +1,92 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JoinDataAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/join";
+    private Long startDate = 1538352000L;
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/weather",null);
+        for (int index=0;index<10;index++) writeRecord(writer,startDate+index*10,"temperature",(double)index);
+        writer = new FileDataWriter(rootPath+"/rates",null);
+        for (int index=0;index<4;index++) writeRecord(writer,startDate+index*25,"usd",60.0+index);
+    }
+
+    @Test
+    public void exact() {
+        NavigableMap<Long,HashMap<String,Object>> data = join("exact",0);
+        assertEquals("Should join only records with the same timestamps",
+                new ArrayList<>(Arrays.asList(startDate,startDate+50)),new ArrayList<>(data.keySet()));
+        assertEquals("Should evaluate expression over joined record",5.0*62.0,getValue(data,startDate+50),0.001);
+    }
+
+    @Test
+    public void asOf() throws Exception {
+        NavigableMap<Long,HashMap<String,Object>> data = join("as_of",0);
+        assertEquals("Should join records for all timestamps, reached by all sources",10,data.size());
+        assertEquals("Should take last records before timestamp",2.0*61.0,getValue(data,startDate+25),0.001);
+        assertEquals("Should take last records before timestamp",2.0*60.0,getValue(data,startDate+20),0.001);
+        writeRecord(new FileDataWriter(rootPath+"/rates",null),startDate+100,"usd",64.0);
+        data = join("as_of",0);
+        assertEquals("Should join new records on next run",12,data.size());
+        assertEquals("Should continue from last joined record",9.0*63.0,getValue(data,startDate+90),0.001);
+        data = join("as_of",5);
+        assertEquals("Should skip records, which are too far from timestamp",
+                new ArrayList<>(Arrays.asList(startDate,startDate+25,startDate+30,startDate+50,startDate+75)),
+                new ArrayList<>(data.headMap(startDate+75,true).keySet()));
+    }
+
+    @Test
+    public void nearest() {
+        NavigableMap<Long,HashMap<String,Object>> data = join("nearest",0);
+        assertEquals("Should take records with closest timestamps",2.0*61.0,getValue(data,startDate+20),0.001);
+        assertEquals("Should take records with closest timestamps",4.0*62.0,getValue(data,startDate+40),0.001);
+        assertEquals("Should prefer earlier record if distances are equal",2.0*61.0,getValue(data,startDate+25),0.001);
+    }
+
+    private NavigableMap<Long,HashMap<String,Object>> join(String alignment, int tolerance) {
+        String name = alignment+"_"+tolerance;
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("type","join");
+        config.put("name",name);
+        config.put("destinationPath",rootPath+"/"+name);
+        config.put("statusPath",rootPath+"/status/"+name);
+        config.put("alignment",alignment);
+        config.put("tolerance",tolerance);
+        LinkedHashMap<String,Object> sources = new LinkedHashMap<>();
+        sources.put("weather",rootPath+"/weather");
+        sources.put("rates",rootPath+"/rates");
+        config.put("sources",sources);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("expression","weather_temperature * rates_usd");
+        fields.put("value",field);
+        config.put("fields",fields);
+        DataAggregator.create(config).aggregate();
+        return DataReader.create(rootPath+"/"+name,null).getData(0L,Long.MAX_VALUE,true);
+    }
+
+    private double getValue(NavigableMap<Long,HashMap<String,Object>> data, Long timestamp) {
+        return Double.valueOf(data.get(timestamp).get("value").toString());
+    }
+
+    private void writeRecord(FileDataWriter writer, Long timestamp, String field, Double value) throws Exception {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put(field,value);
+        writer.write(record);
+    }
+}
@@ -0,0 +1,100 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import readers.DataSegment;
+import readers.FileDataIndex;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LateDataAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/late_data";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352001L;timestamp<=1538352360L;timestamp+=2) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",1.0);
+            writer.write(record);
+        }
+    }
+
+    @Test
+    public void aggregateLateData() throws Exception {
+        aggregateLateData(false);
+    }
+
+    @Test
+    public void aggregateLateDataToSegments() throws Exception {
+        aggregateLateData(true);
+    }
+
+    private void aggregateLateData(boolean segments) throws Exception {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","late_data");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/late_data");
+        config.put("statusPath",rootPath+"/status");
+        config.put("aggregationPeriod",60);
+        config.put("lateDataWindow",3600);
+        if (segments) {
+            config.put("storageFormat","segments");
+            // Records of next hour, so segment with intervals of late record is sealed
+            FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+            for (long timestamp=1538355601L;timestamp<=1538355720L;timestamp+=2) {
+                HashMap<String,Object> record = new HashMap<>();
+                record.put("timestamp",String.valueOf(timestamp));
+                record.put("temperature",1.0);
+                writer.write(record);
+            }
+        }
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("field","temperature");
+        field.put("aggregate_function","sum");
+        fields.put("temperature_sum",field);
+        config.put("fields",fields);
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        aggregator.aggregate();
+        long lastTimestamp = aggregator.getLastRecordTimestamp();
+        if (segments) {
+            assertTrue("Should seal segment of previous hour",DataSegment.isSealed(
+                    DataSegment.getSegmentPath(rootPath+"/late_data",1538352000L)));
+            aggregator.close();
+            aggregator = new SimpleFileDataAggregator(config);
+        }
+        assertTrue("Should write watermark",Files.exists(Paths.get(rootPath,"status","watermark")));
+        assertEquals("Should aggregate source records",30.0,getSum(1538352060L),0.001);
+
+        // Late record written to source folder without data writer, like extracted from archive
+        Path path = new FileDataIndex(rootPath+"/source",null).getFilePath(1538352062L);
+        Files.write(path,"{\"timestamp\":\"1538352062\",\"temperature\":10.0}".getBytes());
+        Files.setLastModifiedTime(path,FileTime.fromMillis(System.currentTimeMillis()+60000));
+        aggregator.aggregate();
+        assertEquals("Should re-aggregate interval of late record",40.0,getSum(1538352060L),0.001);
+        if (segments) assertTrue("Should write interval of late record to new segment of sealed hour",Files.exists(
+                DataSegment.getSegmentPath(rootPath+"/late_data",1538352060L).resolveSibling("0.1.seg")));
+        assertEquals("Should not change other intervals",30.0,getSum(1538352120L),0.001);
+        assertEquals("Should not move last record back",lastTimestamp,aggregator.getLastRecordTimestamp());
+        aggregator.close();
+    }
+
+    private double getSum(Long timestamp) {
+        HashMap<String,Object> record = DataReader.create(rootPath+"/late_data",null).getData(timestamp,timestamp,true)
+                .get(timestamp);
+        return Double.valueOf(record.get("temperature_sum").toString());
+    }
+}
@@ -0,0 +1,79 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import readers.IDataReader;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MultiResolutionDataAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/multi_aggregator";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538389200L;timestamp<1538391000L;timestamp+=10) {
+            if (timestamp > 1538389800L && timestamp < 1538390100L) continue;
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",(double)(timestamp % 60));
+            writer.write(record);
+        }
+    }
+
+    @Test
+    public void aggregate() {
+        HashMap<String,Object> config = getConfig("multi");
+        config.put("type","multi_resolution");
+        config.put("aggregationPeriods",new ArrayList<>(Arrays.asList(60,300.0,900)));
+        DataAggregator aggregator = DataAggregator.create(config);
+        assertTrue("Should create multi resolution aggregator",aggregator instanceof MultiResolutionDataAggregator);
+        aggregator.aggregate();
+        for (Integer period: Arrays.asList(60,300,900)) {
+            HashMap<String,Object> simpleConfig = getConfig("simple_"+period);
+            simpleConfig.put("aggregationPeriod",period);
+            new SimpleFileDataAggregator(simpleConfig).aggregate();
+            NavigableMap<Long,HashMap<String,Object>> expected = readData("simple_"+period);
+            NavigableMap<Long,HashMap<String,Object>> actual = readData("multi_"+period);
+            assertTrue("Should write aggregated records for period "+period,expected.size() > 0);
+            assertEquals("Should write the same records as separate aggregator for period "+period,
+                    expected.toString(),actual.toString());
+        }
+        assertEquals("Should return last record processed by all resolutions",1538389800L,
+                aggregator.getLastRecordTimestamp());
+    }
+
+    private HashMap<String,Object> getConfig(String name) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name",name);
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/"+name);
+        config.put("statusPath",rootPath+"/status/"+name);
+        config.put("fillDataGaps",false);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("average","min","max","count")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","temperature");
+            field.put("aggregate_function",function);
+            fields.put("temperature_"+function,field);
+        }
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("constant","$aggregationPeriod");
+        fields.put("period",field);
+        config.put("fields",fields);
+        return config;
+    }
+
+    private NavigableMap<Long,HashMap<String,Object>> readData(String name) {
+        IDataReader reader = DataReader.create(rootPath+"/"+name,null);
+        return reader.getData(0L,Long.MAX_VALUE,true);
+    }
+}
@@ -0,0 +1,77 @@
+package aggregators;
+
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OpenIntervalAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/open_interval";
+    private FileDataWriter writer;
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        writer = new FileDataWriter(rootPath+"/source",null);
+    }
+
+    @Test
+    public void aggregate() throws Exception {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","open_interval");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/open_interval");
+        config.put("statusPath",rootPath+"/status");
+        config.put("aggregationPeriod",60);
+        config.put("persistOpenInterval",true);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("sum","p50")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","temperature");
+            field.put("aggregate_function",function);
+            fields.put("temperature_"+function,field);
+        }
+        config.put("fields",fields);
+        SimpleFileDataAggregator aggregator = new SimpleFileDataAggregator(config);
+        writeRecords(1538352001L,1538352090L,1.0);
+        aggregator.aggregate();
+        assertNotNull("Should write closed interval",getRecord(1538352000L));
+        assertNull("Should not write open interval",getRecord(1538352060L));
+        assertTrue("Should save state of open interval",Files.exists(Paths.get(rootPath,"status","open_interval")));
+
+        // Records, which already added to state of open interval, should not be read again
+        writeRecords(1538352061L,1538352061L,100.0);
+        writeRecords(1538352091L,1538352130L,1.0);
+        aggregator = new SimpleFileDataAggregator(config);
+        aggregator.aggregate();
+        HashMap<String,Object> record = getRecord(1538352060L);
+        assertNotNull("Should write interval when it is closed",record);
+        assertEquals("Should continue interval from saved state",60.0,
+                Double.valueOf(record.get("temperature_sum").toString()),0.001);
+        assertEquals("Should restore quantile sketch from saved state",1.0,
+                Double.valueOf(record.get("temperature_p50").toString()),0.001);
+        assertEquals("Should save last closed interval",1538352060L,aggregator.getLastRecordTimestamp());
+        assertNull("Should not write new open interval",getRecord(1538352120L));
+    }
+
+    private void writeRecords(Long startDate, Long endDate, Double value) throws Exception {
+        for (long timestamp=startDate;timestamp<=endDate;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",value);
+            writer.write(record);
+        }
+    }
+
+    private HashMap<String,Object> getRecord(Long timestamp) {
+        return DataReader.create(rootPath+"/open_interval",null).getData(timestamp,timestamp,true).get(timestamp);
+    }
+}
@@ -0,0 +1,42 @@
+package aggregators;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void getQuantile() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertNull("Should not return quantile of empty sketch",sketch.getQuantile(0.5));
+        for (int value=100;value>0;value--) sketch.add(value);
+        assertEquals("Should return exact median of small sketch",50.0,sketch.getQuantile(0.5),0.001);
+        assertEquals("Should return exact 95 percentile of small sketch",95.0,sketch.getQuantile(0.95),0.001);
+        assertEquals("Should return minimum for rank 0",1.0,sketch.getQuantile(0.0),0.001);
+        sketch.reset();
+        for (int value=0;value<100000;value++) sketch.add((value * 7919) % 100000);
+        assertEquals("Should count all values",100000,sketch.getCount());
+        assertEquals("Should estimate median of large sketch",50000.0,sketch.getQuantile(0.5),2000.0);
+        assertEquals("Should estimate 99 percentile of large sketch",99000.0,sketch.getQuantile(0.99),2000.0);
+    }
+
+    @Test
+    public void merge() {
+        QuantileSketch total = new QuantileSketch();
+        Gson gson = new Gson();
+        for (int part=0;part<24;part++) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int value=part*1000;value<(part+1)*1000;value++) sketch.add(value);
+            Map<String,Object> state = (Map<String,Object>)gson.fromJson(gson.toJson(sketch.getState()),HashMap.class);
+            total.merge(QuantileSketch.fromState(state));
+        }
+        assertEquals("Should count values of merged sketches",24000,total.getCount());
+        assertEquals("Should estimate median of merged sketches",12000.0,total.getQuantile(0.5),500.0);
+        assertEquals("Should estimate 95 percentile of merged sketches",22800.0,total.getQuantile(0.95),500.0);
+    }
+}
@@ -0,0 +1,72 @@
+package aggregators;
+
+import config.ConfigManager;
+import org.junit.Before;
+import org.junit.Test;
+import readers.DataReader;
+import utils.DataMap;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RollupDataAggregatorTest {
+
+    private String rootPath = "/tmp/logger_test/rollup";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352000L;timestamp<1538352000L+86400*3;timestamp+=300) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",(double)(timestamp % 7200)/100);
+            writer.write(record);
+        }
+    }
+
+    @Test
+    public void aggregate() {
+        HashMap<String,Object> hourlyConfig = getConfig("hourly",3600);
+        hourlyConfig.put("writePartialState",true);
+        ConfigManager.getInstance().loadConfig(DataMap.create("aggregators",DataMap.create("hourly",hourlyConfig)));
+        new SimpleFileDataAggregator(hourlyConfig).aggregate();
+        assertTrue("Should write partial state of intervals",
+                DataReader.create(rootPath+"/hourly"+SimpleFileDataAggregator.PARTIAL_STATE_SUFFIX,null)
+                        .getData(0L,Long.MAX_VALUE,true).size() > 0);
+        HashMap<String,Object> rollupConfig = getConfig("daily_rollup",86400);
+        rollupConfig.put("sourceAggregator","hourly");
+        rollupConfig.remove("sourcePath");
+        new SimpleFileDataAggregator(rollupConfig).aggregate();
+        new SimpleFileDataAggregator(getConfig("daily",86400)).aggregate();
+        NavigableMap<Long,HashMap<String,Object>> expected = DataReader.create(rootPath+"/daily",null)
+                .getData(0L,Long.MAX_VALUE,true);
+        NavigableMap<Long,HashMap<String,Object>> actual = DataReader.create(rootPath+"/daily_rollup",null)
+                .getData(0L,Long.MAX_VALUE,true);
+        assertEquals("Should aggregate all days",2,expected.size());
+        assertEquals("Should calculate the same aggregates from partial state as from raw data",
+                expected.toString(),actual.toString());
+    }
+
+    private HashMap<String,Object> getConfig(String name, Integer period) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name",name);
+        config.put("sourcePath",rootPath+"/source");
+        config.put("destinationPath",rootPath+"/"+name);
+        config.put("statusPath",rootPath+"/status/"+name);
+        config.put("aggregationPeriod",period);
+        HashMap<String,HashMap<String,Object>> fields = new HashMap<>();
+        for (String function: Arrays.asList("average","sum","min","max","count","first","last")) {
+            HashMap<String,Object> field = new HashMap<>();
+            field.put("field","temperature");
+            field.put("aggregate_function",function);
+            fields.put("temperature_"+function,field);
+        }
+        config.put("fields",fields);
+        return config;
+    }
+}
@@ -0,0 +1,70 @@
+package cronjobs;
+
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class CronjobTaskTest {
+
+    private String statusPath = "/tmp/logger_test/checkpoint";
+    private Path lastRecordPath = Paths.get(statusPath,"last_record");
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(statusPath),false);
+    }
+
+    @Test
+    public void checkpoint() throws Exception {
+        TestTask task = new TestTask();
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("statusPath",statusPath);
+        config.put("checkpointRecords",3);
+        config.put("checkpointInterval",3600000);
+        task.configure(config);
+        task.process(2);
+        assertFalse("Should not write status before checkpoint",Files.exists(lastRecordPath));
+        task.process(1);
+        assertEquals("Should write status after number of records","3",Files.readAllLines(lastRecordPath).get(0));
+        task.process(1);
+        assertEquals("Should not write status between checkpoints","3",Files.readAllLines(lastRecordPath).get(0));
+        task.flushLastRecord();
+        assertEquals("Should write status at the end of run","4",Files.readAllLines(lastRecordPath).get(0));
+        assertFalse("Should not leave temporary file",Files.exists(Paths.get(statusPath,"last_record.tmp")));
+        config.put("checkpointInterval",0);
+        task.configure(config);
+        task.process(1);
+        assertEquals("Should write status after time interval","5",Files.readAllLines(lastRecordPath).get(0));
+    }
+
+    private static class TestTask extends CronjobTask {
+
+        private long lastRecord = 0L;
+
+        void process(int count) {
+            for (int i=0;i<count;i++) {
+                lastRecord++;
+                checkpoint();
+            }
+        }
+
+        @Override
+        public String getLastRecordString() { return String.valueOf(lastRecord); }
+
+        @Override
+        public String getName() { return "test"; }
+
+        @Override
+        public Object getLastRecord() { return lastRecord; }
+
+        @Override
+        public long getLastRecordTimestamp() { return lastRecord; }
+    }
+}
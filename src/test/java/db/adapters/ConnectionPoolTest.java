@@ -0,0 +1,217 @@
+package db.adapters;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTest {
+
+    // Number of connections, opened by factory
+    private AtomicInteger openedCount = new AtomicInteger(0);
+    // Number of connections, closed by pool
+    private AtomicInteger closedCount = new AtomicInteger(0);
+    // Result, which connections return on validation
+    private AtomicBoolean valid = new AtomicBoolean(true);
+    // Should connections fail queries
+    private AtomicBoolean failing = new AtomicBoolean(false);
+
+    @Test
+    public void borrow() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(2,100,0,0),this::connect);
+        ConnectionPool.PooledConnection connection1 = pool.borrow();
+        ConnectionPool.PooledConnection connection2 = pool.borrow();
+        assertNotSame("Should open new connection, if no idle connections",connection1,connection2);
+        assertEquals("Should open connections on demand",2,openedCount.get());
+        try {
+            pool.borrow();
+            fail("Should not open more connections, than pool size");
+        } catch (SQLException e) {
+            assertEquals("Should count borrowed connections",2,pool.getStats().get("borrowed"));
+        }
+        pool.release(connection1,false);
+        assertSame("Should reuse released connection",connection1,pool.borrow());
+        assertEquals("Should not open new connection, if idle one exists",2,openedCount.get());
+        pool.release(connection2,true);
+        assertEquals("Should close broken connection",1,closedCount.get());
+        assertNotSame("Should open new connection instead of broken one",connection2,pool.borrow());
+    }
+
+    @Test
+    public void waitForRelease() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(1,5000,0,0),this::connect);
+        ConnectionPool.PooledConnection connection = pool.borrow();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) { }
+            pool.release(connection,false);
+        });
+        thread.start();
+        assertSame("Should wait until connection released",connection,pool.borrow());
+        thread.join();
+    }
+
+    @Test
+    public void validate() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(1,100,0,0),this::connect);
+        ConnectionPool.PooledConnection connection = pool.borrow();
+        pool.release(connection,false);
+        valid.set(false);
+        assertSame("Should not validate recently used connection",connection,pool.borrow());
+        pool.release(connection,false);
+        Thread.sleep(1100);
+        ConnectionPool.PooledConnection newConnection = pool.borrow();
+        assertNotSame("Should replace connection, which failed validation",connection,newConnection);
+        assertEquals("Should close invalid connection",1,closedCount.get());
+    }
+
+    @Test
+    public void evict() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(2,100,50,0),this::connect);
+        ConnectionPool.PooledConnection connection = pool.borrow();
+        pool.release(connection,false);
+        Thread.sleep(100);
+        assertNotSame("Should close idle connections",connection,pool.borrow());
+        assertEquals("Should close idle connection",1,closedCount.get());
+        pool = new ConnectionPool(getConfig(2,100,0,50),this::connect);
+        connection = pool.borrow();
+        Thread.sleep(100);
+        pool.release(connection,false);
+        assertEquals("Should close expired connection on release",2,closedCount.get());
+        assertEquals("Should free slot of expired connection",0,pool.getStats().get("opened"));
+    }
+
+    @Test
+    public void close() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(2,100,0,0),this::connect);
+        ConnectionPool.PooledConnection connection1 = pool.borrow();
+        ConnectionPool.PooledConnection connection2 = pool.borrow();
+        pool.release(connection1,false);
+        pool.close();
+        assertEquals("Should close idle connections",1,closedCount.get());
+        pool.release(connection2,false);
+        assertEquals("Should close borrowed connections on release",2,closedCount.get());
+        ConnectionPool.PooledConnection connection = pool.borrow();
+        assertNotSame("Should open new connections after close",connection1,connection);
+        assertNotSame("Should open new connections after close",connection2,connection);
+    }
+
+    @Test
+    public void concurrentBorrow() throws Exception {
+        ConnectionPool pool = new ConnectionPool(getConfig(3,10000,0,0),this::connect);
+        ArrayList<Thread> threads = new ArrayList<>();
+        AtomicInteger errors = new AtomicInteger(0);
+        for (int index=0;index<10;index++) {
+            Thread thread = new Thread(() -> {
+                for (int iteration=0;iteration<50;iteration++) {
+                    try {
+                        ConnectionPool.PooledConnection connection = pool.borrow();
+                        Thread.sleep(1);
+                        pool.release(connection,false);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread: threads) thread.join();
+        assertEquals("Should serve all consumers",0,errors.get());
+        assertTrue("Should not open more connections, than pool size",openedCount.get() <= 3);
+        assertEquals("Should return all connections to pool",0,pool.getStats().get("borrowed"));
+    }
+
+    @Test
+    public void evictAll() throws Exception {
+        ConnectionPool pool = ConnectionPool.get("evict_all",getConfig(2,100,50,0),this::connect);
+        pool.release(pool.borrow(),false);
+        Thread.sleep(100);
+        assertEquals("Should keep idle connection until pool used or evictor runs",1,pool.getStats().get("idle"));
+        ConnectionPool.evictAll();
+        assertEquals("Should close idle connections of pools, which are not used",1,closedCount.get());
+        assertEquals("Should close idle connections of pools, which are not used",0,pool.getStats().get("opened"));
+        pool.release(pool.borrow(),false);
+        ConnectionPool.closeAll();
+        assertEquals("Should close connections of all pools",2,closedCount.get());
+    }
+
+    @Test
+    public void releaseBroken() throws Exception {
+        JDBCDatabaseAdapter adapter = new SqliteDatabaseAdapter() {
+            Connection connect() { return ConnectionPoolTest.this.connect(); }
+        };
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("name","temperature");
+        field.put("type","decimal");
+        HashMap<String,Object> fields = new HashMap<>();
+        fields.put("temperature",field);
+        HashMap<String,Object> collection = new HashMap<>();
+        collection.put("fields",fields);
+        HashMap<String,Object> collections = new HashMap<>();
+        collections.put("weather",collection);
+        HashMap<String,Object> config = getConfig(1,100,0,0);
+        config.put("name","release_broken");
+        config.put("collections",collections);
+        adapter.configure(config);
+        HashMap<String,Object> row = new HashMap<>();
+        row.put("temperature",10.0);
+        ArrayList<HashMap<String,Object>> rows = new ArrayList<>();
+        rows.add(row);
+        failing.set(true);
+        assertNull("Should fail select query",adapter.executeSelectQuery("SELECT * FROM weather"));
+        assertEquals("Should close connection after failed query",1,closedCount.get());
+        assertNull("Should fail update query",adapter.insert("weather",rows));
+        assertEquals("Should close connection after failed query",2,closedCount.get());
+        assertEquals("Should not return broken connections to pool",0,adapter.pool.getStats().get("idle"));
+        failing.set(false);
+        assertEquals("Should open new connection after failed query",Integer.valueOf(1),adapter.insert("weather",rows));
+        assertEquals("Should return healthy connection to pool",1,adapter.pool.getStats().get("idle"));
+        adapter.close();
+    }
+
+    private Connection connect() {
+        openedCount.incrementAndGet();
+        return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(),new Class[] {Connection.class},
+                (proxy,method,args) -> {
+                    switch (method.getName()) {
+                        case "isValid": return valid.get();
+                        case "getAutoCommit": return true;
+                        case "createStatement":
+                        case "prepareStatement":
+                            if (failing.get()) throw new SQLException("Connection reset");
+                            return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                    new Class[] {PreparedStatement.class},(statement,statementMethod,statementArgs) -> {
+                                        switch (statementMethod.getName()) {
+                                            case "executeBatch": return new int[] {1};
+                                            case "hashCode": return System.identityHashCode(statement);
+                                            case "equals": return statement == statementArgs[0];
+                                        }
+                                        return null;
+                                    });
+                        case "close": closedCount.incrementAndGet(); return null;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                    }
+                    return null;
+                });
+    }
+
+    private HashMap<String,Object> getConfig(int size, long borrowTimeout, long idleTimeout, long maxLifetime) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("poolSize",size);
+        config.put("poolBorrowTimeout",borrowTimeout);
+        config.put("poolIdleTimeout",idleTimeout);
+        config.put("poolMaxLifetime",maxLifetime);
+        return config;
+    }
+}
@@ -66,6 +66,29 @@ public class OrientDBDatabaseAdapterTest {
         Assert.assertEquals("Should insert all records",3,result);
     }
 
+    @Test
+    public void prepareUpdateBatchSQL() {
+        OrientDBDatabaseAdapter orientAdapter = (OrientDBDatabaseAdapter)adapter;
+        ArrayList<HashMap<String,Object>> rows = DataList.create(
+            DataMap.create("int_field",10,"decimal_field",15.34,"string_field","v1"),
+            DataMap.create("int_field",25),
+            new HashMap<>(),
+            DataMap.create("unknown_field","v2"),
+            DataMap.create("@rid","#1:2","string_field","v3")
+        );
+        String sql = orientAdapter.prepareUpdateBatchSQL("test",rows,true);
+        Assert.assertTrue("Should make single INSERT query",sql.startsWith("INSERT INTO test (") &&
+                sql.indexOf("INSERT") == sql.lastIndexOf("INSERT"));
+        Assert.assertEquals("Should add values of rows with known fields",3,sql.split("\\),\\(").length);
+        Assert.assertTrue("Should write null for missing fields",sql.contains("null"));
+        sql = orientAdapter.prepareUpdateBatchSQL("test",rows,false);
+        Assert.assertEquals("Should make UPDATE query only for rows with ID","UPDATE test SET ",
+                sql.substring(0,sql.indexOf("SET ")+4));
+        Assert.assertTrue("Should update row by ID",sql.contains("string_field='v3'") && sql.endsWith("WHERE id='#1:2'"));
+        Assert.assertEquals("Should not write empty rows","",orientAdapter.prepareUpdateBatchSQL("test",
+                DataList.create(new HashMap<>()),true));
+    }
+
     @Test
     public void select() {
         ArrayList<HashMap<String,Object>> result = adapter.select("SELECT int_field,string_field FROM test","test");
@@ -0,0 +1,123 @@
+package db.adapters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class SqliteDatabaseAdapterTest {
+
+    private String rootPath = "/tmp/logger_test/sqlite";
+    private String path = rootPath+"/test.db";
+    private SqliteDatabaseAdapter adapter;
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        Files.createDirectories(Paths.get(rootPath));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:"+path)) {
+            connection.createStatement().execute("CREATE TABLE weather (id INTEGER PRIMARY KEY, timestamp INTEGER, "+
+                    "temperature REAL, place TEXT)");
+        }
+        HashMap<String,Object> fields = new HashMap<>();
+        fields.put("id",createField("id","integer"));
+        fields.put("timestamp",createField("timestamp","integer"));
+        fields.put("temperature",createField("temperature","decimal"));
+        fields.put("place",createField("place","string"));
+        HashMap<String,Object> collection = new HashMap<>();
+        collection.put("idField","id");
+        collection.put("fields",fields);
+        HashMap<String,Object> collections = new HashMap<>();
+        collections.put("weather",collection);
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","sqlite_test");
+        config.put("type","sqlite");
+        config.put("path",path);
+        config.put("batchSize",100);
+        config.put("collections",collections);
+        adapter = new SqliteDatabaseAdapter();
+        adapter.configure(config);
+    }
+
+    @After
+    public void close() {
+        adapter.close();
+    }
+
+    @Test
+    public void insert() throws Exception {
+        ArrayList<HashMap<String,Object>> rows = new ArrayList<>();
+        for (int index=1;index<=250;index++) {
+            HashMap<String,Object> row = new HashMap<>();
+            row.put("timestamp",1538352000+index);
+            row.put("temperature",String.valueOf(index/2.0));
+            if (index % 3 != 0) row.put("place","it's place "+index);
+            row.put("fake_field","some value");
+            rows.add(row);
+        }
+        rows.add(new HashMap<>());
+        assertEquals("Should return number of inserted rows",Integer.valueOf(250),adapter.insert("weather",rows));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:"+path)) {
+            ResultSet result = connection.createStatement().executeQuery(
+                    "SELECT COUNT(*),SUM(temperature),COUNT(place),MAX(timestamp) FROM weather");
+            assertEquals("Should insert all rows",250,result.getInt(1));
+            assertEquals("Should bind decimal values",250*251/4.0,result.getDouble(2),0.001);
+            assertEquals("Should insert rows with different sets of fields",167,result.getInt(3));
+            assertEquals("Should bind integer values",1538352250L,result.getLong(4));
+            result = connection.createStatement().executeQuery("SELECT place FROM weather WHERE timestamp=1538352001");
+            assertEquals("Should bind string values without escaping","it's place 1",result.getString(1));
+        }
+    }
+
+    @Test
+    public void update() throws Exception {
+        ArrayList<HashMap<String,Object>> rows = new ArrayList<>();
+        for (int index=1;index<=10;index++) {
+            HashMap<String,Object> row = new HashMap<>();
+            row.put("id",index);
+            row.put("temperature",1.0);
+            rows.add(row);
+        }
+        adapter.insert("weather",rows);
+        for (HashMap<String,Object> row: rows) row.put("temperature",Double.valueOf(row.get("id").toString()));
+        rows.get(0).remove("id");
+        assertEquals("Should update only rows with ID",Integer.valueOf(9),adapter.update("weather",rows));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:"+path)) {
+            ResultSet result = connection.createStatement().executeQuery("SELECT SUM(temperature) FROM weather");
+            assertEquals("Should update values by ID",55.0,result.getDouble(1),0.001);
+        }
+    }
+
+    @Test
+    public void select() {
+        ArrayList<HashMap<String,Object>> rows = new ArrayList<>();
+        for (int index=1;index<=3;index++) {
+            HashMap<String,Object> row = new HashMap<>();
+            row.put("id",index);
+            row.put("place","place "+index);
+            rows.add(row);
+        }
+        adapter.insert("weather",rows);
+        ArrayList<HashMap<String,Object>> result = adapter.select("SELECT id,place FROM weather WHERE id>1 ORDER BY id","weather");
+        assertEquals("Should return selected rows",2,result.size());
+        assertEquals("Should read values of columns","place 2",result.get(0).get("place"));
+        assertEquals("Should return connection to pool",0,adapter.pool.getStats().get("borrowed"));
+    }
+
+    private HashMap<String,Object> createField(String name, String type) {
+        HashMap<String,Object> field = new HashMap<>();
+        field.put("name",name);
+        field.put("type",type);
+        return field;
+    }
+}
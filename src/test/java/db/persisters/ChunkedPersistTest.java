@@ -0,0 +1,133 @@
+package db.persisters;
+
+import db.adapters.IDatabaseAdapter;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class ChunkedPersistTest {
+
+    private String rootPath = "/tmp/logger_test/chunked_persist";
+    // Records, written to fake database
+    private ArrayList<HashMap<String,Object>> written = new ArrayList<>();
+    // Sizes of chunks, received by fake database
+    private ArrayList<Integer> chunks = new ArrayList<>();
+    // Number of insert call, which fails (0 if all calls succeed)
+    private int failedCall = 0;
+    // Is fake database closed
+    private boolean closed = false;
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352001L;timestamp<=1538352025L;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",(double)timestamp);
+            writer.write(record);
+        }
+    }
+
+    @Test
+    public void persist() {
+        FileDatabasePersister persister = createPersister(0);
+        failedCall = 2;
+        assertEquals("Should write chunks before failed one",Integer.valueOf(10),persister.persist());
+        assertEquals("Should save last record of written chunk",1538352010L,getSavedTimestamp());
+        failedCall = 0;
+        persister = createPersister(0);
+        assertEquals("Should resume from failed chunk",Integer.valueOf(15),persister.persist());
+        assertEquals("Should write records in timestamp order without gaps",25,written.size());
+        for (int index=0;index<written.size();index++)
+            assertEquals("Should write records in timestamp order without gaps",String.valueOf(1538352001L+index),
+                    written.get(index).get("timestamp").toString());
+        assertEquals("Should save last record of last chunk",1538352025L,getSavedTimestamp());
+        assertNull("Should not write anything if there is no new data",persister.persist());
+    }
+
+    @Test
+    public void rowsPerRun() {
+        FileDatabasePersister persister = createPersister(15);
+        assertEquals("Should write limited number of rows per run",Integer.valueOf(15),persister.persist());
+        assertEquals("Should split rows of run to chunks",10,chunks.get(0).intValue());
+        assertEquals("Should split rows of run to chunks",5,chunks.get(1).intValue());
+        assertEquals("Should continue on next run",Integer.valueOf(10),createPersister(15).persist());
+    }
+
+    @Test
+    public void writeBehind() {
+        FileDatabasePersister persister = createPersister(0);
+        persister.configure(createConfig(0,true));
+        persister.setDatabaseAdapter(new FakeDatabaseAdapter());
+        assertEquals("Should queue all records",Integer.valueOf(25),persister.persist());
+        assertTrue("Should write queued records",persister.getWriteQueue().flush(5000));
+        assertEquals("Should write all records",25,written.size());
+        assertEquals("Should save last written record",1538352025L,getSavedTimestamp());
+        assertNull("Should continue from last queued record",persister.persist());
+        assertNotNull("Should report statistics of queue",persister.getTaskInfo());
+        persister.close();
+        assertNull("Should stop queue on close",persister.getWriteQueue());
+        assertTrue("Should close database adapter on close",closed);
+    }
+
+    @Test
+    public void writeBehindWithoutNewData() throws Exception {
+        Files.createDirectories(Paths.get(rootPath,"empty"));
+        HashMap<String,Object> config = createConfig(0,true);
+        config.put("sourcePath",rootPath+"/empty");
+        FileDatabasePersister persister = new FileDatabasePersister(config);
+        persister.setDatabaseAdapter(new FakeDatabaseAdapter());
+        assertNull("Should not write anything if source is empty",persister.persist());
+        assertNull("Should not create queue if nothing to write",persister.getWriteQueue());
+        assertNull("Should run again if source is empty",persister.persist());
+        persister.closeQueues();
+    }
+
+    private long getSavedTimestamp() {
+        FileDatabasePersister persister = createPersister(0);
+        persister.readAndSetLastRecord();
+        return persister.getLastRecordTimestamp();
+    }
+
+    private FileDatabasePersister createPersister(int rowsPerRun) {
+        FileDatabasePersister persister = new FileDatabasePersister(createConfig(rowsPerRun,false));
+        persister.setDatabaseAdapter(new FakeDatabaseAdapter());
+        return persister;
+    }
+
+    private HashMap<String,Object> createConfig(int rowsPerRun, boolean writeBehind) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","chunked_persist");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("statusPath",rootPath+"/status");
+        config.put("collectionName","weather");
+        config.put("writeDuplicates",true);
+        config.put("chunkSize",10);
+        config.put("rowsPerRun",rowsPerRun);
+        config.put("writeBehind",writeBehind);
+        config.put("writeBatchSize",10);
+        return config;
+    }
+
+    private class FakeDatabaseAdapter implements IDatabaseAdapter {
+        public void configure(HashMap<String,Object> config) {}
+        public Integer insert(String collectionName, ArrayList<HashMap<String,Object>> data) {
+            chunks.add(data.size());
+            if (chunks.size() == failedCall) return null;
+            written.addAll(data);
+            return data.size();
+        }
+        public Integer update(String collectionName, ArrayList<HashMap<String,Object>> data) { return null; }
+        public ArrayList<HashMap<String,Object>> select(String sql, String collectionName) { return null; }
+        public void close() { closed = true; }
+    }
+}
@@ -0,0 +1,165 @@
+package db.persisters;
+
+import db.adapters.IDatabaseAdapter;
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SpillQueueTest implements Syslog.Loggable {
+
+    private String rootPath = "/tmp/logger_test/spill_queue";
+    // Records, written to fake database
+    private List<HashMap<String,Object>> written = Collections.synchronizedList(new ArrayList<>());
+    // Should fake database fail writes
+    private volatile boolean failing = false;
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(rootPath),false);
+        FileDataWriter writer = new FileDataWriter(rootPath+"/source",null);
+        for (long timestamp=1538352001L;timestamp<=1538352025L;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            record.put("temperature",(double)timestamp);
+            writer.write(record);
+        }
+    }
+
+    @Test
+    public void persist() throws Exception {
+        FileDatabasePersister persister = new FileDatabasePersister(createConfig());
+        persister.setDatabaseAdapter(new FakeDatabaseAdapter());
+        failing = true;
+        assertEquals("Should spool records, which database could not write",Integer.valueOf(25),persister.persist());
+        SpillQueue spillQueue = persister.getSpillQueueInstance();
+        assertFalse("Should spool records",spillQueue.isEmpty());
+        persister.readAndSetLastRecord();
+        assertEquals("Should save last spooled record",1538352025L,persister.getLastRecordTimestamp());
+        assertNull("Should not read spooled records from source again",persister.persist());
+        failing = false;
+        assertTrue("Should replay spool when database is healthy",spillQueue.replay());
+        assertTrue("Should empty spool",spillQueue.isEmpty());
+        assertEquals("Should truncate spool file",0L,Files.size(Paths.get(rootPath,"status","spool","spool")));
+        assertEquals("Should write all spooled records",25,written.size());
+        for (int index=0;index<written.size();index++)
+            assertEquals("Should replay records in order",String.valueOf(1538352001L+index),
+                    written.get(index).get("timestamp").toString());
+        persister.closeQueues();
+    }
+
+    @Test
+    public void order() throws Exception {
+        SpillQueue spillQueue = createSpillQueue();
+        failing = true;
+        assertTrue("Should append records",spillQueue.append(createRecords(1,10)));
+        assertFalse("Should not replay if database fails",spillQueue.replay());
+        failing = false;
+        assertTrue("Should append records",spillQueue.append(createRecords(11,15)));
+        assertTrue("Should replay records",spillQueue.replay());
+        assertEquals("Should write all records",15,written.size());
+        assertEquals("Should write records in order","15",written.get(14).get("timestamp"));
+        spillQueue.close();
+    }
+
+    @Test
+    public void recover() throws Exception {
+        failing = true;
+        SpillQueue spillQueue = createSpillQueue();
+        spillQueue.append(createRecords(1,5));
+        spillQueue.close();
+        Files.write(Paths.get(rootPath,"spool","spool"),"{\"timestamp\":\"6\",\"temp".getBytes(),StandardOpenOption.APPEND);
+        failing = false;
+        spillQueue = createSpillQueue();
+        assertTrue("Should replay records after restart",spillQueue.replay());
+        assertEquals("Should skip incomplete record",5,written.size());
+        spillQueue.append(createRecords(6,7));
+        spillQueue.close();
+        spillQueue = createSpillQueue();
+        assertTrue("Should replay records after restart",spillQueue.replay());
+        assertEquals("Should not replay written records again",7,written.size());
+        spillQueue.close();
+    }
+
+    @Test
+    public void unreadableSpool() throws Exception {
+        failing = true;
+        SpillQueue spillQueue = createSpillQueue();
+        spillQueue.append(createRecords(1,5));
+        Files.delete(Paths.get(rootPath,"spool","spool"));
+        failing = false;
+        Thread consumer = new Thread(spillQueue::replay);
+        consumer.start();
+        consumer.join(5000);
+        assertFalse("Should stop replay if spool could not be read",consumer.isAlive());
+        assertFalse("Should report that spool is not replayed",spillQueue.replay());
+        assertFalse("Should keep records, which are not replayed",spillQueue.isEmpty());
+        spillQueue.close();
+    }
+
+    private SpillQueue createSpillQueue() throws Exception {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("chunkSize",4);
+        config.put("spillRetryInterval",60000);
+        return new SpillQueue("spill_queue",rootPath+"/spool",new FakeDatabaseAdapter(),"weather",config,
+                new Syslog(this));
+    }
+
+    private HashMap<String,Object> createConfig() {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("name","spill_queue");
+        config.put("sourcePath",rootPath+"/source");
+        config.put("statusPath",rootPath+"/status");
+        config.put("collectionName","weather");
+        config.put("writeDuplicates",true);
+        config.put("chunkSize",10);
+        config.put("spillToDisk",true);
+        config.put("spillRetryInterval",60000);
+        return config;
+    }
+
+    private ArrayList<HashMap<String,Object>> createRecords(long from, long to) {
+        ArrayList<HashMap<String,Object>> result = new ArrayList<>();
+        for (long timestamp=from;timestamp<=to;timestamp++) {
+            HashMap<String,Object> record = new HashMap<>();
+            record.put("timestamp",String.valueOf(timestamp));
+            result.add(record);
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "spill_queue";
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return rootPath+"/logs";
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+
+    private class FakeDatabaseAdapter implements IDatabaseAdapter {
+        public void configure(HashMap<String,Object> config) {}
+        public Integer insert(String collectionName, ArrayList<HashMap<String,Object>> data) {
+            if (failing) return null;
+            written.addAll(data);
+            return data.size();
+        }
+        public Integer update(String collectionName, ArrayList<HashMap<String,Object>> data) { return null; }
+        public ArrayList<HashMap<String,Object>> select(String sql, String collectionName) { return null; }
+        public void close() {}
+    }
+}
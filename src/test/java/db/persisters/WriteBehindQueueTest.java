@@ -0,0 +1,173 @@
+package db.persisters;
+
+import db.adapters.IDatabaseAdapter;
+import main.Syslog;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindQueueTest implements Syslog.Loggable {
+
+    // Records, written to fake database
+    private List<HashMap<String,Object>> written = Collections.synchronizedList(new ArrayList<>());
+    // Sizes of batches, received by fake database
+    private List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+    // Last committed records
+    private List<Long> commits = Collections.synchronizedList(new ArrayList<>());
+    // Should fake database fail writes
+    private AtomicBoolean failing = new AtomicBoolean(false);
+    // Fake database waits for this latch before each write
+    private CountDownLatch writeLatch = new CountDownLatch(0);
+    private Random random = new Random(1);
+    // Number of insert call, which fails (0 if all calls succeed)
+    private AtomicInteger failedCall = new AtomicInteger(0);
+    // Number of insert calls
+    private AtomicInteger insertCalls = new AtomicInteger(0);
+
+    @Test
+    public void batch() {
+        WriteBehindQueue queue = createQueue(1000,1,10,200);
+        for (long timestamp=1;timestamp<=25;timestamp++) assertTrue("Should accept records",queue.put(createRecord(timestamp)));
+        assertTrue("Should write all records",queue.flush(5000));
+        assertEquals("Should coalesce records to batches of limited size",Arrays.asList(10,10,5),batches);
+        assertEquals("Should commit last record of each batch",Arrays.asList(10L,20L,25L),commits);
+        HashMap<String,Object> stats = queue.getStats();
+        assertEquals("Should report number of batches",3L,stats.get("batches"));
+        assertEquals("Should report number of records",25L,stats.get("records"));
+        assertEquals("Should report queue depth",0,stats.get("queueSize"));
+        queue.close(1000);
+        assertFalse("Should not accept records after close",queue.put(createRecord(26)));
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        writeLatch = new CountDownLatch(1);
+        WriteBehindQueue queue = createQueue(5,1,5,0);
+        Thread producer = new Thread(() -> {
+            for (long timestamp=1;timestamp<=20;timestamp++) queue.put(createRecord(timestamp));
+        });
+        producer.start();
+        producer.join(500);
+        assertTrue("Should block producer if queue is full",producer.isAlive());
+        assertEquals("Should fill queue up to capacity",5,queue.getStats().get("queueSize"));
+        writeLatch.countDown();
+        producer.join(5000);
+        assertFalse("Should release producer when writers free space",producer.isAlive());
+        assertTrue("Should write all records",queue.flush(5000));
+        assertEquals("Should write all records",20,written.size());
+        queue.close(1000);
+    }
+
+    @Test
+    public void commitOrder() {
+        WriteBehindQueue queue = createQueue(100,4,7,1);
+        for (long timestamp=1;timestamp<=500;timestamp++) queue.put(createRecord(timestamp));
+        assertTrue("Should write all records",queue.flush(10000));
+        assertEquals("Should write all records",500,written.size());
+        for (int index=1;index<commits.size();index++)
+            assertTrue("Should commit records in order",commits.get(index) > commits.get(index-1));
+        assertEquals("Should commit last record",Long.valueOf(500L),commits.get(commits.size()-1));
+        queue.close(1000);
+    }
+
+    @Test
+    public void fail() {
+        WriteBehindQueue queue = createQueue(100,1,10,0);
+        for (long timestamp=1;timestamp<=10;timestamp++) queue.put(createRecord(timestamp));
+        assertTrue("Should write records",queue.flush(5000));
+        failing.set(true);
+        for (long timestamp=11;timestamp<=20;timestamp++) queue.put(createRecord(timestamp));
+        assertFalse("Should report failure",queue.flush(5000));
+        assertTrue("Should be failed",queue.isFailed());
+        assertFalse("Should not accept records after failure",queue.put(createRecord(21)));
+        assertEquals("Should not commit failed records",Long.valueOf(10L),commits.get(commits.size()-1));
+        failing.set(false);
+        queue.reset();
+        assertTrue("Should accept records after reset",queue.put(createRecord(11)));
+        assertTrue("Should write records after reset",queue.flush(5000));
+        assertEquals("Should commit records after reset",Long.valueOf(11L),commits.get(commits.size()-1));
+        queue.close(1000);
+    }
+
+    @Test
+    public void spillOrder() throws Exception {
+        FileUtils.removeFolder(Paths.get("/tmp/logger_test/write_behind/spool"),false);
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("spillRetryInterval",60000);
+        SpillQueue spillQueue = new SpillQueue("write_behind","/tmp/logger_test/write_behind/spool",
+                new FakeDatabaseAdapter(),"weather",config,new Syslog(this));
+        config.put("writeThreads",4);
+        config.put("writeBatchSize",5);
+        config.put("writeBatchDelay",0);
+        WriteBehindQueue queue = new WriteBehindQueue("write_behind",new FakeDatabaseAdapter(),"weather",config,
+                new Syslog(this),spillQueue,record -> commits.add(Long.parseLong(record.get("timestamp").toString())));
+        failedCall.set(3);
+        for (long timestamp=1;timestamp<=100;timestamp++) queue.put(createRecord(timestamp));
+        assertTrue("Should write or spool all records",queue.flush(10000));
+        assertTrue("Should replay spool",spillQueue.replay());
+        assertEquals("Should write all records",100,written.size());
+        for (int index=0;index<written.size();index++)
+            assertEquals("Should write records in order, if spool is used",String.valueOf(index+1),
+                    written.get(index).get("timestamp"));
+        queue.close(1000);
+        spillQueue.close();
+    }
+
+    private WriteBehindQueue createQueue(int queueSize, int threads, int batchSize, long batchDelay) {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("writeQueueSize",queueSize);
+        config.put("writeThreads",threads);
+        config.put("writeBatchSize",batchSize);
+        config.put("writeBatchDelay",batchDelay);
+        return new WriteBehindQueue("write_behind",new FakeDatabaseAdapter(),"weather",config,new Syslog(this),null,
+                record -> commits.add(Long.parseLong(record.get("timestamp").toString())));
+    }
+
+    private HashMap<String,Object> createRecord(long timestamp) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",String.valueOf(timestamp));
+        return record;
+    }
+
+    @Override
+    public String getName() {
+        return "write_behind";
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return "/tmp/logger_test/write_behind/logs";
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+
+    private class FakeDatabaseAdapter implements IDatabaseAdapter {
+        public void configure(HashMap<String,Object> config) {}
+        public Integer insert(String collectionName, ArrayList<HashMap<String,Object>> data) {
+            try {
+                writeLatch.await(10,TimeUnit.SECONDS);
+                Thread.sleep(random.nextInt(3));
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (failing.get() || insertCalls.incrementAndGet() == failedCall.get()) return null;
+            batches.add(data.size());
+            written.addAll(data);
+            return data.size();
+        }
+        public Integer update(String collectionName, ArrayList<HashMap<String,Object>> data) { return null; }
+        public ArrayList<HashMap<String,Object>> select(String sql, String collectionName) { return null; }
+        public void close() {}
+    }
+}
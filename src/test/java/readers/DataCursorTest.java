@@ -0,0 +1,76 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DataCursorTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/cursor";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+        FileDataWriter writer = new FileDataWriter(filePath,new Syslog(this));
+        for (long timestamp=1538389400L;timestamp<1538389500L;timestamp+=10) writer.write(record(timestamp));
+    }
+
+    @Test
+    public void iterate() {
+        DataReader reader = new FileDataReader(filePath,new Syslog(this));
+        try (DataCursor cursor = new DataCursor(reader,1538389415L,1538389475L,2)) {
+            assertEquals("Should peek first record in range","1538389420",cursor.peek().get("timestamp"));
+            List<String> timestamps = cursor.stream().map(record -> record.get("timestamp").toString())
+                    .collect(Collectors.toList());
+            assertEquals("Should read all records of range by batches",6,timestamps.size());
+            assertEquals("Should read records in order","1538389470",timestamps.get(5));
+            assertFalse("Should finish after end of range",cursor.hasNext());
+            assertNull("Should not peek after end of range",cursor.peek());
+        }
+        try (DataCursor cursor = reader.getCursor(1538389600L,1538389700L,true)) {
+            assertFalse("Should return empty cursor outside of data range",cursor.hasNext());
+        }
+    }
+
+    @Test
+    public void newRecordsAfterOpen() throws Exception {
+        DataReader reader = new FileDataReader(filePath,new Syslog(this));
+        DataCursor cursor = reader.getCursor(0L,Long.MAX_VALUE,true);
+        assertEquals("Should read first record","1538389400",cursor.next().get("timestamp"));
+        new FileDataWriter(filePath,new Syslog(this)).write(record(1538389500L));
+        reader.getTimestamps(0L,Long.MAX_VALUE,true);
+        assertEquals("Should read records, which appeared in range after cursor opened",10,
+                cursor.stream().count());
+    }
+
+    private HashMap<String,Object> record(Long timestamp) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put("temperature",21.0);
+        return record;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
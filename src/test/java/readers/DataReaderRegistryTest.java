@@ -0,0 +1,86 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DataReaderRegistryTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/registry";
+
+    @Before
+    public void init() throws Exception {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+        FileDataWriter writer = new FileDataWriter(filePath,new Syslog(this));
+        for (long timestamp=1538389400L;timestamp<1538389500L;timestamp+=10) writer.write(record(timestamp));
+    }
+
+    @Test
+    public void sharedReader() {
+        IDataReader reader1 = DataReader.get(filePath,new Syslog(this),new HashMap<>());
+        IDataReader reader2 = DataReader.get(filePath+"/../registry/",new Syslog(this),null);
+        assertSame("Should return the same reader for the same folder",reader1,reader2);
+        reader1.close();
+        IDataReader reader3 = DataReader.get(filePath,new Syslog(this),null);
+        assertSame("Should not release reader while it has consumers",reader2,reader3);
+        reader2.close();
+        reader3.close();
+        IDataReader reader4 = DataReader.get(filePath,new Syslog(this),null);
+        assertNotSame("Should release reader after last consumer closed it",reader1,reader4);
+        reader4.close();
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+        IDataReader reader = DataReader.get(filePath,new Syslog(this),null);
+        List<Thread> threads = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int i=0;i<4;i++) {
+            final long offset = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    new FileDataWriter(filePath,new Syslog(this)).write(record(1538389500L+offset));
+                } catch (Exception e) { return; }
+                int count = reader.getData(1538389400L,1538389600L,true).size();
+                synchronized (counts) { counts.add(count); }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread: threads) thread.join();
+        assertEquals("Should read data in all threads",4,counts.size());
+        assertEquals("Should see all written records",14,reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+        reader.close();
+    }
+
+    private HashMap<String,Object> record(Long timestamp) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put("temperature",21.0);
+        return record;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
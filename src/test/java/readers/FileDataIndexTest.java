@@ -0,0 +1,114 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileDataIndexTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/index";
+
+    @Before
+    public void init() {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+    }
+
+    @Test
+    public void appendAndRead() {
+        FileDataIndex index = new FileDataIndex(filePath,new Syslog(this));
+        assertFalse("Index should not exist before first write",index.exists());
+        index.append(1538389471L);
+        index.append(1538389476L);
+        List<Long> entries = index.read();
+        assertEquals("Should read all appended entries",2,entries.size());
+        assertEquals("Should read entries in order of append",1538389476L,(long)entries.get(1));
+        assertEquals("Should not read same entries twice",0,index.read().size());
+        index.append(1538389480L);
+        assertEquals("Should read only new entries",1,index.read().size());
+        assertEquals("Should build path of data file",Paths.get(filePath+"/2018/10/1/10/24/31.json"),
+                index.getFilePath(1538389471L));
+    }
+
+    @Test
+    public void loadAndReconcile() throws IOException {
+        writeFile(1538389471L);
+        writeFile(1538389476L);
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        assertEquals("Should build index from folder",2,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        assertTrue("Should write index file",Files.exists(Paths.get(filePath,FileDataIndex.INDEX_FILE_NAME)));
+        writeFile(1538389480L);
+        new FileDataIndex(filePath,new Syslog(this)).append(1538389480L);
+        assertEquals("Should not see new files without refresh",2,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        assertEquals("Should read new files from index on refresh",3,reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+        writeFile(1538389490L);
+        Files.delete(new FileDataIndex(filePath,new Syslog(this)).getFilePath(1538389471L));
+        FileDataReader reader2 = new FileDataReader(filePath,new Syslog(this));
+        FileDataReader.DataStats stats = reader2.getDataStats(0L,Long.MAX_VALUE,false);
+        assertEquals("Should reconcile index with folder on load",3,stats.count);
+        assertEquals("Should remove cleaned files from index",1538389476L,(long)stats.range.startDate);
+        assertEquals("Should add not indexed files to index",1538389490L,(long)stats.range.endDate);
+        assertEquals("Should return timestamps in range",2,reader2.getTimestamps(1538389477L,1538389500L,false).size());
+    }
+
+    @Test
+    public void refreshRemovedFiles() throws Exception {
+        for (long timestamp=1538389471L;timestamp<=1538389475L;timestamp++) writeFile(timestamp);
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        assertEquals("Should build index from folder",5,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        FileDataIndex index = new FileDataIndex(filePath,new Syslog(this));
+        Files.delete(index.getFilePath(1538389471L));
+        Files.delete(index.getFilePath(1538389473L));
+        FileDataReader.DataStats stats = reader.getDataStats(0L,Long.MAX_VALUE,true);
+        assertEquals("Should remove cleaned files from the beginning on refresh",1538389472L,(long)stats.range.startDate);
+        for (int count=0;count<2000;count++) index.append(1538389475L);
+        assertEquals("Should not add rewritten files twice",4,reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+        assertEquals("Should compact index",4*8L,Files.size(Paths.get(filePath,FileDataIndex.INDEX_FILE_NAME)));
+        Files.delete(index.getFilePath(1538389474L));
+        assertEquals("Should check only files in the beginning of data on refresh",4,
+                reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+        assertEquals("Should check only files in the beginning of data on load",4,
+                new FileDataReader(filePath,new Syslog(this)).getDataStats(0L,Long.MAX_VALUE,false).count);
+        FileDataReader reader2 = new FileDataReader(filePath,new Syslog(this));
+        reader2.setVerifyInterval(1);
+        assertEquals("Should check all files of index on load if verification enabled",2,
+                reader2.getDataStats(0L,Long.MAX_VALUE,false).count);
+        Files.delete(index.getFilePath(1538389475L));
+        assertEquals("Should not check all files before verify interval",2,reader2.getDataStats(0L,Long.MAX_VALUE,true).count);
+        Thread.sleep(1100);
+        assertEquals("Should check all files of index after verify interval",1,reader2.getDataStats(0L,Long.MAX_VALUE,true).count);
+    }
+
+    private void writeFile(Long timestamp) throws IOException {
+        Path path = new FileDataIndex(filePath,new Syslog(this)).getFilePath(timestamp);
+        Files.createDirectories(path.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("{\"timestamp\":\""+timestamp+"\",\"temperature\":21.0}");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
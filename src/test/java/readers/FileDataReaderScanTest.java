@@ -0,0 +1,106 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NavigableMap;
+
+import static org.junit.Assert.*;
+
+public class FileDataReaderScanTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/scan";
+
+    @Before
+    public void init() throws IOException {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+        for (long timestamp=1538380800L;timestamp<1538467200L;timestamp+=900) writeFile(timestamp);
+    }
+
+    @Test
+    public void scanFolder() {
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        NavigableMap<Long,Path> files = reader.scanFolder(1538389000L,1538392600L);
+        assertEquals("Should find files inside range",4,files.size());
+        assertEquals("Should find first file inside range",1538389800L,(long)files.firstKey());
+        List<Long> timestamps = reader.getTimestamps(1538389000L,1538392600L,3);
+        assertEquals("Should return limited number of timestamps",3,timestamps.size());
+        assertEquals("Should return first timestamps of range",1538389800L,(long)timestamps.get(0));
+        files = reader.scanFolder(0L,Long.MAX_VALUE,5);
+        assertEquals("Should stop after limit",5,files.size());
+        assertEquals("Should walk subfolders in order of timestamps",1538384400L,(long)files.lastKey());
+        assertEquals("Should find last timestamp before date",1538392500L,(long)reader.getLastTimestamp(0L,1538392600L,false));
+        assertNull("Should not find last timestamp in empty range",reader.getLastTimestamp(1538389001L,1538389010L,false));
+    }
+
+    @Test
+    public void partitionScan() {
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        reader.setPartitionScan(true);
+        FileDataReader.DataStats stats = reader.getDataStats(1538389000L,1538392600L,true);
+        assertEquals("Should count files inside range",4,stats.count);
+        assertEquals("Should return last file inside range",1538392500L,(long)stats.range.endDate);
+        assertEquals("Should read records inside range",4,reader.getData(1538389000L,1538392600L,true).size());
+        try (DataCursor cursor = reader.getCursor(1538389000L,1538400000L,true)) {
+            assertEquals("Should iterate records inside range",12,cursor.stream().count());
+        }
+        assertEquals("Should find last timestamp before date",1538392500L,(long)reader.getLastTimestamp(0L,1538392600L,false));
+        assertNull("Should not find last timestamp in empty range",reader.getLastTimestamp(1538389001L,1538389010L,false));
+        assertFalse("Should not load list of all files for range queries",
+                Files.exists(Paths.get(filePath,FileDataIndex.INDEX_FILE_NAME)));
+        stats = reader.getDataStats(1538389001L,1538389010L,true);
+        assertEquals("Should not find files in empty range",0,stats.count);
+        assertEquals("Should find closest file before empty range",1538388900L,(long)stats.range.endDate);
+    }
+
+    @Test
+    public void partitionScanCursor() throws IOException {
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        reader.setPartitionScan(true);
+        for (long timestamp=1538467200L;timestamp<1538476200L;timestamp+=900) writeFile(timestamp);
+        assertEquals("Should count files of range",106,reader.getDataStats(1538380800L,1538476200L,true).count);
+        try (DataCursor cursor = reader.getCursor(1538380800L,1538476200L,false)) {
+            assertNotNull("Should read first batch",cursor.next());
+            writeFile(1538470000L);
+            assertEquals("Should read next batches from listing of range, walked once",105,cursor.stream().count());
+        }
+        try (DataCursor cursor = reader.getCursor(1538380800L,1538476200L,true)) {
+            assertEquals("Should walk subfolders again if cache refreshed",107,cursor.stream().count());
+        }
+        try (DataCursor cursor = reader.getCursor(1538389000L,1538392600L,false)) {
+            assertEquals("Should take files of range from listing of walked range",4,cursor.stream().count());
+        }
+    }
+
+    private void writeFile(Long timestamp) throws IOException {
+        Path path = new FileDataIndex(filePath,new Syslog(this)).getFilePath(timestamp);
+        Files.createDirectories(path.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("{\"timestamp\":\""+timestamp+"\",\"temperature\":21.0}");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
@@ -0,0 +1,82 @@
+package readers;
+
+import main.Syslog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class FileDataWatcherTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/watch";
+    private FileDataReader reader;
+
+    @Before
+    public void init() {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+    }
+
+    @After
+    public void close() {
+        if (reader != null) reader.close();
+    }
+
+    @Test
+    public void discoverNewFiles() throws Exception {
+        writeFile(1538389471L);
+        reader = new FileDataReader(filePath,new Syslog(this),true,3600L);
+        assertEquals("Should load files of folder",1,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        writeFile(1538389476L);
+        writeFile(1538389531L);
+        writeFile(1538393071L);
+        Thread.sleep(500);
+        FileDataReader.DataStats stats = reader.getDataStats(0L,Long.MAX_VALUE,true);
+        assertEquals("Should discover files in active and new subfolders without index",4,stats.count);
+        assertEquals("Should discover files in new hour subfolder",1538393071L,(long)stats.range.endDate);
+        writeFile(1538393075L);
+        Thread.sleep(500);
+        assertEquals("Should watch new active subfolder",5,reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+    }
+
+    @Test
+    public void rescanAsSafetyNet() throws Exception {
+        writeFile(1538389471L);
+        reader = new FileDataReader(filePath,new Syslog(this),true,0L);
+        assertEquals("Should load files of folder",1,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        writeFile(1538389476L);
+        assertEquals("Should rescan folder when rescan interval passed",2,
+                reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+    }
+
+    private void writeFile(Long timestamp) throws IOException {
+        Path path = new FileDataIndex(filePath,new Syslog(this)).getFilePath(timestamp);
+        Files.createDirectories(path.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("{\"timestamp\":\""+timestamp+"\",\"temperature\":21.0}");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
@@ -0,0 +1,85 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.FileDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class RecordCacheTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/cache";
+
+    @Before
+    public void init() {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        RecordCache cache = new RecordCache(2,100);
+        cache.put(Paths.get("/1.json"),1L,10,record(1L));
+        cache.put(Paths.get("/2.json"),1L,10,record(2L));
+        assertNotNull("Should return cached record",cache.get(Paths.get("/1.json"),1L,10));
+        cache.put(Paths.get("/3.json"),1L,10,record(3L));
+        assertNull("Should evict least recently used record",cache.get(Paths.get("/2.json"),1L,10));
+        assertNotNull("Should keep recently used record",cache.get(Paths.get("/1.json"),1L,10));
+        assertNull("Should not return record of changed file",cache.get(Paths.get("/1.json"),2L,10));
+        cache.put(Paths.get("/4.json"),1L,95,record(4L));
+        assertEquals("Should evict records to fit size limit",1,cache.getCount());
+        assertEquals("Should count evictions",3,cache.getEvictions());
+        assertEquals("Should count hits",2,cache.getHits());
+        assertEquals("Should count misses",2,cache.getMisses());
+        HashMap<String,Object> record = cache.get(Paths.get("/4.json"),1L,95);
+        record.put("temperature",0.0);
+        assertEquals("Should return copy of cached record",21.0,
+                (double)cache.get(Paths.get("/4.json"),1L,95).get("temperature"),0.001);
+    }
+
+    @Test
+    public void readFromCache() throws Exception {
+        FileDataWriter writer = new FileDataWriter(filePath,new Syslog(this));
+        for (long timestamp=1538389400L;timestamp<1538389500L;timestamp+=10) writer.write(record(timestamp));
+        FileDataReader reader = new FileDataReader(filePath,new Syslog(this));
+        reader.getData(1538389400L,1538389450L,true);
+        reader.getData(1538389420L,1538389500L,false);
+        RecordCache cache = reader.getRecordCache();
+        assertEquals("Should read overlapping records from cache",4,cache.getHits());
+        assertEquals("Should read other records from files",10,cache.getMisses());
+        Path path = new FileDataIndex(filePath,new Syslog(this)).getFilePath(1538389420L);
+        Files.write(path,"{\"timestamp\":\"1538389420\",\"temperature\":25.0}".getBytes());
+        Files.setLastModifiedTime(path,FileTime.fromMillis(System.currentTimeMillis()+1000));
+        assertEquals("Should reread changed file",25.0,
+                (double)reader.getData(1538389420L,1538389420L,false).get(1538389420L).get("temperature"),0.001);
+    }
+
+    private HashMap<String,Object> record(Long timestamp) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put("temperature",21.0);
+        return record;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
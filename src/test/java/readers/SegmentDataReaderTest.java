@@ -0,0 +1,152 @@
+package readers;
+
+import main.Syslog;
+import org.junit.Before;
+import org.junit.Test;
+import utils.FileUtils;
+import writers.DataWriter;
+import writers.IDataWriter;
+import writers.SegmentDataWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NavigableMap;
+
+import static org.junit.Assert.*;
+
+public class SegmentDataReaderTest implements Syslog.Loggable {
+
+    private String filePath = "/tmp/logger_test/segments";
+
+    @Before
+    public void init() {
+        FileUtils.removeFolder(Paths.get(filePath),false);
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("storageFormat","segments");
+        IDataWriter writer = DataWriter.create(config,filePath,new Syslog(this));
+        assertTrue("Should create segment writer",writer instanceof SegmentDataWriter);
+        writer.write(record(1538389471L));
+        writer.write(record(1538389476L));
+        IDataReader reader = DataReader.create(filePath,new Syslog(this));
+        assertTrue("Should detect segments folder",reader instanceof SegmentDataReader);
+        assertEquals("Should read records of active segment",2,reader.getDataStats(0L,Long.MAX_VALUE,false).count);
+        writer.write(record(1538389480L));
+        assertEquals("Should read new records of active segment on refresh",3,
+                reader.getDataStats(0L,Long.MAX_VALUE,true).count);
+        writer.write(record(1538393071L));
+        Path sealedPath = DataSegment.getSegmentPath(filePath,1538389471L);
+        assertTrue("Should seal segment of previous hour",DataSegment.isSealed(sealedPath));
+        assertFalse("Should not seal active segment",DataSegment.isSealed(DataSegment.getSegmentPath(filePath,1538393071L)));
+        NavigableMap<Long,HashMap<String,Object>> data = reader.getData(1538389476L,Long.MAX_VALUE,true);
+        assertEquals("Should read records from sealed and active segments",3,data.size());
+        assertEquals("Should read record content",21.0,
+                Double.valueOf(data.get(1538389480L).get("temperature").toString()),0.001);
+        writer.close();
+        assertTrue("Should seal active segment on close",
+                DataSegment.isSealed(DataSegment.getSegmentPath(filePath,1538393071L)));
+        IDataWriter writer2 = DataWriter.create(config,filePath,new Syslog(this));
+        writer2.write(record(1538393075L));
+        writer2.close();
+        SegmentDataReader reader2 = new SegmentDataReader(filePath,new Syslog(this));
+        assertEquals("Should read records of all segments after restart",5,reader2.getDataStats(0L,Long.MAX_VALUE,false).count);
+        Path nextPath = DataSegment.getSegmentPath(filePath,1538393075L).resolveSibling("35.1"+DataSegment.EXTENSION);
+        assertTrue("Should write to new segment of the same hour after restart",DataSegment.isSealed(nextPath));
+    }
+
+    @Test
+    public void rewriteSealedHour() throws Exception {
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("storageFormat","segments");
+        IDataWriter writer = DataWriter.create(config,filePath,new Syslog(this));
+        writer.write(record(1538389471L,10.0));
+        writer.write(record(1538389476L,10.0));
+        writer.write(record(1538393071L,10.0));
+        writer.write(record(1538389476L,20.0));
+        writer.write(record(1538393071L,20.0));
+        writer.close();
+        for (int index=0;index<3;index++) {
+            SegmentDataReader reader = new SegmentDataReader(filePath,new Syslog(this));
+            NavigableMap<Long,HashMap<String,Object>> data = reader.getData(0L,Long.MAX_VALUE,false);
+            assertEquals("Should not duplicate rewritten records",3,data.size());
+            assertEquals("Should not change records, which were not rewritten",10.0,
+                    Double.valueOf(data.get(1538389471L).get("temperature").toString()),0.001);
+            assertEquals("Should read rewritten record of sealed hour",20.0,
+                    Double.valueOf(data.get(1538389476L).get("temperature").toString()),0.001);
+            assertEquals("Should read rewritten record of last hour",20.0,
+                    Double.valueOf(data.get(1538393071L).get("temperature").toString()),0.001);
+        }
+    }
+
+    @Test
+    public void sealStaleSegments() throws Exception {
+        DataSegment segment = new DataSegment(DataSegment.getSegmentPath(filePath,1538389471L));
+        segment.open();
+        segment.append(1538389471L,"{\"timestamp\":\"1538389471\"}");
+        segment.close();
+        HashMap<String,Object> config = new HashMap<>();
+        config.put("storageFormat","segments");
+        IDataWriter writer = DataWriter.create(config,filePath,new Syslog(this));
+        writer.write(record(1538393071L));
+        assertTrue("Should seal segment, which left unsealed by previous writer",DataSegment.isSealed(segment.getPath()));
+        writer.close();
+        assertEquals("Should read records of recovered segment",2,
+                new SegmentDataReader(filePath,new Syslog(this)).getDataStats(0L,Long.MAX_VALUE,false).count);
+    }
+
+    @Test
+    public void truncatedRecord() throws Exception {
+        DataSegment segment = new DataSegment(DataSegment.getSegmentPath(filePath,1538389471L));
+        segment.open();
+        segment.append(1538389471L,"{\"timestamp\":\"1538389471\"}");
+        segment.append(1538389476L,"{\"timestamp\":\"1538389476\"}");
+        long size = segment.getSize();
+        segment.close();
+        Path path = segment.getPath();
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path,Arrays.copyOf(bytes,(int)size-5));
+        DataSegment loaded = new DataSegment(path);
+        loaded.load();
+        assertEquals("Should skip partially written record",1,loaded.getOffsets().size());
+        loaded.open();
+        loaded.append(1538389480L,"{\"timestamp\":\"1538389480\"}");
+        loaded.seal();
+        DataSegment sealed = new DataSegment(path);
+        sealed.load();
+        assertTrue("Should load sealed segment from footer",sealed.isSealed());
+        assertEquals("Should index records from footer",2,sealed.getOffsets().size());
+        assertEquals("Should read record by timestamp","{\"timestamp\":\"1538389480\"}",sealed.readRecord(1538389480L));
+    }
+
+    private HashMap<String,Object> record(Long timestamp) {
+        return record(timestamp,21.0);
+    }
+
+    private HashMap<String,Object> record(Long timestamp, Double temperature) {
+        HashMap<String,Object> record = new HashMap<>();
+        record.put("timestamp",timestamp.toString());
+        record.put("temperature",temperature);
+        return record;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String getSyslogPath() {
+        return null;
+    }
+
+    @Override
+    public HashMap<String, Object> getSyslogConfig() {
+        return new HashMap<>();
+    }
+}
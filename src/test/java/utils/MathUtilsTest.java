@@ -0,0 +1,24 @@
+package utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MathUtilsTest {
+
+    @Test
+    public void toDouble() {
+        assertEquals("Should convert numbers",2.5,MathUtils.toDouble(2.5f),0.001);
+        assertEquals("Should convert integer strings",-12.0,MathUtils.toDouble("-12"),0.001);
+        assertEquals("Should convert decimal strings",4.5,MathUtils.toDouble(" 4.5 "),0.001);
+        assertEquals("Should convert fractions without integer part",0.5,MathUtils.toDouble(".5"),0.001);
+        assertEquals("Should convert exponents",0.0012,MathUtils.toDouble("1.2e-3"),0.000001);
+        assertTrue("Should not convert null",Double.isNaN(MathUtils.toDouble(null)));
+        assertTrue("Should not convert empty strings",Double.isNaN(MathUtils.toDouble("")));
+        assertTrue("Should not convert text",Double.isNaN(MathUtils.toDouble("unknown")));
+        assertTrue("Should not convert sign only",Double.isNaN(MathUtils.toDouble("-")));
+        assertTrue("Should not convert point only",Double.isNaN(MathUtils.toDouble(".")));
+        assertTrue("Should not convert incomplete exponent",Double.isNaN(MathUtils.toDouble("1e")));
+        assertTrue("Should not convert comma separated decimals",Double.isNaN(MathUtils.toDouble("1,5")));
+    }
+}